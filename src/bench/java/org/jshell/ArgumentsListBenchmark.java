@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Lookups in the arguments of a command.
+ *
+ * @author Fabien Barbero
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ArgumentsListBenchmark {
+
+    @Param({"4", "64"})
+    public int argumentsCount;
+
+    private ArgumentsList args;
+
+    @Setup
+    public void setUp() {
+        String[] values = new String[argumentsCount];
+        for(int i=0; i<values.length; i++) {
+            values[i] = i % 2 == 0 ? "-option" + i : "value" + i;
+        }
+        args = new ArgumentsList(values);
+    }
+
+    @Benchmark
+    public String getArgumentAt() {
+        return args.getArgumentAt(argumentsCount / 2);
+    }
+
+    @Benchmark
+    public boolean containsMissingArgument() {
+        return args.containsArgument("-missing");
+    }
+
+    @Benchmark
+    public String getNextArgumentValue() {
+        return args.getNextArgumentValue("-option" + (argumentsCount - 2));
+    }
+
+    @Benchmark
+    public List<String> getOperands() {
+        return args.getOperands("-option0");
+    }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Generation of the log lines used by the benchmarks.
+ *
+ * @author Fabien Barbero
+ */
+public final class BenchmarkFiles {
+
+    private static final String[] LEVELS = {"INFO", "DEBUG", "WARN", "TRACE"};
+
+    private BenchmarkFiles() {
+    }
+
+    /**
+     * Create a log line.
+     * @param random    The random generator.
+     * @param hitRatio  The probability for the line to contain "ERROR".
+     * @return          The line.
+     */
+    public static String line(Random random, double hitRatio) {
+        String level = random.nextDouble() < hitRatio ? "ERROR" : LEVELS[random.nextInt(LEVELS.length)];
+        return "2010-06-" + (10 + random.nextInt(20)) + " 12:" + (10 + random.nextInt(50)) + ":00 " + level
+                + " [worker-" + random.nextInt(32) + "] org.example.Service - request " + random.nextInt(1000000)
+                + " processed in " + random.nextInt(5000) + " ms";
+    }
+
+    /**
+     * Create a temporary log file.
+     * @param size      The size of the file, in bytes.
+     * @param hitRatio  The probability for a line to contain "ERROR".
+     * @return          The file, deleted at the exit of the JVM.
+     */
+    public static File createLogFile(long size, double hitRatio) throws IOException {
+        File file = File.createTempFile("jshell-bench", ".log");
+        file.deleteOnExit();
+        Random random = new Random(42);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 20);
+        try {
+            long written = 0;
+            while(written < size) {
+                String line = line(random, hitRatio);
+                writer.write(line);
+                writer.write('\n');
+                written += line.length() + 1;
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import static junit.framework.Assert.*;
+
+/**
+ * Runs each benchmark once, with the first value of its parameters and files
+ * of 1 MB, so that a broken benchmark fails the build instead of the JMH run.
+ *
+ * @author Fabien Barbero
+ */
+public class BenchmarksTest {
+
+    private static final Class<?>[] BENCHMARKS = {
+        ArgumentsListBenchmark.class,
+        CatBenchmark.class,
+        GrepBenchmark.class,
+        ParserBenchmark.class,
+        PipelineBenchmark.class,
+        ShellBufferBenchmark.class
+    };
+
+    @Test
+    public void testBenchmarks() throws Exception {
+        for(Class<?> benchmark : BENCHMARKS) {
+            run(benchmark);
+        }
+    }
+
+    @Test
+    public void testLogFile() throws Exception {
+        File file = BenchmarkFiles.createLogFile(1024 * 1024, 0.5);
+        try {
+            assertTrue(file.length() >= 1024 * 1024);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void run(Class<?> benchmark) throws Exception {
+        Object state = benchmark.newInstance();
+        for(Field field : benchmark.getFields()) {
+            Param param = field.getAnnotation(Param.class);
+            if(param != null) {
+                String value = "sizeMb".equals(field.getName()) ? "1" : param.value()[0];
+                field.set(state, convert(field.getType(), value));
+            }
+        }
+        setUp(state, Level.Trial);
+        try {
+            for(Method method : benchmark.getMethods()) {
+                if(method.isAnnotationPresent(Benchmark.class)) {
+                    setUp(state, Level.Iteration);
+                    setUp(state, Level.Invocation);
+                    method.invoke(state);
+                }
+            }
+        } finally {
+            for(Method method : benchmark.getMethods()) {
+                if(method.isAnnotationPresent(TearDown.class)) {
+                    method.invoke(state);
+                }
+            }
+        }
+    }
+
+    private static void setUp(Object state, Level level) throws Exception {
+        for(Method method : state.getClass().getMethods()) {
+            Setup setup = method.getAnnotation(Setup.class);
+            if(setup != null && setup.value() == level) {
+                method.invoke(state);
+            }
+        }
+    }
+
+    private static Object convert(Class<?> type, String value) {
+        if(type == int.class) {
+            return Integer.valueOf(value);
+        }
+        if(type == double.class) {
+            return Double.valueOf(value);
+        }
+        return value;
+    }
+
+}
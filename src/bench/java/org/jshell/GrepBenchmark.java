@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.jshell.impl.Grep;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Matching of the lines of the input by grep, for several proportions of
+ * matching lines.
+ *
+ * @author Fabien Barbero
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GrepBenchmark {
+
+    private static final int LINES = 100000;
+
+    @Param({"0.0", "0.01", "0.5", "1.0"})
+    public double hitRatio;
+
+    @Param({"literal", "regex", "literals"})
+    public String mode;
+
+    private String[] lines;
+    private ArgumentsList args;
+    private ShellBuffer input;
+    private final Grep grep = new Grep();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        lines = new String[LINES];
+        for(int i=0; i<lines.length; i++) {
+            lines[i] = BenchmarkFiles.line(random, hitRatio);
+        }
+        if("regex".equals(mode)) {
+            args = new ArgumentsList("-e", "err?or \\[worker-\\d+\\]");
+        } else if("literals".equals(mode)) {
+            args = new ArgumentsList("-F", "error,fatal,exception");
+        } else {
+            args = new ArgumentsList("error");
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void fillInput() {
+        input = new ShellBuffer();
+        for(String line : lines) {
+            input.addLine(line);
+        }
+        input.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public long grep() throws Exception {
+        CountingShellIO output = new CountingShellIO();
+        grep.execute(args, input, output);
+        return output.getLines();
+    }
+
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parsing of the command lines, with and without the cache of parsed lines.
+ *
+ * @author Fabien Barbero
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParserBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int argumentsCount;
+
+    private String line;
+    private Shell shell;
+    private CommandLineParser uncachedParser;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder("cat app.log | grep");
+        for(int i=0; i<argumentsCount; i++) {
+            builder.append(i % 10 == 0 ? " \"quoted value " : " -arg").append(i).append(i % 10 == 0 ? "\"" : "");
+        }
+        line = builder.toString();
+        shell = new Shell();
+        uncachedParser = new CommandLineParser(0);
+    }
+
+    @Benchmark
+    public String[] splitCommandLine() {
+        return shell.splitCommandLine(line);
+    }
+
+    @Benchmark
+    public ParsedPipeline parseUncached() {
+        return uncachedParser.parse(line);
+    }
+
+}
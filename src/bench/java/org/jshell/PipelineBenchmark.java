@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.jshell.impl.Cat;
+import org.jshell.impl.Grep;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Complete pipelines parsed and executed as typed in the shell, with a
+ * headless output.
+ *
+ * @author Fabien Barbero
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PipelineBenchmark {
+
+    @Param({"cat FILE | grep error", "cat FILE | grep -v info | grep -e \"worker-[12]\\]\"", "grep error FILE"})
+    public String commandLine;
+
+    @Param({"64"})
+    public int sizeMb;
+
+    private File file;
+    private CommandRegistry commands;
+    private ExecutorService executor;
+    private String line;
+
+    @Setup
+    public void setUp() throws Exception {
+        file = BenchmarkFiles.createLogFile(sizeMb * 1024L * 1024L, 0.01);
+        line = commandLine.replace("FILE", "'" + file.getPath() + "'");
+        commands = new CommandRegistry();
+        commands.register(new Cat());
+        commands.register(new Grep());
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+        file.delete();
+    }
+
+    @Benchmark
+    public long pipeline() throws Exception {
+        Pipeline pipeline = new Pipeline();
+        for(ParsedCommand command : new CommandLineParser().parse(line).getCommands()) {
+            pipeline.add(commands.find(command.getName()), command.getArguments());
+        }
+        CountingShellIO output = new CountingShellIO();
+        pipeline.execute(executor, null, output, 1024);
+        return output.getLines();
+    }
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Lines going through a pipe: one thread adds them while an other one reads.
+ *
+ * @author Fabien Barbero
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ShellBufferBenchmark {
+
+    private static final int LINES = 100000;
+    private static final String LINE = "2010-06-12 12:00:00 INFO [worker-1] org.example.Service - request processed";
+
+    @Param({"1", "1024", "16384"})
+    public int capacity;
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public long addAndIterate() throws InterruptedException {
+        final ShellBuffer buffer = new ShellBuffer(capacity);
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for(int i=0; i<LINES; i++) {
+                    buffer.addLine(LINE);
+                }
+                buffer.close();
+            }
+        };
+        producer.start();
+        long count = 0;
+        Iterator<String> it = buffer.getContent();
+        while(it.hasNext()) {
+            count += it.next().length();
+        }
+        producer.join();
+        return count;
+    }
+
+}
@@ -42,11 +42,24 @@ public abstract class AbstractShellCommand implements ShellCommand {
 
     @Override
     public final void execute(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+        if(!printHelp(args, handler)) {
+            executeCommand(args, inputBuffer, handler);
+        }
+    }
+
+    /**
+     * Print the help message if it is asked by the arguments, for the
+     * commands having other ways to be executed.
+     * @param args      The arguments of the command.
+     * @param handler   The output of the command.
+     * @return          true if the help was printed, otherwise false.
+     */
+    protected final boolean printHelp(ArgumentsList args, ShellIO handler) {
         if(args.containsArgument(HELP_ARGUMENT)) {
             handler.println(getHelpMessage());
-        } else {
-            executeCommand(args, inputBuffer, handler);
+            return true;
         }
+        return false;
     }
 
     protected abstract String getHelpMessage();
@@ -21,6 +21,7 @@
  */
 package org.jshell;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -86,6 +87,28 @@ public final class ArgumentsList {
         return null;
     }
 
+    /**
+     * Get the arguments which are not options. An option starts with '-', and
+     * the argument following an option taking a value is not returned. With
+     * the arguments "-m 2 error log" and <I>valuedOptions={"-m"}</I>, the
+     * method will return <I>[error, log]</I>.
+     * @param valuedOptions The options which are followed by a value.
+     * @return              The arguments which are not options, in order.
+     */
+    public List<String> getOperands(String... valuedOptions) {
+        List<String> valued = Arrays.asList(valuedOptions);
+        List<String> operands = new ArrayList<String>();
+        for (int i = 0; i < argsList.size(); i++) {
+            String arg = argsList.get(i);
+            if (valued.contains(arg)) {
+                i++;    // Skip the value
+            } else if (!arg.startsWith("-") || arg.length() == 1) {
+                operands.add(arg);
+            }
+        }
+        return operands;
+    }
+
     @Override
     public String toString() {
         return argsList.toString();
@@ -0,0 +1,313 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pipe of lines encoded in UTF-8 between two {@link ByteShellCommand}s. The
+ * producer copies the lines into large blocks, each line followed by '\n',
+ * and the blocks are handed to the consumer, which reads the lines as views
+ * of the blocks. The blocks are then given back to the producer.
+ * <p>
+ * A block is handed over when it is full, or at once when the consumer waits
+ * for it: the consumer takes the lines not handed over yet before waiting, so
+ * a producer can pause at any time.
+ * <p>
+ * The last pipe of a pipeline is a sink, which decodes the lines for the
+ * output of the next command.
+ *
+ * @author Fabien Barbero
+ */
+public final class BytePipe {
+
+    static final int BLOCK_SIZE = 64 * 1024;
+    static final int DEFAULT_CAPACITY = 16;
+
+    /** Marks the end of the content, compared by identity. */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final BlockingQueue<ByteBuffer> queue;
+    private final BlockingQueue<ByteBuffer> free;
+    private final ShellIO sink;
+    private volatile boolean abandoned;
+    private volatile boolean consumerWaiting;
+
+    // Guarded by this, shared by the producer and the waiting consumer
+    private ByteBuffer block;
+
+    // Producer side only
+    private byte[] decodeArray;
+    private long writtenLines;
+    private long writtenBytes;
+
+    // Consumer side only
+    private ByteBuffer reading;
+    private ByteBuffer view;
+    private boolean ended;
+    private long readLines;
+    private long readBytes;
+
+    /**
+     * Create a pipe between two commands.
+     * @param capacity The maximum number of blocks waiting to be read.
+     */
+    BytePipe(int capacity) {
+        queue = new ArrayBlockingQueue<ByteBuffer>(capacity);
+        free = new ArrayBlockingQueue<ByteBuffer>(capacity + 2);
+        sink = null;
+    }
+
+    /**
+     * Create a pipe decoding the lines for an output.
+     * @param sink The output receiving the decoded lines.
+     */
+    BytePipe(ShellIO sink) {
+        queue = null;
+        free = null;
+        this.sink = sink;
+    }
+
+    /**
+     * Write a line.
+     * @param line The bytes of the line, without terminator, between the
+     *             position and the limit of the buffer. The buffer is not
+     *             modified.
+     * @throws BrokenPipeException If the consumer stopped reading or if the
+     *                             current thread has been interrupted.
+     */
+    public void write(ByteBuffer line) {
+        int length = line.remaining();
+        writtenLines++;
+        writtenBytes += length;
+        if(sink != null) {
+            sink.println(decode(line, length));
+            return;
+        }
+        if(abandoned) {
+            throw new BrokenPipeException();
+        }
+        synchronized(this) {
+            if(block != null && block.remaining() > length) {
+                append(line);
+                return;
+            }
+        }
+        flush();
+        ByteBuffer next = acquire(length + 1);
+        synchronized(this) {
+            block = next;
+            append(line);
+        }
+    }
+
+    private void append(ByteBuffer line) {
+        block.put(line.duplicate());
+        block.put((byte) '\n');
+        if(consumerWaiting) {
+            // The queue is empty or being emptied, the block is not held back
+            put(takeBlock());
+        }
+    }
+
+    private ByteBuffer takeBlock() {
+        if(block == null || block.position() == 0) {
+            return null;
+        }
+        ByteBuffer taken = block;
+        block = null;
+        taken.flip();
+        return taken;
+    }
+
+    private String decode(ByteBuffer line, int length) {
+        if(line.hasArray()) {
+            return new String(line.array(), line.arrayOffset() + line.position(), length, StandardCharsets.UTF_8);
+        }
+        if(decodeArray == null || decodeArray.length < length) {
+            decodeArray = new byte[Math.max(length, 256)];
+        }
+        line.duplicate().get(decodeArray, 0, length);
+        return new String(decodeArray, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Hand the lines written to the consumer.
+     */
+    public void flush() {
+        ByteBuffer taken;
+        synchronized(this) {
+            taken = takeBlock();
+        }
+        if(taken != null) {
+            put(taken);
+        }
+    }
+
+    private ByteBuffer acquire(int size) {
+        if(size > BLOCK_SIZE) {
+            return ByteBuffer.allocate(size);
+        }
+        ByteBuffer recycled = free.poll();
+        if(recycled == null) {
+            return ByteBuffer.allocate(BLOCK_SIZE);
+        }
+        recycled.clear();
+        return recycled;
+    }
+
+    private void put(ByteBuffer buffer) {
+        if(abandoned) {
+            throw new BrokenPipeException();
+        }
+        try {
+            queue.put(buffer);
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BrokenPipeException(ex);
+        }
+    }
+
+    /**
+     * Indicates that no more line will be written.
+     */
+    void close() {
+        if(sink == null && !abandoned) {
+            flush();
+            put(END);
+        }
+    }
+
+    /**
+     * Indicates that the consumer will not read anymore. A consumer waiting
+     * for a line stops with a {@link BrokenPipeException}.
+     */
+    void abandon() {
+        abandoned = true;
+        if(queue != null) {
+            queue.clear();
+            queue.offer(END);
+        }
+    }
+
+    /**
+     * Indicates if the lines written are not read anymore.
+     * @return true if the lines are not read anymore, otherwise false.
+     */
+    public boolean isClosed() {
+        return sink != null ? sink.isClosed() : abandoned;
+    }
+
+    /**
+     * Read the next line, waiting for it if needed.
+     * @return A view of the bytes of the line, without terminator, valid until
+     *         the next call; or null at the end of the content.
+     * @throws BrokenPipeException If the pipe has been abandoned or if the
+     *                             current thread has been interrupted.
+     */
+    public ByteBuffer readLine() {
+        if(queue == null) {
+            throw new UnsupportedOperationException("Write only pipe");
+        }
+        while(reading == null || !reading.hasRemaining()) {
+            if(reading != null) {
+                if(reading.capacity() == BLOCK_SIZE) {
+                    free.offer(reading);
+                }
+                reading = null;
+            }
+            if(ended) {
+                return null;
+            }
+            if(abandoned) {
+                throw new BrokenPipeException();
+            }
+            ByteBuffer next = queue.poll();
+            if(next == null) {
+                next = takeOrWait();
+            }
+            if(next == END) {
+                if(abandoned) {
+                    throw new BrokenPipeException();
+                }
+                ended = true;
+                return null;
+            }
+            reading = next;
+            view = next.duplicate();
+        }
+        byte[] array = reading.array();
+        int start = reading.position();
+        int end = start;
+        while(array[end] != '\n') {
+            end++;
+        }
+        reading.position(end + 1);
+        view.limit(end);
+        view.position(start);
+        readLines++;
+        readBytes += end - start;
+        return view;
+    }
+
+    private ByteBuffer takeOrWait() {
+        synchronized(this) {
+            ByteBuffer next = queue.poll();
+            if(next == null) {
+                next = takeBlock();
+            }
+            if(next != null) {
+                return next;
+            }
+            // The next lines are handed over as soon as they are written
+            consumerWaiting = true;
+        }
+        try {
+            return queue.take();
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BrokenPipeException(ex);
+        } finally {
+            consumerWaiting = false;
+        }
+    }
+
+    long getReadLineCount() {
+        return readLines;
+    }
+
+    long getReadByteCount() {
+        return readBytes;
+    }
+
+    long getWrittenLineCount() {
+        return writtenLines;
+    }
+
+    long getWrittenByteCount() {
+        return writtenBytes;
+    }
+
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Output of a {@link ByteShellCommand}, writing the printed lines in its
+ * output pipe.
+ *
+ * @author Fabien Barbero
+ */
+final class BytePipeShellIO extends ShellIO {
+
+    private final BytePipe pipe;
+
+    /**
+     * @param parent    The output of the shell, used to ask a text.
+     * @param pipe      The output pipe of the command.
+     */
+    BytePipeShellIO(ShellIO parent, BytePipe pipe) {
+        super(parent);
+        this.pipe = pipe;
+    }
+
+    @Override
+    public void println(String str) {
+        pipe.write(ByteBuffer.wrap(str.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public void println() {
+        println("");
+    }
+
+    @Override
+    public boolean isClosed() {
+        return pipe.isClosed();
+    }
+
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+/**
+ * Command able to read and write lines encoded in UTF-8, without building
+ * strings. Adjacent such commands of a pipeline are linked by
+ * {@link BytePipe}s; otherwise the command is executed through
+ * {@link ShellCommand#execute}.
+ *
+ * @author Fabien Barbero
+ */
+public interface ByteShellCommand extends ShellCommand {
+
+    /**
+     * Execute the command on lines of bytes.
+     * @param args          The arguments of the command.
+     * @param inputBuffer   The input of the command when the previous command
+     *                      is not a byte command, can be null.
+     * @param input         The lines written by the previous command, or null
+     *                      when it is not a byte command.
+     * @param output        The pipe receiving the lines of the command.
+     * @param handler       The output of the shell, to ask a text; the lines
+     *                      it prints are written in the output pipe.
+     */
+    void executeBytes(ArgumentsList args, ShellBuffer inputBuffer, BytePipe input, BytePipe output, ShellIO handler) throws Exception;
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+/**
+ * Built-in command managing the cache of the outputs.
+ *
+ * @author Fabien Barbero
+ */
+final class CacheCommand extends AbstractShellCommand {
+
+    private final Shell shell;
+
+    CacheCommand(Shell shell) {
+        super("cache");
+        this.shell = shell;
+    }
+
+    @Override
+    protected String getHelpMessage() {
+        return "Manages the cache of the outputs of the idempotent commands\n"
+                + "  cache stats         prints the statistics of the cache\n"
+                + "  cache clear         removes all the cached outputs";
+    }
+
+    @Override
+    protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+        String action = args.getArgumentAt(0);
+        if(action == null || "stats".equals(action)) {
+            shell.getResultCache().printStats(handler);
+        } else if("clear".equals(action)) {
+            shell.getResultCache().clear();
+        } else {
+            handler.println("Unknown action '" + action + "'");
+        }
+    }
+
+}
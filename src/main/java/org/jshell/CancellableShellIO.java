@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Output of the last command of a pipeline, closed when the pipeline is
+ * cancelled: the command then stops at its next line printed. The last command
+ * runs in the thread of the shell, which writes in the terminal, so it is not
+ * interrupted.
+ *
+ * @author Fabien Barbero
+ */
+final class CancellableShellIO extends ShellIO {
+
+    private final ShellIO output;
+    private volatile boolean cancelled;
+
+    CancellableShellIO(ShellIO output) {
+        super(output);
+        this.output = output;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    private void checkCancelled() {
+        if(cancelled) {
+            throw new BrokenPipeException();
+        }
+    }
+
+    @Override
+    public void println(String str) {
+        checkCancelled();
+        output.println(str);
+    }
+
+    @Override
+    public void println() {
+        checkCancelled();
+        output.println();
+    }
+
+    @Override
+    void print(String str) {
+        checkCancelled();
+        output.print(str);
+    }
+
+    @Override
+    void flush() {
+        output.flush();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return cancelled || output.isClosed();
+    }
+
+    @Override
+    public WritableByteChannel getTerminalChannel() {
+        final WritableByteChannel channel = output.getTerminalChannel();
+        if(channel == null) {
+            return null;
+        }
+        return new WritableByteChannel() {
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                checkCancelled();
+                return channel.write(src);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return !cancelled && channel.isOpen();
+            }
+
+            @Override
+            public void close() {
+                // The terminal stays open
+            }
+        };
+    }
+
+    @Override
+    public Charset getTerminalCharset() {
+        return output.getTerminalCharset();
+    }
+
+}
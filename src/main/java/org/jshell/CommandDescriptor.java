@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Description of a command given by a {@link ShellCommandProvider}. The class
+ * of the command is only loaded when the command is used for the first time.
+ *
+ * @author Fabien Barbero
+ */
+public final class CommandDescriptor {
+
+    private final String name;
+    private final String help;
+    private final String className;
+    private final List<String> aliases;
+
+    /**
+     * @param name      The name of the command.
+     * @param help      A short description of the command.
+     * @param className The class of the command, with a public constructor
+     *                  without argument.
+     * @param aliases   The other names of the command.
+     */
+    public CommandDescriptor(String name, String help, String className, String... aliases) {
+        this.name = name;
+        this.help = help;
+        this.className = className;
+        this.aliases = Collections.unmodifiableList(Arrays.asList(aliases.clone()));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public List<String> getAliases() {
+        return aliases;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + className + ")";
+    }
+
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parser of the command lines, reading each line in a single pass.
+ * <ul>
+ * <li>the words are separated by white spaces;</li>
+ * <li>a text between double quotes is a single word, in which \" and \\ are escaped;</li>
+ * <li>a text between single quotes is a single word, read as is;</li>
+ * <li>outside of quotes, a backslash escapes the next character;</li>
+ * <li>a | outside of quotes separates two commands;</li>
+ * <li>a &amp; outside of quotes at the end of the line runs it in background;</li>
+ * <li>a line starting with the word time prints the measures of its commands.</li>
+ * </ul>
+ * The last parsed lines are kept in a LRU cache, so a line typed again or
+ * repeated by a script is not parsed twice.
+ *
+ * @author Fabien Barbero
+ */
+final class CommandLineParser {
+
+    static final int DEFAULT_CACHE_SIZE = 256;
+
+    private static final String TIME = "time";
+
+    private final Map<String, ParsedPipeline> cache;
+
+    CommandLineParser() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    CommandLineParser(final int cacheSize) {
+        cache = new LinkedHashMap<String, ParsedPipeline>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ParsedPipeline> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Parse a command line.
+     * @param line  The line typed.
+     * @return      The parsed pipeline.
+     * @throws IllegalArgumentException If the line is not valid.
+     */
+    ParsedPipeline parse(String line) {
+        synchronized(cache) {
+            ParsedPipeline pipeline = cache.get(line);
+            if(pipeline != null) {
+                return pipeline;
+            }
+        }
+        ParsedPipeline pipeline = parsePipeline(line);
+        synchronized(cache) {
+            cache.put(line, pipeline);
+        }
+        return pipeline;
+    }
+
+    private static ParsedPipeline parsePipeline(String line) {
+        List<ParsedCommand> commands = new ArrayList<ParsedCommand>();
+        List<String> words = new ArrayList<String>();
+        StringBuilder word = new StringBuilder();
+        boolean inWord = false;
+        boolean background = false;
+        int length = line.length();
+
+        for(int i=0; i<length; i++) {
+            char c = line.charAt(i);
+            if(background && !Character.isWhitespace(c)) {
+                throw new IllegalArgumentException("Unexpected text after '&' at position " + i);
+            }
+            switch(c) {
+                case ' ':
+                case '\t':
+                case '\r':
+                case '\n':
+                    if(inWord) {
+                        words.add(word.toString());
+                        word.setLength(0);
+                        inWord = false;
+                    }
+                    break;
+                case '|':
+                    if(inWord) {
+                        words.add(word.toString());
+                        word.setLength(0);
+                        inWord = false;
+                    }
+                    if(words.isEmpty()) {
+                        throw new IllegalArgumentException("Missing command before '|' at position " + i);
+                    }
+                    commands.add(toCommand(words));
+                    words.clear();
+                    break;
+                case '&':
+                    if(inWord) {
+                        words.add(word.toString());
+                        word.setLength(0);
+                        inWord = false;
+                    }
+                    if(words.isEmpty()) {
+                        throw new IllegalArgumentException("Missing command before '&' at position " + i);
+                    }
+                    background = true;
+                    break;
+                case '"':
+                    inWord = true;
+                    i = readDoubleQuoted(line, i + 1, word);
+                    break;
+                case '\'':
+                    inWord = true;
+                    int end = line.indexOf('\'', i + 1);
+                    if(end < 0) {
+                        throw new IllegalArgumentException("Missing closing quote for the quote at position " + i);
+                    }
+                    word.append(line, i + 1, end);
+                    i = end;
+                    break;
+                case '\\':
+                    inWord = true;
+                    if(i + 1 < length) {
+                        word.append(line.charAt(++i));
+                    }
+                    break;
+                default:
+                    inWord = true;
+                    word.append(c);
+            }
+        }
+        if(inWord) {
+            words.add(word.toString());
+        }
+        if(!words.isEmpty()) {
+            commands.add(toCommand(words));
+        } else if(!commands.isEmpty()) {
+            throw new IllegalArgumentException("Missing command after '|'");
+        }
+
+        boolean timed = false;
+        if(!commands.isEmpty() && TIME.equals(commands.get(0).getName())) {
+            String[] first = commands.get(0).getWords();
+            if(first.length > 1) {
+                timed = true;
+                commands.set(0, new ParsedCommand(Arrays.copyOfRange(first, 1, first.length)));
+            }
+        }
+        return new ParsedPipeline(commands, background, timed);
+    }
+
+    /**
+     * Read a text between double quotes.
+     * @return The position of the closing quote.
+     */
+    private static int readDoubleQuoted(String line, int start, StringBuilder word) {
+        for(int i=start; i<line.length(); i++) {
+            char c = line.charAt(i);
+            if(c == '"') {
+                return i;
+            }
+            if(c == '\\' && i + 1 < line.length() && (line.charAt(i + 1) == '"' || line.charAt(i + 1) == '\\')) {
+                c = line.charAt(++i);
+            }
+            word.append(c);
+        }
+        throw new IllegalArgumentException("Missing closing quote for the quote at position " + (start - 1));
+    }
+
+    private static ParsedCommand toCommand(List<String> words) {
+        return new ParsedCommand(words.toArray(new String[words.size()]));
+    }
+
+}
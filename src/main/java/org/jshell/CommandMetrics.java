@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cumulative measures of the executions of a command.
+ *
+ * @author Fabien Barbero
+ */
+final class CommandMetrics implements CommandMetricsMXBean {
+
+    private static final int BUCKETS = 40;
+
+    private final String command;
+    private long executions;
+    private long failures;
+    private long wallNanos;
+    private long cpuNanos;
+    private long allocatedBytes;
+    private long linesIn;
+    private long charsIn;
+    private long linesOut;
+    private long charsOut;
+    private final long[] wallHistogram = new long[BUCKETS];
+
+    CommandMetrics(String command) {
+        this.command = command;
+    }
+
+    synchronized void record(StageMetrics stage) {
+        executions++;
+        if(stage.failed) {
+            failures++;
+        }
+        wallNanos += stage.wallNanos;
+        cpuNanos += stage.cpuNanos;
+        allocatedBytes += stage.allocatedBytes;
+        linesIn += stage.linesIn;
+        charsIn += stage.charsIn;
+        linesOut += stage.linesOut;
+        charsOut += stage.charsOut;
+        wallHistogram[bucket(stage.wallNanos / 1000)]++;
+    }
+
+    static int bucket(long micros) {
+        int bucket = micros <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    @Override
+    public String getCommand() {
+        return command;
+    }
+
+    @Override
+    public synchronized long getExecutions() {
+        return executions;
+    }
+
+    @Override
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    @Override
+    public synchronized long getWallTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(wallNanos);
+    }
+
+    @Override
+    public synchronized long getCpuTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(cpuNanos);
+    }
+
+    @Override
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public synchronized long getLinesIn() {
+        return linesIn;
+    }
+
+    @Override
+    public synchronized long getCharsIn() {
+        return charsIn;
+    }
+
+    @Override
+    public synchronized long getLinesOut() {
+        return linesOut;
+    }
+
+    @Override
+    public synchronized long getCharsOut() {
+        return charsOut;
+    }
+
+    @Override
+    public synchronized long[] getWallTimeHistogram() {
+        return wallHistogram.clone();
+    }
+
+    /**
+     * Print the measures and the histogram of the wall times.
+     * @param handler The output.
+     */
+    synchronized void print(ShellIO handler) {
+        handler.println(String.format("%s: %d executions, %d failed, wall %d ms, cpu %d ms, alloc %d KB",
+                command, executions, failures, getWallTimeMillis(), getCpuTimeMillis(), allocatedBytes / 1024));
+        handler.println(String.format("  in %d lines (%d chars), out %d lines (%d chars)",
+                linesIn, charsIn, linesOut, charsOut));
+        long max = 0;
+        for(long count : wallHistogram) {
+            max = Math.max(max, count);
+        }
+        for(int i=0; i<BUCKETS; i++) {
+            if(wallHistogram[i] > 0) {
+                int width = (int) (wallHistogram[i] * 30 / max);
+                handler.println(String.format("  %8s - %-8s %-30s %d", formatMicros(i == 0 ? 0 : 1L << i), formatMicros(1L << (i + 1)),
+                        repeat('#', Math.max(width, 1)), wallHistogram[i]));
+            }
+        }
+    }
+
+    private static String formatMicros(long micros) {
+        if(micros < 1000) {
+            return micros + "us";
+        } else if(micros < 1000000) {
+            return micros / 1000 + "ms";
+        }
+        return micros / 1000000 + "s";
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for(int i=0; i<count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+/**
+ * Cumulative measures of a command, exported in JMX under the name
+ * <code>org.jshell:type=CommandMetrics,shell=N,name=COMMAND</code>.
+ *
+ * @author Fabien Barbero
+ */
+public interface CommandMetricsMXBean {
+
+    String getCommand();
+
+    long getExecutions();
+
+    long getFailures();
+
+    long getWallTimeMillis();
+
+    long getCpuTimeMillis();
+
+    long getAllocatedBytes();
+
+    long getLinesIn();
+
+    long getCharsIn();
+
+    long getLinesOut();
+
+    long getCharsOut();
+
+    /**
+     * Get the histogram of the wall times. The bucket i counts the executions
+     * lasting between 2^i and 2^(i+1) microseconds.
+     * @return The counts of the buckets.
+     */
+    long[] getWallTimeHistogram();
+
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import jline.SimpleCompletor;
+
+/**
+ * The commands of a shell, indexed by name and by alias. The lookups and the
+ * registrations do not lock, so commands can be added or removed while the
+ * shell is running. The completor of the console is updated with each change.
+ * <p>
+ * The commands discovered from their description are created the first time
+ * they are found. A registered command replaces a discovered command with the
+ * same name.
+ *
+ * @author Fabien Barbero
+ */
+final class CommandRegistry {
+
+    private final ConcurrentMap<String, ShellCommand> commands = new ConcurrentHashMap<String, ShellCommand>();
+    private final ConcurrentMap<String, String> aliases = new ConcurrentHashMap<String, String>();
+    private final ConcurrentMap<String, DiscoveredCommand> discovered = new ConcurrentHashMap<String, DiscoveredCommand>();
+
+    private volatile SimpleCompletor completor;
+
+    /**
+     * Register a command, replacing the command registered with the same name.
+     * @param command The command to register.
+     */
+    void register(ShellCommand command) {
+        commands.put(command.name(), command);
+        updateCompletor();
+    }
+
+    /**
+     * Unregister a command.
+     * @param command The command to unregister.
+     */
+    void unregister(ShellCommand command) {
+        if(commands.remove(command.name(), command)) {
+            updateCompletor();
+        }
+    }
+
+    /**
+     * Register the description of a command, created when it is used, and its
+     * aliases.
+     * @param descriptor    The description of the command.
+     * @param classLoader   The class loader of the command.
+     */
+    void register(CommandDescriptor descriptor, ClassLoader classLoader) {
+        discovered.put(descriptor.getName(), new DiscoveredCommand(descriptor, classLoader));
+        for(String alias : descriptor.getAliases()) {
+            aliases.put(alias, descriptor.getName());
+        }
+        updateCompletor();
+    }
+
+    /**
+     * Register an other name for a command.
+     * @param alias The other name.
+     * @param name  The name of the command.
+     */
+    void registerAlias(String alias, String name) {
+        aliases.put(alias, name);
+        updateCompletor();
+    }
+
+    /**
+     * Unregister an other name of a command.
+     * @param alias The other name.
+     */
+    void unregisterAlias(String alias) {
+        if(aliases.remove(alias) != null) {
+            updateCompletor();
+        }
+    }
+
+    /**
+     * Find a command by its name or one of its aliases.
+     * @param name  The name or the alias.
+     * @return      The command, or null if none is registered with this name.
+     */
+    ShellCommand find(String name) {
+        ShellCommand command = lookup(name);
+        if(command == null) {
+            String aliased = aliases.get(name);
+            if(aliased != null) {
+                command = lookup(aliased);
+            }
+        }
+        return command;
+    }
+
+    /**
+     * Get the reason why a discovered command could not be created.
+     * @param name  The name or the alias of the command.
+     * @return      The error, or null if the command is not discovered or was
+     *              created.
+     */
+    String getError(String name) {
+        DiscoveredCommand discoveredCommand = discovered.get(name);
+        if(discoveredCommand == null) {
+            String aliased = aliases.get(name);
+            if(aliased != null) {
+                discoveredCommand = discovered.get(aliased);
+            }
+        }
+        return discoveredCommand == null ? null : discoveredCommand.getError();
+    }
+
+    private ShellCommand lookup(String name) {
+        ShellCommand command = commands.get(name);
+        if(command == null) {
+            DiscoveredCommand discoveredCommand = discovered.get(name);
+            if(discoveredCommand != null) {
+                command = discoveredCommand.get();
+            }
+        }
+        return command;
+    }
+
+    /**
+     * Get the commands. The discovered commands not used yet are created.
+     * @return The commands.
+     */
+    Collection<ShellCommand> getCommands() {
+        List<ShellCommand> list = new ArrayList<ShellCommand>(commands.values());
+        for(DiscoveredCommand discoveredCommand : discovered.values()) {
+            if(!commands.containsKey(discoveredCommand.descriptor.getName())) {
+                ShellCommand command = discoveredCommand.get();
+                if(command != null) {
+                    list.add(command);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Get the names of the commands with their short help, without creating
+     * the discovered commands.
+     * @return The help of the commands by name, null for the commands without
+     *         description.
+     */
+    SortedMap<String, String> getDescriptions() {
+        SortedMap<String, String> descriptions = new TreeMap<String, String>();
+        for(DiscoveredCommand discoveredCommand : discovered.values()) {
+            descriptions.put(discoveredCommand.descriptor.getName(), discoveredCommand.descriptor.getHelp());
+        }
+        for(ShellCommand command : commands.values()) {
+            String help = null;
+            if(command instanceof AbstractShellCommand) {
+                help = ((AbstractShellCommand) command).getHelpMessage();
+                int end = help.indexOf('\n');
+                help = end < 0 ? help : help.substring(0, end);
+            }
+            descriptions.put(command.name(), help);
+        }
+        return descriptions;
+    }
+
+    /**
+     * Set the completor to update with the names of the commands.
+     * @param completor The completor of the console.
+     */
+    void setCompletor(SimpleCompletor completor) {
+        this.completor = completor;
+        updateCompletor();
+    }
+
+    private void updateCompletor() {
+        SimpleCompletor current = completor;
+        if(current != null) {
+            SortedSet<String> names = new TreeSet<String>(commands.keySet());
+            names.addAll(discovered.keySet());
+            names.addAll(aliases.keySet());
+            // The set is replaced, never modified, while the console may read it
+            current.setCandidates(names);
+        }
+    }
+
+    /**
+     * Command created from its description the first time it is used.
+     */
+    private static final class DiscoveredCommand {
+
+        private final CommandDescriptor descriptor;
+        private final ClassLoader classLoader;
+        private ShellCommand command;
+        private String error;
+
+        DiscoveredCommand(CommandDescriptor descriptor, ClassLoader classLoader) {
+            this.descriptor = descriptor;
+            this.classLoader = classLoader;
+        }
+
+        synchronized ShellCommand get() {
+            if(command == null && error == null) {
+                try {
+                    command = Class.forName(descriptor.getClassName(), true, classLoader)
+                            .asSubclass(ShellCommand.class).getDeclaredConstructor().newInstance();
+                } catch(InvocationTargetException ex) {
+                    failed(ex.getCause());
+                } catch(Exception ex) {
+                    failed(ex);
+                } catch(LinkageError ex) {
+                    failed(ex);
+                }
+            }
+            return command;
+        }
+
+        private void failed(Throwable cause) {
+            // The command is then not found, the error is given to the caller
+            error = "Can not create the command " + descriptor + ": " + cause;
+        }
+
+        synchronized String getError() {
+            return error;
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+/**
+ * Built-in command waiting for a job and printing its output. Ctrl-C kills
+ * the job.
+ *
+ * @author Fabien Barbero
+ */
+final class FgCommand extends AbstractShellCommand {
+
+    FgCommand() {
+        super("fg");
+    }
+
+    @Override
+    protected String getHelpMessage() {
+        return "Waits for a job and prints its output\n"
+                + "  fg [%N]             waits for the job N (default the last job)";
+    }
+
+    @Override
+    protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+        JobTable jobs = handler.getJobs();
+        Job job = jobs.find(args.getArgumentAt(0));
+        if(job == null) {
+            handler.println("No such job");
+            return;
+        }
+        if(!job.waitFor(handler)) {
+            // Cancelled: the killed job is reported before the next prompt
+            job.kill();
+            return;
+        }
+        jobs.remove(job);
+        job.report(handler);
+    }
+
+}
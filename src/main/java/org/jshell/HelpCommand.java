@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.Map;
+
+/**
+ * Built-in command listing the commands of the shell, without creating the
+ * discovered commands not used yet.
+ *
+ * @author Fabien Barbero
+ */
+final class HelpCommand extends AbstractShellCommand {
+
+    private final CommandRegistry commands;
+
+    HelpCommand(CommandRegistry commands) {
+        super("help");
+        this.commands = commands;
+    }
+
+    @Override
+    protected String getHelpMessage() {
+        return "Lists the commands, 'COMMAND -help' prints the help of a command";
+    }
+
+    @Override
+    protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+        for(Map.Entry<String, String> entry : commands.getDescriptions().entrySet()) {
+            String help = entry.getValue();
+            handler.println(help == null ? entry.getKey() : String.format("%-20s%s", entry.getKey(), help));
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Handler of the interrupt signal (Ctrl-C) of the console. It is the only
+ * class using the signals of the JVM. They are an internal API of the JDK, so
+ * they are loaded by reflection: the build does not depend on them, and the
+ * handler is simply not installed on a JVM without them.
+ *
+ * @author Fabien Barbero
+ */
+final class InterruptSignal {
+
+    private InterruptSignal() {
+    }
+
+    /**
+     * Cancel the foreground pipeline of the jobs on Ctrl-C instead of
+     * stopping the process.
+     * @param jobs The jobs of the console.
+     * @return true if the handler is installed, false if the signal is not
+     *         supported.
+     */
+    static boolean install(final JobTable jobs) {
+        try {
+            Class<?> signalClass = Class.forName("sun.misc.Signal");
+            Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+            Object handler = Proxy.newProxyInstance(InterruptSignal.class.getClassLoader(), new Class<?>[] {handlerClass},
+                    new InvocationHandler() {
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    switch(method.getName()) {
+                        case "handle":
+                            jobs.cancelForeground();
+                            return null;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            return "InterruptSignal";
+                    }
+                }
+            });
+            Object signal = signalClass.getConstructor(String.class).newInstance("INT");
+            signalClass.getMethod("handle", signalClass, handlerClass).invoke(null, signal, handler);
+            return true;
+        } catch(ReflectiveOperationException ex) {
+            // Unknown class or signal
+            return false;
+        } catch(IllegalArgumentException ex) {
+            return false;
+        } catch(LinkageError ex) {
+            return false;
+        }
+    }
+
+}
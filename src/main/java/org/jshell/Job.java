@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command line running in background. The lines printed by the job are kept
+ * until the job is reported, so they are not mixed with the lines of the
+ * command lines running in foreground.
+ *
+ * @author Fabien Barbero
+ */
+final class Job implements Runnable {
+
+    enum State {
+        WAITING("Waiting"), RUNNING("Running"), DONE("Done"), FAILED("Failed"), KILLED("Killed");
+
+        private final String label;
+
+        private State(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private static final long WAIT_POLL_MS = 100;
+
+    private final int id;
+    private final String line;
+    private final Pipeline pipeline;
+    private final ExecutorService pipelineExecutor;
+    private final int pipeCapacity;
+    private final LineStore output = new LineStore();
+    private final ShellIO io = new JobIO(output);
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile State state = State.WAITING;
+    private Future<?> future;
+
+    Job(int id, String line, Pipeline pipeline, ExecutorService pipelineExecutor, int pipeCapacity) {
+        this.id = id;
+        this.line = line;
+        this.pipeline = pipeline;
+        this.pipelineExecutor = pipelineExecutor;
+        this.pipeCapacity = pipeCapacity;
+    }
+
+    /**
+     * Submit the job.
+     * @param executor The executor running the jobs.
+     */
+    synchronized void start(ExecutorService executor) {
+        future = executor.submit(this);
+    }
+
+    @Override
+    public void run() {
+        state = State.RUNNING;
+        try {
+            boolean succeeded = pipeline.execute(pipelineExecutor, null, io, pipeCapacity);
+            state = pipeline.isCancelled() ? State.KILLED : succeeded ? State.DONE : State.FAILED;
+        } catch(InterruptedException ex) {
+            state = State.KILLED;
+        } catch(RuntimeException ex) {
+            state = State.FAILED;
+            ex.printStackTrace();
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    /**
+     * Kill the job. A waiting job does not start, a running job is cancelled.
+     */
+    void kill() {
+        pipeline.cancel();
+        synchronized(this) {
+            if(future != null && future.cancel(false)) {
+                // The job never started
+                state = State.KILLED;
+                finished.countDown();
+            }
+        }
+    }
+
+    /**
+     * Wait for the end of the job.
+     */
+    void waitFor() throws InterruptedException {
+        finished.await();
+    }
+
+    /**
+     * Wait for the end of the job, or until an output is closed, when the
+     * command line waiting for the job is cancelled.
+     * @param handler   The output of the command waiting.
+     * @return          true if the job has finished, false if the output was
+     *                  closed before.
+     */
+    boolean waitFor(ShellIO handler) throws InterruptedException {
+        while(!finished.await(WAIT_POLL_MS, TimeUnit.MILLISECONDS)) {
+            if(handler.isClosed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isFinished() {
+        return finished.getCount() == 0;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    String getLine() {
+        return line;
+    }
+
+    State getState() {
+        return state;
+    }
+
+    /**
+     * Get the number of lines printed by the job.
+     * @return The number of lines.
+     */
+    long getLineCount() {
+        synchronized(output) {
+            return output.getLineCount();
+        }
+    }
+
+    /**
+     * Print the state of the finished job and the lines it printed, then
+     * release the lines.
+     * @param handler The output of the shell.
+     */
+    void report(ShellIO handler) {
+        synchronized(output) {
+            Iterator<String> lines = output.iterator();
+            while(lines.hasNext()) {
+                handler.println(lines.next());
+            }
+            output.close();
+        }
+        handler.println(this.toString());
+    }
+
+    @Override
+    public String toString() {
+        return "[" + id + "] " + state + "\t" + line;
+    }
+
+    /**
+     * Output of a job, kept in a line store. A job can not exit the shell.
+     */
+    private static final class JobIO extends ShellIO {
+
+        private final LineStore output;
+
+        JobIO(LineStore output) {
+            super((LineInput) null);
+            this.output = output;
+        }
+
+        @Override
+        public void println(String str) {
+            synchronized(output) {
+                output.add(str);
+            }
+        }
+
+        @Override
+        public void println() {
+            println("");
+        }
+
+        @Override
+        public void exit(int status) {
+            println("Can not exit the shell from a background job");
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Jobs started by a session of the shell, and the pipeline running in
+ * foreground.
+ *
+ * @author Fabien Barbero
+ */
+final class JobTable {
+
+    private final TreeMap<Integer, Job> jobs = new TreeMap<Integer, Job>();
+    private volatile Pipeline foreground;
+
+    /**
+     * Start a command line in background.
+     * @param line              The command line.
+     * @param pipeline          The pipeline of the line.
+     * @param jobExecutor       The executor running the jobs.
+     * @param pipelineExecutor  The executor running the commands of the pipelines.
+     * @param pipeCapacity      The maximum number of lines waiting in a pipe.
+     * @return                  The job.
+     */
+    synchronized Job start(String line, Pipeline pipeline, ExecutorService jobExecutor, ExecutorService pipelineExecutor, int pipeCapacity) {
+        int id = jobs.isEmpty() ? 1 : jobs.lastKey() + 1;
+        Job job = new Job(id, line, pipeline, pipelineExecutor, pipeCapacity);
+        jobs.put(id, job);
+        job.start(jobExecutor);
+        return job;
+    }
+
+    /**
+     * Find a job.
+     * @param spec  The number of the job, optionally prefixed by '%', or null
+     *              for the last job.
+     * @return      The job, or null if there is no such job.
+     */
+    synchronized Job find(String spec) {
+        if(spec == null) {
+            return jobs.isEmpty() ? null : jobs.lastEntry().getValue();
+        }
+        try {
+            return jobs.get(Integer.valueOf(spec.startsWith("%") ? spec.substring(1) : spec));
+        } catch(NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    synchronized List<Job> getJobs() {
+        return new ArrayList<Job>(jobs.values());
+    }
+
+    synchronized void remove(Job job) {
+        jobs.remove(job.getId());
+    }
+
+    /**
+     * Report the finished jobs and forget them.
+     * @param handler The output of the shell.
+     */
+    void reportFinished(ShellIO handler) {
+        for(Job job : getJobs()) {
+            if(job.isFinished()) {
+                remove(job);
+                job.report(handler);
+            }
+        }
+    }
+
+    /**
+     * Kill all the jobs, when the session ends.
+     */
+    void killAll() {
+        for(Job job : getJobs()) {
+            job.kill();
+        }
+    }
+
+    void setForeground(Pipeline pipeline) {
+        foreground = pipeline;
+    }
+
+    /**
+     * Cancel the pipeline running in foreground.
+     * @return true if a pipeline was cancelled, false if none was running.
+     */
+    boolean cancelForeground() {
+        Pipeline pipeline = foreground;
+        if(pipeline == null) {
+            return false;
+        }
+        pipeline.cancel();
+        return true;
+    }
+
+}
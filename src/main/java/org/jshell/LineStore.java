@@ -0,0 +1,477 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Compact storage of lines, for the commands which must keep all their input
+ * or output. The lines are stored in UTF-8, prefixed by their length, in large
+ * chunks taken from a pool. When the chunks exceed a given size, the next ones
+ * are written in a temporary file, read back through memory mapping.
+ * <p>
+ * A store is written by one thread, then read: the lines added while iterating
+ * are not seen by the iterator.
+ *
+ * @author Fabien Barbero
+ */
+public final class LineStore {
+
+    /** Size of the chunks, a line larger than a chunk gets its own chunk. */
+    static final int CHUNK_SIZE = 1024 * 1024;
+
+    /** Default size of the chunks kept in memory. */
+    public static final long DEFAULT_MEMORY_LIMIT = 64L * 1024 * 1024;
+
+    private static final int MAX_POOLED_CHUNKS = 64;
+    private static final int MAX_LENGTH_BYTES = 5;
+    private static final Queue<ByteBuffer> HEAP_POOL = new ConcurrentLinkedQueue<ByteBuffer>();
+    private static final Queue<ByteBuffer> DIRECT_POOL = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    private final long memoryLimit;
+    private final boolean direct;
+
+    /** Full chunks kept in memory, ready to be read. */
+    private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+    /** Positions and lengths of the chunks written in the spill file. */
+    private final List<long[]> spilledChunks = new ArrayList<long[]>();
+    private ByteBuffer current;
+    private long memorySize;
+    private File spillFile;
+    private FileChannel spillChannel;
+    private long spillSize;
+
+    private long lineCount;
+    private long byteCount;
+    private boolean closed;
+
+    /**
+     * Create a store keeping up to {@link #DEFAULT_MEMORY_LIMIT} bytes on the heap.
+     */
+    public LineStore() {
+        this(DEFAULT_MEMORY_LIMIT, false);
+    }
+
+    /**
+     * Create a store.
+     * @param memoryLimit   The size of the chunks kept in memory before using a temporary file.
+     * @param direct        true to allocate the chunks outside of the heap.
+     */
+    public LineStore(long memoryLimit, boolean direct) {
+        this.memoryLimit = memoryLimit;
+        this.direct = direct;
+    }
+
+    /**
+     * Add a line.
+     * @param line The line.
+     */
+    public void add(CharSequence line) {
+        int length = utf8Length(line);
+        ByteBuffer chunk = reserve(length);
+        putLength(chunk, length);
+        putUtf8(chunk, line);
+        added(length);
+    }
+
+    /**
+     * Add a line already encoded in UTF-8.
+     * @param line The bytes between the position and the limit of the buffer,
+     *             the buffer is not modified.
+     */
+    public void add(ByteBuffer line) {
+        int length = line.remaining();
+        ByteBuffer chunk = reserve(length);
+        putLength(chunk, length);
+        chunk.put(line.duplicate());
+        added(length);
+    }
+
+    /**
+     * Get the number of lines.
+     * @return The number of lines.
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Get the size of the lines, in UTF-8.
+     * @return The number of bytes.
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Indicates if some lines have been written in a temporary file.
+     * @return true if a temporary file is used, otherwise false.
+     */
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Iterate the lines.
+     * @return The lines, in the order they have been added.
+     */
+    public Iterator<String> iterator() {
+        final Cursor cursor = new Cursor();
+        return new Iterator<String>() {
+
+            private byte[] bytes = new byte[256];
+
+            @Override
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            @Override
+            public String next() {
+                ByteBuffer line = cursor.next();
+                if(line.hasArray()) {
+                    return new String(line.array(), line.arrayOffset() + line.position(), line.remaining(), StandardCharsets.UTF_8);
+                }
+                int length = line.remaining();
+                if(bytes.length < length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                line.get(bytes, 0, length);
+                return new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Iterate the lines without decoding them. The returned buffer is reused:
+     * it is only valid until the next call of the iterator.
+     * @return The UTF-8 bytes of the lines, between the position and the limit
+     *         of the buffers, in the order they have been added.
+     */
+    public Iterator<ByteBuffer> byteIterator() {
+        final Cursor cursor = new Cursor();
+        return new Iterator<ByteBuffer>() {
+
+            @Override
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            @Override
+            public ByteBuffer next() {
+                return cursor.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Give back the unused space of the last chunk, when no more lines will be
+     * added to a store which is kept. More lines can still be added.
+     */
+    public void compact() {
+        if(current == null || current.capacity() != CHUNK_SIZE) {
+            return;
+        }
+        ByteBuffer compacted = allocate(current.position());
+        current.flip();
+        compacted.put(current);
+        release(current);
+        current = compacted;
+    }
+
+    /**
+     * Write all the lines in the temporary file, to free the memory of a store
+     * which is kept. More lines can still be added. The file is then closed
+     * until the lines are read, so the stores kept do not hold a file
+     * descriptor each.
+     */
+    public void spill() {
+        if(closed) {
+            throw new IllegalStateException("Store closed");
+        }
+        for(ByteBuffer chunk : chunks) {
+            spill(chunk);
+        }
+        chunks.clear();
+        memorySize = 0;
+        if(current != null) {
+            current.flip();
+            if(current.hasRemaining()) {
+                spill(current);
+            } else {
+                release(current);
+            }
+            current = null;
+        }
+        closeSpillChannel();
+    }
+
+    /**
+     * Release the chunks and delete the temporary file. The store can not be
+     * used anymore.
+     */
+    public void close() {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        for(ByteBuffer chunk : chunks) {
+            release(chunk);
+        }
+        chunks.clear();
+        if(current != null) {
+            release(current);
+            current = null;
+        }
+        closeSpillChannel();
+        if(spillFile != null) {
+            spillFile.delete();
+        }
+    }
+
+    private synchronized FileChannel getSpillChannel() throws IOException {
+        if(spillChannel == null) {
+            if(spillFile == null) {
+                spillFile = File.createTempFile("jshell-lines", ".tmp");
+                spillFile.deleteOnExit();
+            }
+            spillChannel = new RandomAccessFile(spillFile, "rw").getChannel();
+        }
+        return spillChannel;
+    }
+
+    private synchronized void closeSpillChannel() {
+        if(spillChannel != null) {
+            try {
+                spillChannel.close();
+            } catch(IOException ex) {
+                // The bytes written are kept by the file
+            }
+            spillChannel = null;
+        }
+    }
+
+    private void added(int length) {
+        lineCount++;
+        byteCount += length;
+    }
+
+    /**
+     * Get a chunk with enough space for a line.
+     */
+    private ByteBuffer reserve(int length) {
+        if(closed) {
+            throw new IllegalStateException("Store closed");
+        }
+        int needed = length + MAX_LENGTH_BYTES;
+        if(current != null && current.remaining() >= needed) {
+            return current;
+        }
+        if(current != null) {
+            store(current);
+        }
+        current = needed > CHUNK_SIZE ? allocate(needed) : acquire();
+        return current;
+    }
+
+    private void store(ByteBuffer chunk) {
+        chunk.flip();
+        if(memorySize + chunk.capacity() <= memoryLimit) {
+            chunks.add(chunk);
+            memorySize += chunk.capacity();
+        } else {
+            spill(chunk);
+        }
+    }
+
+    private void spill(ByteBuffer chunk) {
+        try {
+            FileChannel channel = getSpillChannel();
+            long position = spillSize;
+            int length = chunk.remaining();
+            while(chunk.hasRemaining()) {
+                channel.write(chunk, spillSize + (length - chunk.remaining()));
+            }
+            spillSize += length;
+            spilledChunks.add(new long[] {position, length});
+        } catch(IOException ex) {
+            throw new IllegalStateException("Error writing the temporary file", ex);
+        } finally {
+            release(chunk);
+        }
+    }
+
+    private ByteBuffer acquire() {
+        ByteBuffer chunk = (direct ? DIRECT_POOL : HEAP_POOL).poll();
+        if(chunk == null) {
+            return allocate(CHUNK_SIZE);
+        }
+        chunk.clear();
+        return chunk;
+    }
+
+    private ByteBuffer allocate(int size) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    private void release(ByteBuffer chunk) {
+        if(chunk.capacity() != CHUNK_SIZE) {
+            return;
+        }
+        Queue<ByteBuffer> pool = chunk.isDirect() ? DIRECT_POOL : HEAP_POOL;
+        // The size of the queue is not exact under contention, which is harmless
+        if(pool.size() < MAX_POOLED_CHUNKS) {
+            pool.offer(chunk);
+        }
+    }
+
+    private static void putLength(ByteBuffer chunk, int length) {
+        while(length >= 0x80) {
+            chunk.put((byte) (length | 0x80));
+            length >>>= 7;
+        }
+        chunk.put((byte) length);
+    }
+
+    private static int getLength(ByteBuffer chunk) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = chunk.get();
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while(b < 0);
+        return length;
+    }
+
+    static int utf8Length(CharSequence line) {
+        return (int) OutputRetention.utf8Length(line);
+    }
+
+    private static void putUtf8(ByteBuffer chunk, CharSequence line) {
+        int length = line.length();
+        for(int i=0; i<length; i++) {
+            char c = line.charAt(i);
+            if(c < 0x80) {
+                chunk.put((byte) c);
+            } else if(c < 0x800) {
+                chunk.put((byte) (0xC0 | (c >> 6)));
+                chunk.put((byte) (0x80 | (c & 0x3F)));
+            } else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(line.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, line.charAt(++i));
+                chunk.put((byte) (0xF0 | (codePoint >> 18)));
+                chunk.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                chunk.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                chunk.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                if(Character.isSurrogate(c)) {
+                    c = '?';
+                }
+                chunk.put((byte) (0xE0 | (c >> 12)));
+                chunk.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                chunk.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Reads the lines of the memory chunks, then of the spilled chunks, then of
+     * the current chunk.
+     */
+    private final class Cursor {
+
+        private final int memoryChunks = chunks.size();
+        private final int spilled = spilledChunks.size();
+        private final int currentLimit = current == null ? 0 : current.position();
+        private int segment = -1;
+        private ByteBuffer chunk;
+        private ByteBuffer view;
+
+        boolean hasNext() {
+            while(chunk == null || !chunk.hasRemaining()) {
+                if(!nextSegment()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        ByteBuffer next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int length = getLength(chunk);
+            int start = chunk.position();
+            view.clear();
+            view.limit(start + length).position(start);
+            chunk.position(start + length);
+            return view;
+        }
+
+        private boolean nextSegment() {
+            if(closed) {
+                throw new IllegalStateException("Store closed");
+            }
+            segment++;
+            if(segment < memoryChunks) {
+                chunk = chunks.get(segment).duplicate();
+            } else if(segment < memoryChunks + spilled) {
+                long[] spill = spilledChunks.get(segment - memoryChunks);
+                try {
+                    chunk = getSpillChannel().map(FileChannel.MapMode.READ_ONLY, spill[0], spill[1]);
+                } catch(IOException ex) {
+                    throw new IllegalStateException("Error reading the temporary file", ex);
+                }
+            } else if(segment == memoryChunks + spilled && current != null) {
+                chunk = current.duplicate();
+                chunk.position(0).limit(currentLimit);
+            } else {
+                return false;
+            }
+            view = chunk.duplicate();
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Launcher of the shell with the commands discovered on the class path.
+ * <pre>
+ * java org.jshell.Main                      starts the shell in the console
+ * java org.jshell.Main -c "cat f | grep x"  executes a command line
+ * java org.jshell.Main -f script.jsh        executes a script
+ * java org.jshell.Main -server 7777         accepts sessions on a local port
+ * </pre>
+ * The process exits with the status of the last command line executed.
+ *
+ * @author Fabien Barbero
+ */
+public final class Main {
+
+    private Main() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Shell shell = new Shell();
+        shell.discoverCommands();
+
+        if(args.length == 0) {
+            shell.start();
+            return;
+        }
+
+        if(args.length == 2 && "-server".equals(args[0])) {
+            ShellServer server = shell.startServer(Integer.parseInt(args[1]));
+            System.err.println("Listening on port " + server.getPort());
+            return;
+        }
+
+        Reader script;
+        if(args.length == 2 && "-c".equals(args[0])) {
+            script = new StringReader(args[1]);
+        } else if(args.length == 2 && "-f".equals(args[0])) {
+            script = new InputStreamReader(new FileInputStream(args[1]), "UTF-8");
+        } else {
+            System.err.println("Usage: [-c COMMAND_LINE | -f SCRIPT | -server PORT]");
+            System.exit(Shell.EXIT_SYNTAX_ERROR);
+            return;
+        }
+        int status;
+        try {
+            status = shell.run(script);
+        } finally {
+            script.close();
+        }
+        System.exit(status);
+    }
+
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Output of a command counting what the command prints before giving it to the
+ * real output. The bytes written directly in the terminal channel are not
+ * counted: the channel is given as is, so the file channels can still transfer
+ * their content to it without copy.
+ *
+ * @author Fabien Barbero
+ */
+final class MeteredShellIO extends ShellIO {
+
+    private final ShellIO output;
+    private long lines;
+    private long chars;
+
+    MeteredShellIO(ShellIO output) {
+        super(output);
+        this.output = output;
+    }
+
+    @Override
+    public void println(String str) {
+        lines++;
+        chars += str.length();
+        output.println(str);
+    }
+
+    @Override
+    public void println() {
+        lines++;
+        output.println();
+    }
+
+    @Override
+    void print(String str) {
+        chars += str.length();
+        output.print(str);
+    }
+
+    @Override
+    void flush() {
+        output.flush();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return output.isClosed();
+    }
+
+    @Override
+    public WritableByteChannel getTerminalChannel() {
+        return output.getTerminalChannel();
+    }
+
+    @Override
+    public Charset getTerminalCharset() {
+        return output.getTerminalCharset();
+    }
+
+    long getLineCount() {
+        return lines;
+    }
+
+    long getCharCount() {
+        return chars;
+    }
+
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Policy deciding which lines printed in the terminal are kept by the shell,
+ * for the scroll-back or to reuse them. The size of a line is its length in
+ * UTF-8, with its line terminator.
+ *
+ * @author Fabien Barbero
+ */
+public abstract class OutputRetention {
+
+    private long lineCount;
+    private long byteCount;
+
+    OutputRetention() {
+    }
+
+    /**
+     * Keep no line. This is the default policy.
+     * @return The policy.
+     */
+    public static OutputRetention none() {
+        return new None();
+    }
+
+    /**
+     * Keep the last lines printed.
+     * @param maxLines  The maximum number of lines kept.
+     * @return          The policy.
+     */
+    public static OutputRetention lastLines(int maxLines) {
+        if(maxLines < 1) {
+            throw new IllegalArgumentException("Invalid number of lines: " + maxLines);
+        }
+        return new Ring(maxLines, Long.MAX_VALUE);
+    }
+
+    /**
+     * Keep the last lines printed, up to a given size.
+     * @param maxBytes  The maximum size of the lines kept.
+     * @return          The policy.
+     */
+    public static OutputRetention lastBytes(long maxBytes) {
+        if(maxBytes < 1) {
+            throw new IllegalArgumentException("Invalid number of bytes: " + maxBytes);
+        }
+        return new Ring(Integer.MAX_VALUE, maxBytes);
+    }
+
+    /**
+     * Keep all the lines in a temporary file instead of the memory.
+     * @return The policy.
+     * @throws IOException If the file can not be created.
+     */
+    public static OutputRetention tempFile() throws IOException {
+        return new TempFile();
+    }
+
+    /**
+     * Called with each line printed.
+     * @param line The line printed.
+     */
+    final synchronized void retain(String line) {
+        long size = utf8Length(line) + 1;
+        if(store(line, size)) {
+            lineCount++;
+            byteCount += size;
+        }
+    }
+
+    /**
+     * Get the number of lines kept.
+     * @return The number of lines.
+     */
+    public final synchronized long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Get the size of the lines kept.
+     * @return The size in bytes.
+     */
+    public final synchronized long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Get the lines kept, the oldest first.
+     * @return A copy of the lines.
+     */
+    public abstract List<String> getLines() throws IOException;
+
+    final synchronized void removed(long size) {
+        lineCount--;
+        byteCount -= size;
+    }
+
+    /**
+     * Keep a line.
+     * @return true if the line is kept, otherwise false.
+     */
+    abstract boolean store(String line, long size);
+
+    /**
+     * Tell if the printed lines are kept.
+     * @return false if no line is ever kept.
+     */
+    boolean isRetaining() {
+        return true;
+    }
+
+    static long utf8Length(CharSequence line) {
+        long length = 0;
+        for(int i=0; i<line.length(); i++) {
+            char c = line.charAt(i);
+            if(c < 0x80) {
+                length++;
+            } else if(c < 0x800) {
+                length += 2;
+            } else if(Character.isHighSurrogate(c) && i + 1 < line.length() && Character.isLowSurrogate(line.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static final class None extends OutputRetention {
+
+        @Override
+        boolean store(String line, long size) {
+            return false;
+        }
+
+        @Override
+        boolean isRetaining() {
+            return false;
+        }
+
+        @Override
+        public List<String> getLines() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public String toString() {
+            return "none";
+        }
+    }
+
+    private static final class Ring extends OutputRetention {
+
+        private final int maxLines;
+        private final long maxBytes;
+        private final Deque<String> lines = new ArrayDeque<String>();
+
+        Ring(int maxLines, long maxBytes) {
+            this.maxLines = maxLines;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        boolean store(String line, long size) {
+            if(size > maxBytes) {
+                return false;
+            }
+            while(!lines.isEmpty() && (lines.size() >= maxLines || getByteCount() + size > maxBytes)) {
+                removed(utf8Length(lines.removeFirst()) + 1);
+            }
+            lines.addLast(line);
+            return true;
+        }
+
+        @Override
+        public synchronized List<String> getLines() {
+            return new ArrayList<String>(lines);
+        }
+
+        @Override
+        public String toString() {
+            return maxBytes == Long.MAX_VALUE ? "last " + maxLines + " lines" : "last " + maxBytes + " bytes";
+        }
+    }
+
+    private static final class TempFile extends OutputRetention {
+
+        private final File file;
+        private final Writer writer;
+
+        TempFile() throws IOException {
+            file = File.createTempFile("jshell-output", ".txt");
+            file.deleteOnExit();
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        }
+
+        @Override
+        boolean store(String line, long size) {
+            try {
+                writer.write(line);
+                writer.write('\n');
+                return true;
+            } catch(IOException ex) {
+                return false;
+            }
+        }
+
+        @Override
+        public synchronized List<String> getLines() throws IOException {
+            writer.flush();
+            List<String> lines = new ArrayList<String>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line;
+                while((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+            } finally {
+                reader.close();
+            }
+            return lines;
+        }
+
+        @Override
+        public String toString() {
+            return "file " + file;
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.Arrays;
+
+/**
+ * A command of a parsed command line: its name and its arguments.
+ *
+ * @author Fabien Barbero
+ */
+final class ParsedCommand {
+
+    private final String[] words;
+    private final ArgumentsList arguments;
+
+    /**
+     * @param words The words of the command: its name followed by its arguments.
+     */
+    ParsedCommand(String... words) {
+        this.words = words;
+        this.arguments = new ArgumentsList(Arrays.copyOfRange(words, 1, words.length));
+    }
+
+    String getName() {
+        return words[0];
+    }
+
+    /**
+     * Get the words of the command.
+     * @return A copy of the name followed by the arguments.
+     */
+    String[] getWords() {
+        return words.clone();
+    }
+
+    ArgumentsList getArguments() {
+        return arguments;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(words);
+    }
+
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A parsed command line: the commands linked by pipes. Instances are immutable,
+ * so the same instance can be reused each time a line is typed again.
+ *
+ * @author Fabien Barbero
+ */
+final class ParsedPipeline {
+
+    private final List<ParsedCommand> commands;
+    private final boolean background;
+    private final boolean timed;
+
+    ParsedPipeline(List<ParsedCommand> commands, boolean background, boolean timed) {
+        this.commands = Collections.unmodifiableList(commands);
+        this.background = background;
+        this.timed = timed;
+    }
+
+    /**
+     * Get the commands, in the order of the pipeline.
+     * @return The commands, empty for a blank line.
+     */
+    List<ParsedCommand> getCommands() {
+        return commands;
+    }
+
+    boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * Indicates if the line ends with '&amp;' to run it in background.
+     * @return true to run the line in background, otherwise false.
+     */
+    boolean isBackground() {
+        return background;
+    }
+
+    /**
+     * Indicates if the line starts with 'time' to print the measures of its
+     * commands.
+     * @return true to print the measures, otherwise false.
+     */
+    boolean isTimed() {
+        return timed;
+    }
+
+    @Override
+    public String toString() {
+        return (timed ? "time " : "") + commands + (background ? " &" : "");
+    }
+
+}
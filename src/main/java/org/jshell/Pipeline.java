@@ -0,0 +1,366 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Commands linked by pipes. All the commands run at the same time: each one
+ * reads the buffer filled by the previous command, which waits when the buffer
+ * is full.
+ * <p>
+ * When a command finishes, the commands before it are cancelled at once since
+ * nobody reads their output anymore: a command reading only the first lines
+ * stops the whole pipeline.
+ * <p>
+ * The thread executing the pipeline runs the last command, which may write in
+ * the terminal: a cancelled pipeline closes the pipes and the output of this
+ * command instead of interrupting it.
+ * <p>
+ * Adjacent {@link ByteShellCommand}s are linked by {@link BytePipe}s: the
+ * lines are decoded only for the commands which are not byte commands.
+ * <p>
+ * Each command is measured, see {@link StageMetrics}.
+ *
+ * @author Fabien Barbero
+ */
+final class Pipeline {
+
+    private final List<ShellCommand> commands = new ArrayList<ShellCommand>();
+    private final List<ArgumentsList> arguments = new ArrayList<ArgumentsList>();
+    private final List<Future<?>> futures = new ArrayList<Future<?>>();
+    private final List<Stage> stages = new ArrayList<Stage>();
+    private final ShellMetrics metrics;
+    private boolean timed;
+    private CancellableShellIO lastOutput;
+    private volatile boolean cancelled;
+
+    Pipeline() {
+        this(null);
+    }
+
+    /**
+     * Create a pipeline.
+     * @param metrics The cumulative measures of the commands, can be null.
+     */
+    Pipeline(ShellMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Add a command at the end of the pipeline.
+     * @param command   The command.
+     * @param args      The arguments of the command.
+     */
+    void add(ShellCommand command, ArgumentsList args) {
+        commands.add(command);
+        arguments.add(args);
+    }
+
+    /**
+     * Print the measures of the commands at the end of the execution.
+     * @param timed true to print the measures.
+     */
+    void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+
+    /**
+     * Indicates if the pipeline has no command.
+     * @return true if there is no command, otherwise false.
+     */
+    boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * Execute the pipeline. The last command is executed in the current thread,
+     * the other ones in the given executor.
+     * @param executor      The executor running the first commands.
+     * @param input         The input of the first command, can be null.
+     * @param output        The output of the last command, also used by the
+     *                      other commands to ask a text.
+     * @param pipeCapacity  The maximum number of lines waiting in a pipe.
+     * @return              true if the last command succeeded, otherwise false.
+     */
+    boolean execute(ExecutorService executor, ShellBuffer input, ShellIO output, int pipeCapacity) throws InterruptedException {
+        synchronized(this) {
+            if(cancelled) {
+                return false;
+            }
+            lastOutput = new CancellableShellIO(output);
+        }
+        long start = System.nanoTime();
+        int last = commands.size() - 1;
+        boolean[] byteStages = selectByteStages();
+        BytePipe byteInput = null;
+        for(int i=0; i<last; i++) {
+            Stage stage;
+            if(byteStages[i] && byteStages[i + 1]) {
+                BytePipe byteOutput = new BytePipe(BytePipe.DEFAULT_CAPACITY);
+                stage = new Stage(i, commands.get(i), arguments.get(i), input, byteInput, output, byteOutput, false);
+                input = null;
+                byteInput = byteOutput;
+            } else {
+                ShellIO stageIO = new ShellIO(output, pipeCapacity);
+                BytePipe byteOutput = byteStages[i] ? new BytePipe(stageIO) : null;
+                stage = new Stage(i, commands.get(i), arguments.get(i), input, byteInput, stageIO, byteOutput, true);
+                input = stageIO.getBuffer();
+                byteInput = null;
+            }
+            Future<?> future = executor.submit(stage);
+            synchronized(this) {
+                stages.add(stage);
+                futures.add(future);
+                if(cancelled) {
+                    future.cancel(true);
+                }
+            }
+        }
+        BytePipe byteOutput = byteStages[last] ? new BytePipe(lastOutput) : null;
+        Stage lastStage = new Stage(last, commands.get(last), arguments.get(last), input, byteInput, lastOutput, byteOutput, false);
+        synchronized(this) {
+            stages.add(lastStage);
+            if(cancelled) {
+                lastStage.abandonInput();
+            }
+        }
+        lastStage.run();
+
+        for(Future<?> future : futures) {
+            try {
+                future.get();
+            } catch(ExecutionException ex) {
+                ex.getCause().printStackTrace();
+            } catch(CancellationException ex) {
+                // Pipeline cancelled
+            } catch(InterruptedException ex) {
+                if(!cancelled) {
+                    throw ex;
+                }
+            }
+        }
+        if(timed) {
+            printMetrics(output, System.nanoTime() - start);
+        }
+        return !lastStage.failed && !cancelled;
+    }
+
+    /**
+     * Select the commands linked by byte pipes: the byte commands following or
+     * followed by another one.
+     */
+    private boolean[] selectByteStages() {
+        int count = commands.size();
+        boolean[] byteStages = new boolean[count];
+        for(int i=0; i<count - 1; i++) {
+            if(commands.get(i) instanceof ByteShellCommand && commands.get(i + 1) instanceof ByteShellCommand) {
+                byteStages[i] = true;
+                byteStages[i + 1] = true;
+            }
+        }
+        return byteStages;
+    }
+
+    private void printMetrics(ShellIO output, long wallNanos) {
+        output.println(StageMetrics.header());
+        for(StageMetrics stage : getStageMetrics()) {
+            output.println(stage.toString());
+        }
+        output.println(String.format("%-12s %10.1f", "total", wallNanos / 1e6));
+    }
+
+    /**
+     * Cancel the pipeline: the pipes are abandoned, the output of the last
+     * command is closed and the other commands are interrupted. The commands
+     * stop at their next read or write.
+     */
+    synchronized void cancel() {
+        cancelled = true;
+        if(lastOutput != null) {
+            lastOutput.cancel();
+        }
+        for(Stage stage : stages) {
+            stage.abandonInput();
+        }
+        for(Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Get the measures of the commands, once the pipeline is executed.
+     * @return The measures, in the order of the pipeline.
+     */
+    synchronized List<StageMetrics> getStageMetrics() {
+        List<StageMetrics> list = new ArrayList<StageMetrics>();
+        for(Stage stage : stages) {
+            if(stage.metrics != null) {
+                list.add(stage.metrics);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Cancel the commands writing in the input of a command which has finished.
+     * @param index The index of the finished command.
+     */
+    private synchronized void cancelUpstream(int index) {
+        for(int i=0; i<index && i<futures.size(); i++) {
+            Stage stage = stages.get(i);
+            if(!stage.finished) {
+                stage.shortCircuited = true;
+                futures.get(i).cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Indicates if the pipeline was cancelled.
+     * @return true if the pipeline was cancelled, otherwise false.
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    private final class Stage implements Runnable {
+
+        private final int index;
+        private final ShellCommand command;
+        private final ArgumentsList args;
+        private final ShellBuffer input;
+        private final BytePipe byteInput;
+        private final ShellIO io;
+        private final BytePipe byteOutput;
+        private final boolean closeOutput;
+        private volatile boolean failed;
+        private volatile StageMetrics metrics;
+        private volatile boolean shortCircuited;
+        private volatile boolean finished;
+
+        /**
+         * @param input         The lines of the previous command, or null.
+         * @param byteInput     The bytes of the previous command, or null.
+         * @param io            The output of the command, or the output
+         *                      receiving the decoded bytes.
+         * @param byteOutput    The pipe receiving the bytes, null to execute
+         *                      the command on strings.
+         * @param closeOutput   true to close the buffer of the output at the end.
+         */
+        Stage(int index, ShellCommand command, ArgumentsList args, ShellBuffer input, BytePipe byteInput,
+                ShellIO io, BytePipe byteOutput, boolean closeOutput) {
+            this.index = index;
+            this.command = command;
+            this.args = args;
+            this.input = input;
+            this.byteInput = byteInput;
+            this.io = io;
+            this.byteOutput = byteOutput;
+            this.closeOutput = closeOutput;
+        }
+
+        /**
+         * Wake the command waiting for its input, which then stops.
+         */
+        void abandonInput() {
+            if(input != null) {
+                input.abandon();
+            }
+            if(byteInput != null) {
+                byteInput.abandon();
+            }
+        }
+
+        @Override
+        public void run() {
+            long linesIn = input == null ? 0 : input.getReadLineCount();
+            long charsIn = input == null ? 0 : input.getReadCharCount();
+            MeteredShellIO meteredIO = byteOutput == null ? new MeteredShellIO(io) : null;
+            ShellIO handler = byteOutput == null ? meteredIO : new BytePipeShellIO(io, byteOutput);
+            long wall = System.nanoTime();
+            long cpu = StageMetrics.threadCpuTime();
+            long allocated = StageMetrics.threadAllocatedBytes();
+            try {
+                if(byteOutput != null) {
+                    ((ByteShellCommand) command).executeBytes(args, input, byteInput, byteOutput, handler);
+                } else {
+                    command.execute(args, input, handler);
+                }
+            } catch(BrokenPipeException ex) {
+                // The next command stopped reading or the pipeline was interrupted
+            } catch(CommandFailedException ex) {
+                failed = true;
+                try {
+                    handler.println(ex.getMessage());
+                } catch(BrokenPipeException broken) {
+                    // Nobody reads the output anymore
+                }
+            } catch(Exception ex) {
+                if(!shortCircuited) {
+                    failed = true;
+                    if(!cancelled) {
+                        ex.printStackTrace();
+                    }
+                }
+            } finally {
+                finished = true;
+                abandonInput();
+                try {
+                    if(byteOutput != null) {
+                        byteOutput.close();
+                    }
+                    if(closeOutput) {
+                        io.getBuffer().close();
+                    }
+                } catch(BrokenPipeException ex) {
+                    // Nobody reads the output anymore
+                }
+                long wallNanos = System.nanoTime() - wall;
+                long cpuNanos = StageMetrics.threadCpuTime() - cpu;
+                long allocatedBytes = StageMetrics.threadAllocatedBytes() - allocated;
+                if(byteOutput != null) {
+                    // The sizes of the byte pipes are counted in bytes
+                    metrics = new StageMetrics(command.name(), failed, wallNanos, cpuNanos, allocatedBytes,
+                            byteInput != null ? byteInput.getReadLineCount() : input == null ? 0 : input.getReadLineCount() - linesIn,
+                            byteInput != null ? byteInput.getReadByteCount() : input == null ? 0 : input.getReadCharCount() - charsIn,
+                            byteOutput.getWrittenLineCount(), byteOutput.getWrittenByteCount());
+                } else {
+                    metrics = new StageMetrics(command.name(), failed, wallNanos, cpuNanos, allocatedBytes,
+                            input == null ? 0 : input.getReadLineCount() - linesIn,
+                            input == null ? 0 : input.getReadCharCount() - charsIn,
+                            meteredIO.getLineCount(), meteredIO.getCharCount());
+                }
+                if(Pipeline.this.metrics != null) {
+                    Pipeline.this.metrics.record(metrics);
+                }
+                cancelUpstream(index);
+            }
+        }
+    }
+
+}
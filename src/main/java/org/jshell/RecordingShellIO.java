@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Output keeping a copy of the printed lines, until they exceed the budget of
+ * the result cache. A command writing directly in the terminal channel is not
+ * recorded: it is already fast enough to not be cached.
+ *
+ * @author Fabien Barbero
+ */
+final class RecordingShellIO extends ShellIO {
+
+    private final ShellIO output;
+    private final ResultCache cache;
+    private LineStore lines = new LineStore();
+
+    RecordingShellIO(ShellIO output, ResultCache cache) {
+        super(output);
+        this.output = output;
+        this.cache = cache;
+    }
+
+    @Override
+    public synchronized void println(String str) {
+        output.println(str);
+        record(str);
+    }
+
+    @Override
+    public synchronized void println() {
+        output.println();
+        record("");
+    }
+
+    private void record(String str) {
+        if(lines != null) {
+            lines.add(str);
+            if((lines.getLineCount() & 0xFFF) == 0 && !cache.fits(lines)) {
+                lines.close();
+                lines = null;
+            }
+        }
+    }
+
+    @Override
+    void print(String str) {
+        output.print(str);
+    }
+
+    @Override
+    void flush() {
+        output.flush();
+    }
+
+    @Override
+    public synchronized WritableByteChannel getTerminalChannel() {
+        WritableByteChannel channel = output.getTerminalChannel();
+        if(channel != null && lines != null) {
+            lines.close();
+            lines = null;
+        }
+        return channel;
+    }
+
+    @Override
+    public Charset getTerminalCharset() {
+        return output.getTerminalCharset();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return output.isClosed();
+    }
+
+    /**
+     * Get the recorded lines.
+     * @return The lines, or null if they exceeded the budget.
+     */
+    synchronized LineStore getLines() {
+        return lines;
+    }
+
+}
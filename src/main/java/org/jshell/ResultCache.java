@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outputs of the command lines made only of {@link Idempotent} commands. An
+ * output is found by the commands and arguments of the line, with the size,
+ * the modification time and the identity of each file named in the arguments:
+ * the input of each command is given by the previous commands, so it is part
+ * of the key. The least recently used outputs are removed when their size
+ * exceeds the budget.
+ *
+ * @author Fabien Barbero
+ */
+final class ResultCache {
+
+    static final long DEFAULT_BUDGET = 32L * 1024 * 1024;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long budget;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    ResultCache(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Add a command to a key.
+     * @param key       The key of the previous commands.
+     * @param command   The command.
+     * @param args      The arguments of the command.
+     * @return          false if the command is not idempotent or reads a
+     *                  directory, then the line can not be cached.
+     */
+    static boolean appendKey(StringBuilder key, ShellCommand command, ArgumentsList args) {
+        Idempotent idempotent = command.getClass().getAnnotation(Idempotent.class);
+        if(idempotent == null) {
+            return false;
+        }
+        for(String arg : idempotent.exceptWith()) {
+            if(args.containsArgument(arg)) {
+                return false;
+            }
+        }
+        key.append(command.getClass().getName()).append(':').append(command.name());
+        for(int i=0; i<args.size(); i++) {
+            String arg = args.getArgumentAt(i);
+            key.append('\0').append(arg);
+            File file = new File(arg);
+            if(file.isDirectory()) {
+                // The content of a tree is not part of the key
+                return false;
+            }
+            if(file.isFile()) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                    key.append('\0').append(attributes.size())
+                            .append(':').append(attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS))
+                            .append(':').append(attributes.fileKey());
+                } catch(IOException ex) {
+                    // The file is read by the command, which reports the error
+                    return false;
+                }
+            }
+        }
+        key.append('\n');
+        return true;
+    }
+
+    /**
+     * Find an output. The entry must be released once the output is read.
+     * @param key   The key of the command line.
+     * @return      The entry, or null if the output is not cached.
+     */
+    synchronized Entry acquire(String key) {
+        Entry entry = entries.get(key);
+        if(entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        entry.readers++;
+        return entry;
+    }
+
+    /**
+     * Add an output.
+     * @param key       The key of the command line.
+     * @param output    The lines printed by the command line, the cache closes
+     *                  them when they are removed.
+     */
+    synchronized void put(String key, LineStore output) {
+        long outputSize = sizeOf(output);
+        if(outputSize > budget) {
+            output.close();
+            return;
+        }
+        output.compact();
+        Entry previous = entries.put(key, new Entry(output, outputSize));
+        if(previous != null) {
+            remove(previous);
+        }
+        size += outputSize;
+        Iterator<Entry> it = entries.values().iterator();
+        while(size > budget && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            remove(eldest);
+            evictions++;
+        }
+    }
+
+    /**
+     * Indicates if an output is small enough to be cached.
+     * @param output    The lines.
+     * @return          true if the output can be cached, otherwise false.
+     */
+    synchronized boolean fits(LineStore output) {
+        return sizeOf(output) <= budget;
+    }
+
+    private static long sizeOf(LineStore output) {
+        // One byte for the length of most lines
+        return output.getByteCount() + output.getLineCount();
+    }
+
+    synchronized void release(Entry entry) {
+        entry.readers--;
+        if(entry.removed && entry.readers == 0) {
+            entry.output.close();
+        }
+    }
+
+    private void remove(Entry entry) {
+        size -= entry.size;
+        entry.removed = true;
+        if(entry.readers == 0) {
+            entry.output.close();
+        }
+    }
+
+    synchronized void clear() {
+        for(Entry entry : entries.values()) {
+            remove(entry);
+        }
+        entries.clear();
+    }
+
+    synchronized void setBudget(long budget) {
+        this.budget = budget;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while(size > budget && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            remove(eldest);
+            evictions++;
+        }
+    }
+
+    synchronized long getBudget() {
+        return budget;
+    }
+
+    synchronized void printStats(ShellIO handler) {
+        handler.println("Cached outputs: " + entries.size());
+        handler.println("  size: " + size + " / " + budget + " bytes");
+        handler.println("  hits: " + hits + ", misses: " + misses + ", evictions: " + evictions);
+    }
+
+    static final class Entry {
+
+        private final LineStore output;
+        private final long size;
+        private int readers;
+        private boolean removed;
+
+        Entry(LineStore output, long size) {
+            this.output = output;
+            this.size = size;
+        }
+
+        LineStore getOutput() {
+            return output;
+        }
+    }
+
+}
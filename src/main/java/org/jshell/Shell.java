@@ -21,15 +21,22 @@
  */
 package org.jshell;
 
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-import jline.ConsoleReader;
-import jline.FileNameCompletor;
-import jline.SimpleCompletor;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Iterator;
+import java.util.ServiceLoader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -37,13 +44,45 @@ import jline.SimpleCompletor;
  */
 public class Shell {
 
-    private static final String SPLIT_REGEX = "\\s+(?=(?:[^\"]*\"[^\"]*\")*(?![^\"]*\"))";
+    /** Exit status of a command which succeeded. */
+    public static final int EXIT_SUCCESS = 0;
+    /** Exit status of a command which failed. */
+    public static final int EXIT_FAILURE = 1;
+    /** Exit status of a line which could not be parsed. */
+    public static final int EXIT_SYNTAX_ERROR = 2;
+    /** Exit status of an unknown command. */
+    public static final int EXIT_NOT_FOUND = 127;
+    /** Exit status of a command line interrupted by Ctrl-C. */
+    public static final int EXIT_INTERRUPTED = 130;
 
-    private final Set<ShellCommand> commands = new HashSet<ShellCommand>();
+    private static final int DEFAULT_PIPE_CAPACITY = 1024;
+    private static final int MAX_RUNNING_JOBS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final CommandRegistry commands = new CommandRegistry();
+    private final CommandLineParser parser = new CommandLineParser();
+    private final ShellMetrics metrics = new ShellMetrics();
+    private final ResultCache resultCache = new ResultCache(ResultCache.DEFAULT_BUDGET);
+    private final ExecutorService pipelineExecutor = Executors.newCachedThreadPool(new PipelineThreadFactory("jshell-pipe-"));
+    private final ThreadPoolExecutor jobExecutor = new ThreadPoolExecutor(MAX_RUNNING_JOBS, MAX_RUNNING_JOBS,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new PipelineThreadFactory("jshell-job-"));
 
     private String header;
     private String prompt = "> ";
-    
+    private int pipeCapacity = DEFAULT_PIPE_CAPACITY;
+    private volatile OutputRetention outputRetention = OutputRetention.none();
+
+    public Shell() {
+        commands.register(new StatsCommand(this));
+        commands.register(new CacheCommand(this));
+        commands.register(new HelpCommand(commands));
+        commands.register(new XargsCommand(commands));
+        commands.register(new JobsCommand());
+        commands.register(new FgCommand());
+        commands.register(new WaitCommand());
+        commands.register(new KillCommand());
+        jobExecutor.allowCoreThreadTimeOut(true);
+    }
+
 
     /**
      * Set a header to the shell. This text will be displed at the start of the shell.
@@ -62,101 +101,361 @@ public class Shell {
     }
 
     /**
-     * Register a command.
+     * Set the maximum number of lines waiting in a pipe between two commands.
+     * When a pipe is full, the command writing in it waits for the next command.
+     * @param pipeCapacity The capacity of the pipes.
+     */
+    public final void setPipeCapacity(int pipeCapacity) {
+        if(pipeCapacity < 1) {
+            throw new IllegalArgumentException("Invalid pipe capacity: " + pipeCapacity);
+        }
+        this.pipeCapacity = pipeCapacity;
+    }
+
+    /**
+     * Set the policy deciding which lines printed in the terminal are kept.
+     * By default no line is kept. It must be set before the start of the shell.
+     * @param outputRetention The policy.
+     */
+    public final void setOutputRetention(OutputRetention outputRetention) {
+        this.outputRetention = outputRetention;
+    }
+
+    /**
+     * Get the policy deciding which lines printed in the terminal are kept.
+     * @return The policy.
+     */
+    public final OutputRetention getOutputRetention() {
+        return outputRetention;
+    }
+
+    /**
+     * Set the maximum size of the outputs kept to answer again the same
+     * command lines made of {@link Idempotent} commands. By default it is
+     * {@value ResultCache#DEFAULT_BUDGET} bytes.
+     * @param bytes The size in bytes, 0 to not keep any output.
+     */
+    public final void setResultCacheSize(long bytes) {
+        if(bytes < 0) {
+            throw new IllegalArgumentException("Invalid cache size: " + bytes);
+        }
+        resultCache.setBudget(bytes);
+    }
+
+    /**
+     * Register a command. A command already registered with the same name is
+     * replaced. Commands can be registered while the shell is running.
      * @param command The command to register.
      */
-    public final synchronized void registerCommand(ShellCommand command) {
-        commands.add(command);
+    public final void registerCommand(ShellCommand command) {
+        commands.register(command);
     }
 
     /**
      * Unregister a command.
      * @param command The command to unregister.
      */
-    public final synchronized void unregisterCommand(ShellCommand command) {
-        commands.remove(command);
+    public final void unregisterCommand(ShellCommand command) {
+        commands.unregister(command);
+    }
+
+    /**
+     * Register the commands of the {@link ShellCommandProvider} found by the
+     * {@link ServiceLoader} of the context class loader. Only the providers are
+     * created: each command is loaded and created the first time it is used.
+     */
+    public final void discoverCommands() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if(classLoader == null) {
+            classLoader = Shell.class.getClassLoader();
+        }
+        discoverCommands(classLoader);
+    }
+
+    /**
+     * Register the commands of the {@link ShellCommandProvider} found by the
+     * {@link ServiceLoader} of a class loader.
+     * @param classLoader The class loader of the providers and of their commands.
+     */
+    public final void discoverCommands(ClassLoader classLoader) {
+        for(ShellCommandProvider provider : ServiceLoader.load(ShellCommandProvider.class, classLoader)) {
+            ClassLoader commandLoader = provider.getClass().getClassLoader();
+            for(CommandDescriptor descriptor : provider.getCommands()) {
+                commands.register(descriptor, commandLoader);
+            }
+        }
+    }
+
+    /**
+     * Register an other name for a command.
+     * @param alias The other name.
+     * @param name  The name of the command.
+     */
+    public final void registerAlias(String alias, String name) {
+        commands.registerAlias(alias, name);
+    }
+
+    /**
+     * Unregister an other name of a command.
+     * @param alias The other name.
+     */
+    public final void unregisterAlias(String alias) {
+        commands.unregisterAlias(alias);
     }
 
     /**
-     * Get the list of the registered commands.
+     * Get the list of the registered commands. The discovered commands not used
+     * yet are created.
      * @return The registered commands.
      */
     public ShellCommand[] getRegisteredCommands() {
-        return commands.toArray(new ShellCommand[]{});
+        return commands.getCommands().toArray(new ShellCommand[]{});
     }
 
     /**
-     * Start of the shell.
+     * Start of the shell in the console. The console classes are only loaded
+     * by this method. Ctrl-C cancels the command line running in
+     * foreground, the shell exits at the end of the input.
      */
     public final synchronized void start() throws IOException {
-        ConsoleReader reader = new ConsoleReader();
-        List<String> commandsName = new ArrayList<String>();
-        for(ShellCommand command : commands) {
-            commandsName.add(command.name());
+        ShellConsole console = ShellConsole.open(commands, prompt);
+        ShellIO shellIO = new SystemShellIO(console, outputRetention, TerminalWriter.getInstance());
+        InterruptSignal.install(shellIO.getJobs());
+        try {
+            interact(shellIO);
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
-        reader.addCompletor(new SimpleCompletor(commandsName.toArray(new String[]{})));
-        reader.setDefaultPrompt(prompt);
+    }
 
-        ShellIO shellIO = new SystemShellIO(reader);
+    /**
+     * Start a server accepting remote sessions on the loopback interface. Each
+     * connection is an independent session of the shell, reading the command
+     * lines and writing the output in UTF-8. The registered commands are shared
+     * by all the sessions.
+     * @param port  The port, 0 to use any free port.
+     * @return      The running server.
+     */
+    public final ShellServer startServer(int port) throws IOException {
+        ShellServer server = new ShellServer(this, new ServerSocket(port, 0, InetAddress.getLoopbackAddress()));
+        server.start();
+        return server;
+    }
 
+    /**
+     * Read and execute the command lines typed by a user, until the input is
+     * closed. The jobs finished in background are reported before the prompt,
+     * the jobs still running at the end are killed.
+     * @param shellIO The output of the shell, reading the lines of the user.
+     */
+    final void interact(ShellIO shellIO) throws InterruptedException {
         if(header != null) {
             shellIO.println(header);
             shellIO.println();
         }
-        
-        while(true) {
-            shellIO.print(prompt);
-            String line = shellIO.readLine();
 
-            ShellBuffer buffer = null;
-            String[] commandsStr = line.split("\\|");
+        JobTable jobs = shellIO.getJobs();
+        metrics.open();
+        try {
+            while(true) {
+                jobs.reportFinished(shellIO);
+                shellIO.print(prompt);
+                String line = shellIO.readLine();
+                if(line == null) {
+                    return;
+                }
+
+                execute(line, null, shellIO);
 
-            for(int i=0; i<commandsStr.length; i++) {
-                ShellIO commandIO;
-                if(i == commandsStr.length -1) {
-                    commandIO = shellIO;
-                } else {
-                    commandIO = new ShellIO(reader);
+                shellIO.println();
+            }
+        } finally {
+            jobs.killAll();
+            metrics.close();
+        }
+    }
+
+    /**
+     * Execute a script without console. Each line of the script is a command
+     * line, the empty lines and the lines starting with '#' are ignored. The
+     * standard input is given to the first command of the lines which read
+     * their input, decoded with the charset of the standard output. The
+     * script waits for the end of the jobs it started in background.
+     * @param script    The script.
+     * @return          The exit status of the last command line.
+     */
+    public final int run(Reader script) throws IOException {
+        return run(script, System.in, TerminalWriter.getInstance());
+    }
+
+    /**
+     * Execute a script with the given standard input and terminal.
+     */
+    final int run(Reader script, InputStream in, TerminalWriter terminal) throws IOException {
+        BufferedReader scriptReader = new BufferedReader(script);
+        ShellBuffer stdin = new ShellBuffer(new BufferedReader(new InputStreamReader(in, terminal.getCharset())));
+        ShellIO shellIO = new SystemShellIO(null, outputRetention, terminal);
+        int status = EXIT_SUCCESS;
+        metrics.open();
+        try {
+            String line;
+            while((line = scriptReader.readLine()) != null) {
+                String trimmed = line.trim();
+                if(!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                    status = execute(line, stdin, shellIO);
                 }
-                String[] splitCommand = splitCommandLine(commandsStr[i].trim());
-                if(splitCommand.length > 0) {
-                    ShellCommand shellCommand = findCommandByName(splitCommand[0].trim());
-                    if(shellCommand == null) {
-                        shellIO.println("No command found with name '" + splitCommand[0] + "'");
-                        break;
-                    } else {
-                        try {
-                            ArgumentsList argumentsList = new ArgumentsList(Arrays.copyOfRange(splitCommand, 1, splitCommand.length));
-                            shellCommand.execute(argumentsList, buffer, commandIO);
-                            buffer = commandIO.getBuffer();
-                        } catch(Exception ex) {
-                            ex.printStackTrace();
-                            break;
-                        }
-                    }
+            }
+            JobTable jobs = shellIO.getJobs();
+            for(Job job : jobs.getJobs()) {
+                job.waitFor();
+            }
+            jobs.reportFinished(shellIO);
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            status = EXIT_FAILURE;
+        } finally {
+            shellIO.flush();
+            metrics.close();
+        }
+        return status;
+    }
+
+    /**
+     * Execute a command line. A line ending with '&amp;' is started in
+     * background.
+     * @param line      The command line.
+     * @param input     The input of the first command, can be null.
+     * @param shellIO   The output of the shell.
+     * @return          The exit status.
+     */
+    private int execute(String line, ShellBuffer input, ShellIO shellIO) throws InterruptedException {
+        ParsedPipeline parsedPipeline;
+        try {
+            parsedPipeline = parser.parse(line);
+        } catch(IllegalArgumentException ex) {
+            shellIO.println("Syntax error: " + ex.getMessage());
+            return EXIT_SYNTAX_ERROR;
+        }
+
+        Pipeline pipeline = new Pipeline(metrics);
+        pipeline.setTimed(parsedPipeline.isTimed());
+        StringBuilder cacheKey = null;
+        if(input == null && !parsedPipeline.isBackground() && !parsedPipeline.isTimed() && resultCache.getBudget() > 0) {
+            cacheKey = new StringBuilder();
+        }
+        for(ParsedCommand parsedCommand : parsedPipeline.getCommands()) {
+            ShellCommand shellCommand = findCommandByName(parsedCommand.getName());
+            if(shellCommand == null) {
+                String error = commands.getError(parsedCommand.getName());
+                shellIO.println(error != null ? error : "No command found with name '" + parsedCommand.getName() + "'");
+                return EXIT_NOT_FOUND;
+            }
+            pipeline.add(shellCommand, parsedCommand.getArguments());
+            if(cacheKey != null && !ResultCache.appendKey(cacheKey, shellCommand, parsedCommand.getArguments())) {
+                cacheKey = null;
+            }
+        }
+        if(pipeline.isEmpty()) {
+            return EXIT_SUCCESS;
+        }
+
+        if(parsedPipeline.isBackground()) {
+            Job job = shellIO.getJobs().start(line.trim(), pipeline, jobExecutor, pipelineExecutor, pipeCapacity);
+            shellIO.println("[" + job.getId() + "]");
+            return EXIT_SUCCESS;
+        }
+        if(cacheKey != null) {
+            return executeCached(cacheKey.toString(), pipeline, shellIO);
+        }
+        return executeForeground(pipeline, input, shellIO);
+    }
+
+    /**
+     * Print the cached output of a pipeline, or execute it and cache its output.
+     */
+    private int executeCached(String key, Pipeline pipeline, ShellIO shellIO) throws InterruptedException {
+        ResultCache.Entry entry = resultCache.acquire(key);
+        if(entry != null) {
+            try {
+                Iterator<String> lines = entry.getOutput().iterator();
+                while(lines.hasNext()) {
+                    shellIO.println(lines.next());
                 }
+            } finally {
+                resultCache.release(entry);
             }
-            
-            shellIO.println();
+            return EXIT_SUCCESS;
         }
+
+        RecordingShellIO recorder = new RecordingShellIO(shellIO, resultCache);
+        int status = executeForeground(pipeline, null, recorder);
+        LineStore lines = recorder.getLines();
+        if(lines != null) {
+            if(status == EXIT_SUCCESS) {
+                resultCache.put(key, lines);
+            } else {
+                lines.close();
+            }
+        }
+        return status;
+    }
+
+    private int executeForeground(Pipeline pipeline, ShellBuffer input, ShellIO shellIO) throws InterruptedException {
+        JobTable jobs = shellIO.getJobs();
+        jobs.setForeground(pipeline);
+        try {
+            if(pipeline.execute(pipelineExecutor, input, shellIO, pipeCapacity)) {
+                return EXIT_SUCCESS;
+            }
+            return pipeline.isCancelled() ? EXIT_INTERRUPTED : EXIT_FAILURE;
+        } finally {
+            jobs.setForeground(null);
+        }
+    }
+
+    /**
+     * Get the cumulative measures of the executed commands.
+     * @return The measures.
+     */
+    ShellMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the cache of the outputs of the command lines.
+     * @return The cache.
+     */
+    ResultCache getResultCache() {
+        return resultCache;
     }
 
-    // FIXME : to improve
     // Method tested in unit test
     final String[] splitCommandLine(String line) {
-        String[] split = line.split(SPLIT_REGEX);
-        for(int i=0; i<split.length; i++) {
-            split[i] = split[i].replace("\"", "");
+        ParsedPipeline pipeline = parser.parse(line);
+        if(pipeline.isEmpty()) {
+            return new String[0];
         }
-        return split;
+        return pipeline.getCommands().get(0).getWords();
     }
 
     private ShellCommand findCommandByName(String name) {
-        for(ShellCommand command : commands) {
-            if(command.name().equals(name)) {
-                return command;
-            }
+        return commands.find(name);
+    }
+
+    static final class PipelineThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        PipelineThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
-        return null;
     }
 }
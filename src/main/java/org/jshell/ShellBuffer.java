@@ -21,28 +21,206 @@
  */
 package org.jshell;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
+ * Buffer between two commands of a pipeline. The producer adds lines while the
+ * consumer reads them through {@link #getContent()}: when the buffer is full the
+ * producer waits, and when it is empty the consumer waits until a new line is
+ * added or the producer has finished.
  *
  * @author Fabien Barbero
  */
 public final class ShellBuffer {
 
-    private final List<String> buffer = new LinkedList<String>();
+    /** Marks the end of the content, compared by identity. */
+    private static final String END = new String("<end>");
 
-    synchronized void addLine(String line) {
-        buffer.add(line);
+    private final BlockingQueue<String> queue;
+    private final BufferedReader source;
+    private volatile boolean abandoned;
+
+    // Consumer side only
+    private String next;
+    private boolean ended;
+    private long readLines;
+    private long readChars;
+
+    /**
+     * Create an unbounded buffer.
+     */
+    ShellBuffer() {
+        queue = new LinkedBlockingQueue<String>();
+        source = null;
+    }
+
+    /**
+     * Create a bounded buffer.
+     * @param capacity The maximum number of lines waiting to be read.
+     */
+    ShellBuffer(int capacity) {
+        queue = new ArrayBlockingQueue<String>(capacity);
+        source = null;
     }
 
-    public synchronized boolean isEmpty() {
-        return buffer.isEmpty();
+    /**
+     * Create a buffer giving the lines of a reader, read only when the
+     * consumer asks for them.
+     * @param source The lines.
+     */
+    ShellBuffer(BufferedReader source) {
+        this.queue = null;
+        this.source = source;
     }
 
+    /**
+     * Add a line, waiting for some space if the buffer is full.
+     * @param line The line to add.
+     * @throws BrokenPipeException If the consumer stopped reading or if the
+     *                             current thread has been interrupted.
+     */
+    void addLine(String line) {
+        put(line);
+    }
+
+    /**
+     * Indicates that no more line will be added.
+     */
+    void close() {
+        if(!abandoned) {
+            put(END);
+        }
+    }
+
+    /**
+     * Indicates that the consumer will not read anymore. The lines waiting are
+     * discarded and the next lines added will be rejected. A consumer waiting
+     * for a line stops with a {@link BrokenPipeException}.
+     */
+    void abandon() {
+        abandoned = true;
+        if(queue != null) {
+            queue.clear();
+            queue.offer(END);
+        }
+    }
+
+    /**
+     * Indicates if the consumer stopped reading.
+     * @return true if the consumer stopped reading, otherwise false.
+     */
+    boolean isAbandoned() {
+        return abandoned;
+    }
+
+    private void put(String line) {
+        if(queue == null) {
+            throw new UnsupportedOperationException("Read only buffer");
+        }
+        if(abandoned) {
+            throw new BrokenPipeException();
+        }
+        try {
+            queue.put(line);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BrokenPipeException(ex);
+        }
+    }
+
+    private boolean fetch() {
+        if(next == null && !ended && source != null) {
+            try {
+                next = source.readLine();
+            } catch (IOException ex) {
+                throw new IllegalStateException("Error reading the input", ex);
+            }
+            ended = next == null;
+        }
+        if(next == null && !ended) {
+            if(abandoned) {
+                throw new BrokenPipeException();
+            }
+            String line;
+            try {
+                line = queue.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new BrokenPipeException(ex);
+            }
+            if(line == END) {
+                if(abandoned) {
+                    throw new BrokenPipeException();
+                }
+                ended = true;
+            } else {
+                next = line;
+            }
+        }
+        return next != null;
+    }
+
+    /**
+     * Indicates if the buffer has no content. This method waits until a line is
+     * available or the producer has finished.
+     * @return true if no line will be read, otherwise false.
+     */
+    public boolean isEmpty() {
+        return !fetch();
+    }
+
+    /**
+     * Get the number of lines read by the consumer.
+     * @return The number of lines.
+     */
+    long getReadLineCount() {
+        return readLines;
+    }
+
+    /**
+     * Get the number of characters in the lines read by the consumer.
+     * @return The number of characters.
+     */
+    long getReadCharCount() {
+        return readChars;
+    }
+
+    /**
+     * Get the content of the buffer. The lines of a running command can be read
+     * only once, and the iterator waits for it when no line is available.
+     * @return The lines of the buffer.
+     */
     public Iterator<String> getContent() {
-        return buffer.iterator();
+        return new Iterator<String>() {
+
+            @Override
+            public boolean hasNext() {
+                return fetch();
+            }
+
+            @Override
+            public String next() {
+                if(!fetch()) {
+                    throw new NoSuchElementException();
+                }
+                String line = next;
+                next = null;
+                readLines++;
+                readChars += line.length();
+                return line;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
 }
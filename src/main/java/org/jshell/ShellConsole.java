@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.IOException;
+import jline.ConsoleReader;
+import jline.SimpleCompletor;
+
+/**
+ * Console of an interactive shell. It is the only class using the console
+ * classes, so they are not loaded by the shells executing scripts.
+ *
+ * @author Fabien Barbero
+ */
+final class ShellConsole implements LineInput {
+
+    private final ConsoleReader reader;
+
+    private ShellConsole(ConsoleReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Create the console, completing the names of the registered commands.
+     * @param commands  The registered commands.
+     * @param prompt    The prompt of the shell.
+     * @return          The console.
+     */
+    static ShellConsole open(CommandRegistry commands, String prompt) throws IOException {
+        ConsoleReader reader = new ConsoleReader();
+        SimpleCompletor completor = new SimpleCompletor(new String[]{});
+        commands.setCompletor(completor);
+        reader.addCompletor(completor);
+        reader.setDefaultPrompt(prompt);
+        return new ShellConsole(reader);
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        return reader.readLine();
+    }
+
+}
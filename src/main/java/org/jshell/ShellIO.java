@@ -22,7 +22,8 @@
 package org.jshell;
 
 import java.io.IOException;
-import jline.ConsoleReader;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 
 /**
  *
@@ -30,26 +31,76 @@ import jline.ConsoleReader;
  */
 public class ShellIO {
 
-    private final ShellBuffer buffer = new ShellBuffer();
-    private final ConsoleReader reader;
+    private final ShellBuffer buffer;
+    private final LineInput input;
+    private final ShellIO parent;
+    private JobTable jobs;
 
-    ShellIO(ConsoleReader reader) {
-        this.reader = reader;
+    /**
+     * Create the output of a shell.
+     * @param input The lines typed by the user, null if there is no user.
+     */
+    ShellIO(LineInput input) {
+        this.buffer = new ShellBuffer();
+        this.input = input;
+        this.parent = null;
+    }
+
+    /**
+     * Create an output forwarding all the lines to another output.
+     * @param parent The output receiving the lines.
+     */
+    ShellIO(ShellIO parent) {
+        this.buffer = null;
+        this.input = null;
+        this.parent = parent;
+    }
+
+    /**
+     * Create the output of a command read by the next command of a pipeline.
+     * @param parent    The output of the shell, used to ask a text.
+     * @param capacity  The maximum number of lines waiting to be read.
+     */
+    ShellIO(ShellIO parent, int capacity) {
+        this.buffer = new ShellBuffer(capacity);
+        this.input = null;
+        this.parent = parent;
     }
 
 
     /**
      * Ask a text in the shell.
-     * @return The text typed in the shell.
+     * @return The text typed in the shell, or null if the user closed the input.
      */
     public final String readLine() {
+        if(parent != null) {
+            return parent.readLine();
+        }
+        flush();
+        if(input == null) {
+            throw new UnsupportedOperationException("No console to read a line");
+        }
         try {
-            return reader.readLine().trim();
+            String line = input.readLine();
+            return line == null ? null : line.trim();
         } catch (IOException ex) {
             throw new UnsupportedOperationException("Error reading line", ex);
         }
     }
 
+    /**
+     * Exit the shell. The process exits, unless the shell is a remote session
+     * which is closed instead.
+     * @param status The exit status.
+     */
+    public void exit(int status) {
+        if(parent != null) {
+            parent.exit(status);
+        } else {
+            System.exit(status);
+        }
+    }
+
     /**
      * Print a line in the shell.
      * @param str The line to print.
@@ -61,12 +112,64 @@ public class ShellIO {
     void print(String str) {
     }
 
+    /**
+     * Write the text buffered for the terminal.
+     */
+    void flush() {
+    }
+
     /**
      * Print an empty line in the shell.
      */
     public void println() {
     }
 
+    /**
+     * Indicates if the output is not read anymore, because the next command of
+     * the pipeline has finished. Printing a line then stops the command, but a
+     * command which does not print for a long time should check it to stop as
+     * soon as possible.
+     * @return true if the output is not read anymore, otherwise false.
+     */
+    public boolean isClosed() {
+        return buffer != null && buffer.isAbandoned();
+    }
+
+    /**
+     * Get a channel writing the bytes directly to the terminal. It is only
+     * available for the last command of a pipeline, and lets a command print
+     * some content without building the lines.
+     * @return The channel, or null if the output is read by another command.
+     */
+    public WritableByteChannel getTerminalChannel() {
+        return null;
+    }
+
+    /**
+     * Get the charset in which the terminal displays the bytes of the
+     * {@link #getTerminalChannel() terminal channel}.
+     * @return The charset, or null if the output is not a terminal.
+     */
+    public Charset getTerminalCharset() {
+        return null;
+    }
+
+    /**
+     * Get the jobs of the session of the shell.
+     * @return The jobs.
+     */
+    JobTable getJobs() {
+        if(parent != null) {
+            return parent.getJobs();
+        }
+        synchronized(this) {
+            if(jobs == null) {
+                jobs = new JobTable();
+            }
+            return jobs;
+        }
+    }
+
     /**
      * Get the input buffer (can be provided by an other command).
      * @return The buffer.
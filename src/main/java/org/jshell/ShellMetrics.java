@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Cumulative measures of the commands executed by a shell. While the shell
+ * runs a console, a script or a session, the measures of each command are
+ * registered as a MXBean in the platform MBean server.
+ *
+ * @author Fabien Barbero
+ */
+final class ShellMetrics {
+
+    private static final AtomicInteger SHELL_COUNT = new AtomicInteger();
+
+    private final int shellId = SHELL_COUNT.incrementAndGet();
+    private final ConcurrentMap<String, CommandMetrics> commands = new ConcurrentHashMap<String, CommandMetrics>();
+    private final Map<String, ObjectName> registered = new HashMap<String, ObjectName>();
+    private int users;
+
+    /**
+     * Register the measures while the shell is used.
+     */
+    synchronized void open() {
+        if(users++ == 0) {
+            for(CommandMetrics metrics : commands.values()) {
+                register(metrics);
+            }
+        }
+    }
+
+    /**
+     * Unregister the measures when the shell is no longer used.
+     */
+    synchronized void close() {
+        if(--users == 0) {
+            for(ObjectName name : registered.values()) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+                } catch(JMException ex) {
+                    // Already unregistered
+                } catch(SecurityException ex) {
+                    // Never registered
+                }
+            }
+            registered.clear();
+        }
+    }
+
+    /**
+     * Add the measures of an execution of a command.
+     * @param stage The measures.
+     */
+    void record(StageMetrics stage) {
+        CommandMetrics metrics = commands.get(stage.command);
+        if(metrics == null) {
+            metrics = new CommandMetrics(stage.command);
+            CommandMetrics previous = commands.putIfAbsent(stage.command, metrics);
+            if(previous == null) {
+                synchronized(this) {
+                    if(users > 0) {
+                        register(metrics);
+                    }
+                }
+            } else {
+                metrics = previous;
+            }
+        }
+        metrics.record(stage);
+    }
+
+    private void register(CommandMetrics metrics) {
+        if(registered.containsKey(metrics.getCommand())) {
+            return;
+        }
+        try {
+            ObjectName name = getObjectName(metrics.getCommand());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            registered.put(metrics.getCommand(), name);
+        } catch(JMException ex) {
+            // The measures are still available in the shell
+        } catch(SecurityException ex) {
+            // The measures are still available in the shell
+        }
+    }
+
+    ObjectName getObjectName(String command) throws MalformedObjectNameException {
+        return new ObjectName("org.jshell:type=CommandMetrics,shell=" + shellId + ",name=" + ObjectName.quote(command));
+    }
+
+    /**
+     * Get the measures of the executed commands, sorted by name.
+     * @return The measures.
+     */
+    List<CommandMetrics> getCommands() {
+        List<CommandMetrics> list = new ArrayList<CommandMetrics>(commands.values());
+        Collections.sort(list, new Comparator<CommandMetrics>() {
+
+            @Override
+            public int compare(CommandMetrics o1, CommandMetrics o2) {
+                return o1.getCommand().compareTo(o2.getCommand());
+            }
+        });
+        return list;
+    }
+
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server accepting the remote sessions of a shell. Each session runs in its
+ * own thread with a small stack, which mostly waits for the next command line,
+ * while the commands run in the pipeline executor of the shell.
+ *
+ * @author Fabien Barbero
+ */
+public final class ShellServer implements Closeable {
+
+    private static final long SESSION_STACK_SIZE = 256 * 1024;
+
+    private final Shell shell;
+    private final ServerSocket serverSocket;
+    private final Set<ShellSession> sessions = Collections.newSetFromMap(new ConcurrentHashMap<ShellSession, Boolean>());
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private volatile boolean closed;
+
+    ShellServer(Shell shell, ServerSocket serverSocket) {
+        this.shell = shell;
+        this.serverSocket = serverSocket;
+    }
+
+    void start() {
+        Thread acceptor = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "jshell-server-" + serverSocket.getLocalPort());
+        acceptor.start();
+    }
+
+    private void accept() {
+        while(!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch(SocketException ex) {
+                // Server closed
+                return;
+            } catch(IOException ex) {
+                ex.printStackTrace();
+                continue;
+            }
+            try {
+                final ShellSession session = new ShellSession(shell, socket);
+                sessions.add(session);
+                Thread thread = new Thread(null, new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            session.run();
+                        } finally {
+                            sessions.remove(session);
+                        }
+                    }
+                }, "jshell-session-" + sessionCount.incrementAndGet(), SESSION_STACK_SIZE);
+                thread.setDaemon(true);
+                thread.start();
+            } catch(IOException ex) {
+                ex.printStackTrace();
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    /**
+     * Get the port of the server.
+     * @return The port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Get the number of sessions opened.
+     * @return The number of sessions.
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Stop accepting sessions and close the opened ones.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for(ShellSession session : sessions) {
+            session.close();
+        }
+    }
+
+    static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch(IOException ex) {
+            // Nothing to do
+        }
+    }
+
+}
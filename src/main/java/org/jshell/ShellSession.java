@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remote session of a shell, reading the command lines from a connection and
+ * writing the output in it.
+ *
+ * @author Fabien Barbero
+ */
+final class ShellSession implements LineInput {
+
+    private final Shell shell;
+    private final Socket socket;
+    private final BufferedReader reader;
+    private final SessionIO shellIO;
+    private volatile boolean closed;
+
+    ShellSession(Shell shell, Socket socket) throws IOException {
+        this.shell = shell;
+        this.socket = socket;
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        shellIO = new SessionIO(this, socket.getOutputStream());
+    }
+
+    /**
+     * Execute the command lines of the session until it is closed.
+     */
+    void run() {
+        try {
+            shell.interact(shellIO);
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch(RuntimeException ex) {
+            if(!closed) {
+                ex.printStackTrace();
+            }
+        } finally {
+            shellIO.flush();
+            close();
+        }
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        if(closed) {
+            return null;
+        }
+        try {
+            return reader.readLine();
+        } catch(SocketException ex) {
+            // Connection lost or session closed
+            return null;
+        }
+    }
+
+    void close() {
+        closed = true;
+        ShellServer.closeQuietly(socket);
+    }
+
+    private static final class SessionIO extends ShellIO {
+
+        private final ShellSession session;
+        private final OutputStream out;
+        private final Writer writer;
+        private final Runnable flushTask = new Runnable() {
+
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+        private ScheduledFuture<?> pendingFlush;
+        private WritableByteChannel channel;
+
+        SessionIO(ShellSession session, OutputStream out) {
+            super(session);
+            this.session = session;
+            this.out = out;
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public synchronized void println(String str) {
+            print(str);
+            print("\n");
+        }
+
+        @Override
+        public void println() {
+            print("\n");
+        }
+
+        @Override
+        synchronized void print(String str) {
+            try {
+                writer.write(str);
+            } catch(IOException ex) {
+                // The connection is lost, the next read closes the session
+                session.close();
+                throw new BrokenPipeException(ex);
+            }
+            // The output of a long command is sent while it runs
+            if(pendingFlush == null) {
+                pendingFlush = TerminalWriter.FLUSHER.schedule(flushTask, TerminalWriter.FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        @Override
+        synchronized void flush() {
+            if(pendingFlush != null) {
+                pendingFlush.cancel(false);
+                pendingFlush = null;
+            }
+            try {
+                writer.flush();
+            } catch(IOException ex) {
+                session.close();
+            }
+        }
+
+        @Override
+        public synchronized WritableByteChannel getTerminalChannel() {
+            flush();
+            if(channel == null) {
+                channel = Channels.newChannel(out);
+            }
+            return channel;
+        }
+
+        @Override
+        public Charset getTerminalCharset() {
+            return StandardCharsets.UTF_8;
+        }
+
+        @Override
+        public void exit(int status) {
+            flush();
+            session.close();
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Measures of one execution of a command in a pipeline. The CPU time and the
+ * allocated bytes are the ones of the thread running the command, the work
+ * that the command gives to other threads is not included.
+ *
+ * @author Fabien Barbero
+ */
+final class StageMetrics {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+    private static final Method ALLOCATED_BYTES = allocatedBytesMethod();
+
+    final String command;
+    final boolean failed;
+    final long wallNanos;
+    final long cpuNanos;
+    final long allocatedBytes;
+    final long linesIn;
+    final long charsIn;
+    final long linesOut;
+    final long charsOut;
+
+    StageMetrics(String command, boolean failed, long wallNanos, long cpuNanos, long allocatedBytes,
+            long linesIn, long charsIn, long linesOut, long charsOut) {
+        this.command = command;
+        this.failed = failed;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.linesIn = linesIn;
+        this.charsIn = charsIn;
+        this.linesOut = linesOut;
+        this.charsOut = charsOut;
+    }
+
+    private static Method allocatedBytesMethod() {
+        // com.sun.management is not available on all the JVMs
+        try {
+            Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+            if(beanClass.isInstance(THREADS)
+                    && (Boolean) beanClass.getMethod("isThreadAllocatedMemorySupported").invoke(THREADS)
+                    && (Boolean) beanClass.getMethod("isThreadAllocatedMemoryEnabled").invoke(THREADS)) {
+                return beanClass.getMethod("getThreadAllocatedBytes", long.class);
+            }
+        } catch(ReflectiveOperationException ex) {
+            // Not measured
+        } catch(LinkageError ex) {
+            // Not measured
+        }
+        return null;
+    }
+
+    /**
+     * Get the CPU time of the current thread.
+     * @return The time in nanoseconds, or 0 if it is not measured.
+     */
+    static long threadCpuTime() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Get the bytes allocated by the current thread.
+     * @return The number of bytes, or 0 if they are not measured.
+     */
+    static long threadAllocatedBytes() {
+        if(ALLOCATED_BYTES == null) {
+            return 0;
+        }
+        try {
+            return (Long) ALLOCATED_BYTES.invoke(THREADS, Thread.currentThread().getId());
+        } catch(ReflectiveOperationException ex) {
+            return 0;
+        }
+    }
+
+    static String header() {
+        return String.format("%-12s %10s %10s %10s %10s %12s %10s %12s",
+                "command", "wall ms", "cpu ms", "alloc KB", "lines in", "chars in", "lines out", "chars out");
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-12s %10.1f %10.1f %10d %10d %12d %10d %12d%s",
+                command, wallNanos / 1e6, cpuNanos / 1e6, allocatedBytes / 1024,
+                linesIn, charsIn, linesOut, charsOut, failed ? " (failed)" : "");
+    }
+
+}
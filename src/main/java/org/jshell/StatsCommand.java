@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+/**
+ * Built-in command printing statistics about the shell.
+ *
+ * @author Fabien Barbero
+ */
+final class StatsCommand extends AbstractShellCommand {
+
+    private final Shell shell;
+
+    StatsCommand(Shell shell) {
+        super("stats");
+        this.shell = shell;
+    }
+
+    @Override
+    protected String getHelpMessage() {
+        return "Prints statistics about the shell";
+    }
+
+    @Override
+    protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+        OutputRetention retention = shell.getOutputRetention();
+        handler.println("Output retention: " + retention);
+        handler.println("  retained lines: " + retention.getLineCount());
+        handler.println("  retained bytes: " + retention.getByteCount());
+        for(CommandMetrics metrics : shell.getMetrics().getCommands()) {
+            handler.println("");
+            metrics.print(handler);
+        }
+    }
+
+}
@@ -21,7 +21,8 @@
  */
 package org.jshell;
 
-import jline.ConsoleReader;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 
 /**
  *
@@ -29,25 +30,46 @@ import jline.ConsoleReader;
  */
 final class SystemShellIO extends ShellIO {
 
-    public SystemShellIO(ConsoleReader reader) {
-        super(reader);
+    private final OutputRetention retention;
+    private final TerminalWriter writer;
+
+    public SystemShellIO(LineInput input, OutputRetention retention, TerminalWriter writer) {
+        super(input);
+        this.retention = retention;
+        this.writer = writer;
     }
 
 
     @Override
     public void println(String str) {
-        super.println(str);
-        System.out.println(str);
+        retention.retain(str);
+        writer.println(str);
     }
 
     @Override
     public void println() {
-        System.out.println();
+        writer.println("");
     }
 
     @Override
     public void print(String str) {
-        System.out.print(str);
+        writer.print(str);
+    }
+
+    @Override
+    void flush() {
+        writer.flush();
+    }
+
+    @Override
+    public WritableByteChannel getTerminalChannel() {
+        // The bytes written in the channel would not be retained
+        return retention.isRetaining() ? null : writer.getChannel();
+    }
+
+    @Override
+    public Charset getTerminalCharset() {
+        return writer.getCharset();
     }
 
 
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writer of the standard output. The texts are encoded into a large reused
+ * buffer, written when it is full, when {@link #flush()} is called (before
+ * each prompt) or a few milliseconds after the first text written, so the
+ * output of a slow command still appears without waiting.
+ * <p>
+ * The bytes are written through a {@link FileOutputStream}, which is not
+ * closed when the writing thread is interrupted, unlike a file channel.
+ *
+ * @author Fabien Barbero
+ */
+final class TerminalWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CHARS_SIZE = 4 * 1024;
+    static final long FLUSH_DELAY_MS = 20;
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "jshell-terminal-flush");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static TerminalWriter instance;
+
+    private final OutputStream out;
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final char[] chars = new char[CHARS_SIZE];
+    private final CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private final Runnable flushTask = new Runnable() {
+
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+    private ScheduledFuture<?> pendingFlush;
+
+    /**
+     * Create a writer.
+     * @param out The stream receiving the bytes, never closed.
+     */
+    TerminalWriter(OutputStream out) {
+        this.out = out;
+        channel = new TerminalChannel();
+        encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Get the writer of the standard output, shared by the shells of the
+     * process.
+     * @return The writer.
+     */
+    static synchronized TerminalWriter getInstance() {
+        if(instance == null) {
+            instance = new TerminalWriter(new FileOutputStream(FileDescriptor.out));
+            Runtime.getRuntime().addShutdownHook(new Thread(instance.flushTask, "jshell-terminal-exit"));
+        }
+        return instance;
+    }
+
+    /**
+     * Get the charset of the written texts.
+     * @return The charset.
+     */
+    Charset getCharset() {
+        return encoder.charset();
+    }
+
+    /**
+     * Write a text.
+     * @param str The text.
+     */
+    synchronized void print(String str) {
+        int length = str.length();
+        int offset = 0;
+        while(offset < length) {
+            int count = Math.min(length - offset, charBuffer.remaining());
+            str.getChars(offset, offset + count, chars, charBuffer.position());
+            charBuffer.position(charBuffer.position() + count);
+            offset += count;
+            encode();
+        }
+        if(pendingFlush == null && bytes.position() > 0) {
+            pendingFlush = FLUSHER.schedule(flushTask, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write a text followed by a line separator.
+     * @param str The text.
+     */
+    synchronized void println(String str) {
+        print(str);
+        print(LINE_SEPARATOR);
+    }
+
+    /**
+     * Write the buffered bytes.
+     */
+    synchronized void flush() {
+        if(pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+        try {
+            out.write(bytes.array(), 0, bytes.position());
+        } catch(IOException ex) {
+            // As System.out, the errors of the terminal are ignored
+        } finally {
+            bytes.clear();
+        }
+    }
+
+    /**
+     * Get a channel writing to the standard output, after the buffered bytes.
+     * @return The channel.
+     */
+    WritableByteChannel getChannel() {
+        return channel;
+    }
+
+    private void encode() {
+        charBuffer.flip();
+        while(encoder.encode(charBuffer, bytes, false) == CoderResult.OVERFLOW) {
+            flush();
+        }
+        // An incomplete surrogate pair is kept for the next text
+        charBuffer.compact();
+    }
+
+    private final class TerminalChannel implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            synchronized(TerminalWriter.this) {
+                flush();
+                int written = src.remaining();
+                while(src.hasRemaining()) {
+                    int count = Math.min(src.remaining(), bytes.capacity());
+                    src.get(bytes.array(), 0, count);
+                    out.write(bytes.array(), 0, count);
+                }
+                return written;
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // The standard output stays open
+        }
+    }
+
+}
@@ -0,0 +1,263 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Built-in command executing a command for each line of its input. The
+ * commands run in a pool of a few threads, each one printing in its own
+ * output; the outputs are printed in the order of the input, or as the
+ * commands finish. At most two commands per thread wait to be printed, so the
+ * input is read as fast as the commands run.
+ *
+ * @author Fabien Barbero
+ */
+final class XargsCommand extends AbstractShellCommand {
+
+    private static final String THREADS_ARGUMENT = "-P";
+    private static final String LINES_ARGUMENT = "-n";
+    private static final String UNORDERED_ARGUMENT = "-u";
+    private static final String PLACEHOLDER = "{}";
+    /** Size of the output of a command kept in memory, before a temporary file. */
+    private static final long OUTPUT_MEMORY_LIMIT = 4L * 1024 * 1024;
+
+    private final CommandRegistry commands;
+
+    XargsCommand(CommandRegistry commands) {
+        super("xargs");
+        this.commands = commands;
+    }
+
+    @Override
+    protected String getHelpMessage() {
+        return "Executes a command for each line of the input\n"
+                + "  xargs COMMAND [ARG...]  executes the command with the line replacing the\n"
+                + "                          argument {}, or after the arguments\n"
+                + "  -P N                    number of commands executed at the same time\n"
+                + "                          (default " + Runtime.getRuntime().availableProcessors() + ")\n"
+                + "  -n N                    number of lines given to each command (default 1)\n"
+                + "  -u                      prints the outputs as the commands finish, instead\n"
+                + "                          of in the order of the input";
+    }
+
+    @Override
+    protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+        // The options of xargs are before the command, the next ones are the command's
+        int threads = Runtime.getRuntime().availableProcessors();
+        int batchSize = 1;
+        boolean ordered = true;
+        int index = 0;
+        for(; index < args.size() && args.getArgumentAt(index).startsWith("-"); index++) {
+            String arg = args.getArgumentAt(index);
+            if(arg.equals(UNORDERED_ARGUMENT)) {
+                ordered = false;
+            } else if(arg.equals(THREADS_ARGUMENT) || arg.equals(LINES_ARGUMENT)) {
+                int value = parseCount(args.getArgumentAt(++index));
+                if(value < 1) {
+                    handler.println("Invalid number: " + args.getArgumentAt(index));
+                    return;
+                }
+                if(arg.equals(THREADS_ARGUMENT)) {
+                    threads = value;
+                } else {
+                    batchSize = value;
+                }
+            } else {
+                handler.println("Unknown option: " + arg);
+                return;
+            }
+        }
+        if(index >= args.size()) {
+            handler.println("No command to execute");
+            return;
+        }
+        String name = args.getArgumentAt(index);
+        ShellCommand command = commands.find(name);
+        if(command == null) {
+            String error = commands.getError(name);
+            handler.println(error != null ? error : "Unknown command: " + name);
+            return;
+        }
+        List<String> commandArgs = new ArrayList<String>();
+        for(index++; index < args.size(); index++) {
+            commandArgs.add(args.getArgumentAt(index));
+        }
+        if(inputBuffer == null) {
+            handler.println("No input to read");
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new Shell.PipelineThreadFactory("jshell-xargs-"));
+        CompletionService<LineStore> completion = new ExecutorCompletionService<LineStore>(executor);
+        Deque<Future<LineStore>> pending = new ArrayDeque<Future<LineStore>>();
+        try {
+            Iterator<String> it = inputBuffer.getContent();
+            while(it.hasNext() && !handler.isClosed()) {
+                List<String> lines = new ArrayList<String>(batchSize);
+                while(lines.size() < batchSize && it.hasNext()) {
+                    lines.add(it.next());
+                }
+                Execution execution = new Execution(command, createArguments(commandArgs, lines), handler);
+                pending.add(ordered ? executor.submit(execution) : completion.submit(execution));
+                if(pending.size() >= 2 * threads) {
+                    print(ordered ? pending.peek() : completion.take(), pending, name, handler);
+                }
+            }
+            while(!pending.isEmpty()) {
+                print(ordered ? pending.peek() : completion.take(), pending, name, handler);
+            }
+        } finally {
+            executor.shutdownNow();
+            for(Future<LineStore> future : pending) {
+                if(future.isDone() && !future.isCancelled()) {
+                    try {
+                        future.get().close();
+                    } catch(ExecutionException ex) {
+                        // Already reported, or not printed anymore
+                    }
+                }
+            }
+        }
+    }
+
+    private static ArgumentsList createArguments(List<String> commandArgs, List<String> lines) {
+        List<String> arguments = new ArrayList<String>();
+        boolean replaced = false;
+        for(String arg : commandArgs) {
+            if(arg.equals(PLACEHOLDER)) {
+                arguments.addAll(lines);
+                replaced = true;
+            } else {
+                arguments.add(arg);
+            }
+        }
+        if(!replaced) {
+            arguments.addAll(lines);
+        }
+        return new ArgumentsList(arguments.toArray(new String[arguments.size()]));
+    }
+
+    /**
+     * Print the output of a finished command, or the exception it threw.
+     */
+    private static void print(Future<LineStore> future, Deque<Future<LineStore>> pending, String name, ShellIO handler)
+            throws InterruptedException {
+        pending.remove(future);
+        LineStore output;
+        try {
+            output = future.get();
+        } catch(ExecutionException ex) {
+            handler.println(name + ": " + ex.getCause());
+            return;
+        }
+        try {
+            Iterator<String> it = output.iterator();
+            while(it.hasNext()) {
+                handler.println(it.next());
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    private static int parseCount(String value) {
+        if(value == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch(NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Execution of the command, keeping its output.
+     */
+    private static final class Execution implements Callable<LineStore> {
+
+        private final ShellCommand command;
+        private final ArgumentsList args;
+        private final ShellIO parent;
+
+        Execution(ShellCommand command, ArgumentsList args, ShellIO parent) {
+            this.command = command;
+            this.args = args;
+            this.parent = parent;
+        }
+
+        @Override
+        public LineStore call() throws Exception {
+            LineStore output = new LineStore(OUTPUT_MEMORY_LIMIT, false);
+            try {
+                command.execute(args, null, new OutputIO(parent, output));
+                return output;
+            } catch(Exception ex) {
+                output.close();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Output of a command, stored until it is printed.
+     */
+    private static final class OutputIO extends ShellIO {
+
+        private final ShellIO parent;
+        private final LineStore output;
+
+        OutputIO(ShellIO parent, LineStore output) {
+            super(parent);
+            this.parent = parent;
+            this.output = output;
+        }
+
+        @Override
+        public void println(String str) {
+            output.add(str);
+        }
+
+        @Override
+        public void println() {
+            output.add("");
+        }
+
+        @Override
+        public boolean isClosed() {
+            return parent.isClosed();
+        }
+    }
+
+}
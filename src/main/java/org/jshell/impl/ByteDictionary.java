@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Dictionary giving a code to each distinct sequence of bytes, in the order
+ * they are added. The bytes are copied in one growing array and found with an
+ * open addressing hash table of codes, so adding a known value does not
+ * allocate.
+ *
+ * @author Fabien Barbero
+ */
+final class ByteDictionary {
+
+    private static final int EMPTY = -1;
+
+    private byte[] bytes = new byte[64 * 1024];
+    private int size;
+    /** Start of each value in the bytes, and the end of the last one. */
+    private int[] starts = new int[1024];
+    private int[] hashes = new int[1024];
+    private int count;
+    private int[] table = newTable(2048);
+
+    private static int[] newTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    /**
+     * Get the number of values.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Add a value if it is not in the dictionary.
+     * @return The code of the value.
+     */
+    int add(byte[] value, int start, int end) {
+        int hash = hash(value, start, end);
+        int mask = table.length - 1;
+        for(int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int code = table[slot];
+            if(code == EMPTY) {
+                code = insert(value, start, end, hash);
+                table[slot] = code;
+                if(2 * count > table.length) {
+                    rehash();
+                }
+                return code;
+            }
+            if(hashes[code] == hash && equals(code, value, start, end)) {
+                return code;
+            }
+        }
+    }
+
+    /**
+     * Get the length of a value.
+     */
+    int getLength(int code) {
+        return end(code) - starts[code];
+    }
+
+    /**
+     * Append a value to a buffer.
+     */
+    void append(int code, ByteBuffer out) {
+        out.put(bytes, starts[code], getLength(code));
+    }
+
+    /**
+     * Get a value, to print it.
+     */
+    byte[] get(int code) {
+        return Arrays.copyOfRange(bytes, starts[code], end(code));
+    }
+
+    private int end(int code) {
+        return code + 1 < count ? starts[code + 1] : size;
+    }
+
+    private boolean equals(int code, byte[] value, int start, int end) {
+        int from = starts[code];
+        if(end(code) - from != end - start) {
+            return false;
+        }
+        for(int i=start; i<end; i++, from++) {
+            if(bytes[from] != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int insert(byte[] value, int start, int end, int hash) {
+        int length = end - start;
+        if(size + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + length));
+        }
+        if(count == starts.length) {
+            starts = Arrays.copyOf(starts, 2 * count);
+            hashes = Arrays.copyOf(hashes, 2 * count);
+        }
+        System.arraycopy(value, start, bytes, size, length);
+        starts[count] = size;
+        hashes[count] = hash;
+        size += length;
+        return count++;
+    }
+
+    private void rehash() {
+        table = newTable(2 * table.length);
+        int mask = table.length - 1;
+        for(int code=0; code<count; code++) {
+            int slot = hashes[code] & mask;
+            while(table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = code;
+        }
+    }
+
+    private static int hash(byte[] value, int start, int end) {
+        int hash = 0x811C9DC5;
+        for(int i=start; i<end; i++) {
+            hash = (hash ^ value[i]) * 0x01000193;
+        }
+        // Spread the bits on the low ones, used by the table
+        return hash ^ (hash >>> 16);
+    }
+
+}
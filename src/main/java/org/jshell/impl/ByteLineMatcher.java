@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests lines encoded in UTF-8 with a {@link LineMatcher}. An ASCII literal is
+ * searched on the bytes; the other matchers get the lines decoded in a reused
+ * char buffer, without building strings.
+ *
+ * @author Fabien Barbero
+ */
+final class ByteLineMatcher {
+
+    private final LineMatcher matcher;
+    private final LiteralMatcher literal;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer chars = CharBuffer.allocate(1024);
+
+    ByteLineMatcher(LineMatcher matcher) {
+        this.matcher = matcher;
+        boolean byteSearch = matcher instanceof LiteralMatcher && ((LiteralMatcher) matcher).isAscii();
+        this.literal = byteSearch ? (LiteralMatcher) matcher : null;
+    }
+
+    /**
+     * Indicates if a line matches.
+     * @param line  The bytes of the line between the position and the limit.
+     * @return      true if the line matches, otherwise false.
+     */
+    boolean matches(ByteBuffer line) {
+        if(literal != null) {
+            if(literal.matches(line)) {
+                return true;
+            }
+            if(!literal.hasNonAsciiFoldings() || isAscii(line)) {
+                return false;
+            }
+        }
+        return matcher.matches(decode(line));
+    }
+
+    private static boolean isAscii(ByteBuffer line) {
+        for(int i=line.position(); i<line.limit(); i++) {
+            if(line.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CharBuffer decode(ByteBuffer line) {
+        if(chars.capacity() < line.remaining()) {
+            chars = CharBuffer.allocate(line.remaining());
+        }
+        chars.clear();
+        decoder.reset();
+        decoder.decode(line.duplicate(), chars, true);
+        decoder.flush(chars);
+        chars.flip();
+        return chars;
+    }
+
+}
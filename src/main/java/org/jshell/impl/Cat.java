@@ -22,17 +22,36 @@
 package org.jshell.impl;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
 import org.jshell.AbstractShellCommand;
 import org.jshell.ArgumentsList;
+import org.jshell.ByteShellCommand;
+import org.jshell.BytePipe;
+import org.jshell.Idempotent;
 import org.jshell.ShellBuffer;
 import org.jshell.ShellIO;
 
 /**
+ * Prints files. The compressed files are inflated by another thread while
+ * they are printed.
  *
  * @author Fabien Barbero
  */
-public class Cat extends AbstractShellCommand {
+@Idempotent(exceptWith = Cat.FOLLOW_ARGUMENT)
+public class Cat extends AbstractShellCommand implements ByteShellCommand {
+
+    static final String FOLLOW_ARGUMENT = "-f";
+    private static final String CHARSET_ARGUMENT = "-charset";
+    private static final String DEFAULT_CHARSET = "UTF-8";
 
     public Cat() {
         super("cat");
@@ -40,27 +59,192 @@ public class Cat extends AbstractShellCommand {
 
     @Override
     protected String getHelpMessage() {
-        return "prints the content of a file";
+        return "prints the content of files\n"
+                + "  cat FILE...         prints the files, inflating the gzip files\n"
+                + "  -f                  then prints the lines appended to the file, until interrupted\n"
+                + "  -charset NAME       charset of the files (default " + DEFAULT_CHARSET + ")";
     }
 
     @Override
     protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
-        String filePath = args.getArgumentAt(0);
-        if(filePath == null) {
-            handler.println("No file to print");
+        List<String> filePaths = args.getOperands(CHARSET_ARGUMENT);
+        Charset charset = getCharset(args, filePaths, handler);
+        if(charset == null) {
+            return;
+        }
+
+        WritableByteChannel terminal = null;
+        if(charset.equals(handler.getTerminalCharset())) {
+            // The terminal displays the bytes of the files as is
+            terminal = handler.getTerminalChannel();
+        }
+        long printed = 0;
+        for(String filePath : filePaths) {
+            RandomAccessFile file = new RandomAccessFile(filePath, "r");
+            try {
+                FileChannel channel = file.getChannel();
+                Compression compression = Compression.detect(channel);
+                if(compression != Compression.NONE) {
+                    if(!canFollow(args, handler)) {
+                        return;
+                    }
+                    printInflated(compression.open(channel), charset, terminal, handler);
+                    continue;
+                }
+                printed = channel.size();
+                if(terminal != null) {
+                    // Last command: the bytes are sent without decoding
+                    transfer(channel, printed, terminal);
+                } else {
+                    printLines(channel, printed, charset, handler);
+                }
+            } finally {
+                file.close();
+            }
+        }
+        if(args.containsArgument(FOLLOW_ARGUMENT)) {
+            new FileFollower(Paths.get(filePaths.get(0)), printed, charset, null, handler).follow();
+        }
+    }
+
+    @Override
+    public void executeBytes(ArgumentsList args, ShellBuffer inputBuffer, BytePipe input, BytePipe output, ShellIO handler) throws Exception {
+        if(printHelp(args, handler)) {
             return;
         }
-        BufferedReader fileReader = null;
+        List<String> filePaths = args.getOperands(CHARSET_ARGUMENT);
+        Charset charset = getCharset(args, filePaths, handler);
+        if(charset == null) {
+            return;
+        }
+        // The lines of an ASCII file are valid UTF-8 lines
+        boolean utf8 = charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII);
+        long printed = 0;
+        for(String filePath : filePaths) {
+            RandomAccessFile file = new RandomAccessFile(filePath, "r");
+            try {
+                FileChannel channel = file.getChannel();
+                Compression compression = Compression.detect(channel);
+                if(compression != Compression.NONE) {
+                    if(!canFollow(args, handler)) {
+                        return;
+                    }
+                    if(utf8) {
+                        writeInflated(compression.open(channel), output);
+                    } else {
+                        printInflated(compression.open(channel), charset, null, handler);
+                    }
+                    continue;
+                }
+                printed = channel.size();
+                if(utf8) {
+                    writeLines(channel, printed, output);
+                } else {
+                    printLines(channel, printed, charset, handler);
+                }
+            } finally {
+                file.close();
+            }
+        }
+        if(args.containsArgument(FOLLOW_ARGUMENT)) {
+            new FileFollower(Paths.get(filePaths.get(0)), printed, charset, utf8 ? output : null, handler).follow();
+        }
+    }
+
+    private static Charset getCharset(ArgumentsList args, List<String> filePaths, ShellIO handler) {
+        if(filePaths.isEmpty()) {
+            handler.println("No file to print");
+            return null;
+        }
+        String charsetName = args.getNextArgumentValue(CHARSET_ARGUMENT);
+        if(charsetName == null) {
+            charsetName = DEFAULT_CHARSET;
+        } else if(!Charset.isSupported(charsetName)) {
+            handler.println("Unsupported charset '" + charsetName + "'");
+            return null;
+        }
+        Charset charset = Charset.forName(charsetName);
+        if(args.containsArgument(FOLLOW_ARGUMENT)) {
+            if(filePaths.size() > 1) {
+                handler.println("Only one file can be followed");
+                return null;
+            }
+            if(!FileFollower.canFollow(charset)) {
+                handler.println("Can not follow a file in " + charset.name());
+                return null;
+            }
+        }
+        return charset;
+    }
+
+    private static boolean canFollow(ArgumentsList args, ShellIO handler) {
+        if(args.containsArgument(FOLLOW_ARGUMENT)) {
+            handler.println("Can not follow a compressed file");
+            return false;
+        }
+        return true;
+    }
+
+    private static void writeInflated(InputStream in, BytePipe output) throws Exception {
+        try {
+            StreamLineReader reader = new StreamLineReader(in);
+            ByteBuffer line;
+            while((line = reader.readLine()) != null) {
+                output.write(line);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void printInflated(InputStream in, Charset charset, WritableByteChannel terminal, ShellIO handler) throws Exception {
         try {
-            fileReader = new BufferedReader(new FileReader(filePath));
-            String line;
-            while((line = fileReader.readLine()) != null) {
-                handler.println(line);
+            if(terminal != null) {
+                byte[] block = new byte[64 * 1024];
+                int read;
+                while((read = in.read(block)) >= 0) {
+                    ByteBuffer buffer = ByteBuffer.wrap(block, 0, read);
+                    while(buffer.hasRemaining()) {
+                        terminal.write(buffer);
+                    }
+                }
+            } else {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset));
+                String line;
+                while((line = reader.readLine()) != null) {
+                    handler.println(line);
+                }
             }
         } finally {
-            if(fileReader != null) {
-                fileReader.close();
+            in.close();
+        }
+    }
+
+    private static void writeLines(FileChannel channel, long size, BytePipe output) throws Exception {
+        MappedByteLineReader reader = new MappedByteLineReader(channel, 0, size);
+        ByteBuffer line;
+        while((line = reader.readLine()) != null) {
+            output.write(line);
+        }
+    }
+
+    private static void transfer(FileChannel channel, long size, WritableByteChannel terminal) throws Exception {
+        long position = 0;
+        while(position < size) {
+            long count = channel.transferTo(position, size - position, terminal);
+            if(count <= 0) {
+                // The file has been truncated
+                break;
             }
+            position += count;
+        }
+    }
+
+    private static void printLines(FileChannel channel, long size, Charset charset, ShellIO handler) throws Exception {
+        MappedLineReader reader = new MappedLineReader(channel, charset, 0, size);
+        String line;
+        while((line = reader.readLine()) != null) {
+            handler.println(line);
         }
     }
 
@@ -0,0 +1,368 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.jshell.ArgumentsList;
+
+/**
+ * Search of the lines of a file matching the arguments of a grep. The file is
+ * split into chunks aligned on the lines, which are searched in parallel in a
+ * {@link ForkJoinPool}; the results are given back in the order of the file.
+ * The matching lines are handed over in small parts as they are found, and a
+ * chunk waits while its parts are not collected, so only a few parts of each
+ * chunk are kept in memory.
+ * A compressed file is searched in sequence while another thread inflates it.
+ * When the file has a {@link TrigramIndex}, only the blocks which can
+ * contain the literals of the search are read.
+ *
+ * @author Fabien Barbero
+ */
+final class ChunkedFileSearch {
+
+    static final long CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private static final int SCAN_SIZE = 8 * 1024;
+    private static final int BATCH_LINES = 4096;
+    private static final int BATCH_CHARS = 64 * 1024;
+    private static final int QUEUE_PARTS = 2;
+    private static final long POLL_MS = 100;
+
+    /** Marks the end of a chunk, compared by identity. */
+    private static final Part END = new Part(null, 0);
+
+    /**
+     * Receives the results of a search.
+     */
+    interface Collector {
+
+        /**
+         * Called with the matching lines of a chunk, in the order of the file.
+         * @param lines The matching lines, or null if only the number is needed.
+         * @param count The number of matching lines.
+         * @return true to continue the search, false to stop it.
+         */
+        boolean collect(List<String> lines, int count);
+    }
+
+    private final ForkJoinPool pool;
+    private final ArgumentsList args;
+    private final Charset charset;
+    private final boolean invert;
+    private final boolean countOnly;
+    private final List<String[]> literals;
+
+    /**
+     * @param pool      The pool searching the chunks.
+     * @param args      The arguments of the grep, used to create the matchers.
+     * @param charset   The charset of the files.
+     * @param invert    true to find the lines which do not match.
+     * @param countOnly true if only the number of lines is needed.
+     * @param literals  The literals in the matching lines, see
+     *                  {@link TrigramIndex#getCandidates(List, long)}; or null
+     *                  if the files must be read entirely.
+     */
+    ChunkedFileSearch(ForkJoinPool pool, ArgumentsList args, Charset charset, boolean invert, boolean countOnly, List<String[]> literals) {
+        this.pool = pool;
+        this.args = args;
+        this.charset = charset;
+        this.invert = invert;
+        this.countOnly = countOnly;
+        this.literals = literals;
+    }
+
+    /**
+     * Search a file.
+     * @param path      The path of the file.
+     * @param collector The receiver of the results.
+     */
+    void search(String path, Collector collector) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        Deque<Chunk> pending = new ArrayDeque<Chunk>();
+        try {
+            FileChannel channel = file.getChannel();
+            Compression compression = Compression.detect(channel);
+            if(compression != Compression.NONE) {
+                searchInflated(compression.openReader(channel, charset), collector);
+                return;
+            }
+            long[] ranges = getRanges(path, channel);
+            int window = pool.getParallelism() * 2;
+
+            int next = 0;
+            while(next < ranges.length || !pending.isEmpty()) {
+                for(; next < ranges.length && pending.size() < window; next += 2) {
+                    Chunk chunk = new Chunk(channel, ranges[next], ranges[next + 1]);
+                    pending.add(chunk);
+                    pool.execute(chunk);
+                }
+                Part part = pending.peek().take();
+                if(part == null) {
+                    pending.poll();
+                } else if(!collector.collect(part.lines, part.count)) {
+                    return;
+                }
+            }
+        } finally {
+            for(Chunk chunk : pending) {
+                chunk.cancel();
+            }
+            file.close();
+        }
+    }
+
+    /**
+     * Split a file into chunks aligned on the lines, or find the parts to read
+     * in its index.
+     * @return The positions of the start and the end of the chunks, in sequence.
+     */
+    private long[] getRanges(String path, FileChannel channel) throws IOException {
+        // The lines can only be split on bytes when '\n' is encoded as itself
+        if(!TrigramIndex.canIndex(charset)) {
+            return channel.size() == 0 ? new long[0] : new long[] {0, channel.size()};
+        }
+        if(literals != null) {
+            TrigramIndex index = TrigramIndex.open(Paths.get(path), channel, charset);
+            if(index != null) {
+                return index.getCandidates(literals, CHUNK_SIZE);
+            }
+        }
+        long size = channel.size();
+        List<Long> ranges = new ArrayList<Long>();
+        for(long start = 0; start < size; ) {
+            long end = size - start <= CHUNK_SIZE ? size : nextLine(channel, start + CHUNK_SIZE, size);
+            ranges.add(start);
+            ranges.add(end);
+            start = end;
+        }
+        long[] result = new long[ranges.size()];
+        for(int i=0; i<result.length; i++) {
+            result[i] = ranges.get(i);
+        }
+        return result;
+    }
+
+    private void searchInflated(BufferedReader reader, Collector collector) throws IOException {
+        try {
+            LineMatcher matcher = Grep.createMatcher(args);
+            List<String> lines = countOnly ? null : new ArrayList<String>();
+            int count = 0;
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(matcher.matches(line) != invert) {
+                    count++;
+                    if(lines != null) {
+                        lines.add(line);
+                    }
+                    if(count == BATCH_LINES) {
+                        if(!collector.collect(lines, count)) {
+                            return;
+                        }
+                        lines = countOnly ? null : new ArrayList<String>();
+                        count = 0;
+                    }
+                }
+            }
+            collector.collect(lines, count);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Find the start of the line following a position.
+     */
+    static long nextLine(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_SIZE);
+        long offset = position - 1;
+        while(offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if(read <= 0) {
+                break;
+            }
+            for(int i=0; i<read; i++) {
+                if(buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    private static final class Part {
+
+        private final List<String> lines;
+        private final int count;
+
+        Part(List<String> lines, int count) {
+            this.lines = lines;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Search of a chunk, giving its results in parts as soon as they are
+     * found. A few parts only are kept: the search waits for the parts to be
+     * collected, once the previous chunks are.
+     */
+    private final class Chunk implements Runnable {
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final BlockingQueue<Part> parts = new ArrayBlockingQueue<Part>(QUEUE_PARTS);
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+
+        // Consumer side only
+        private Part taken;
+
+        Chunk(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            try {
+                LineMatcher matcher = Grep.createMatcher(args);
+                MappedLineReader reader = new MappedLineReader(channel, charset, start, end);
+                List<String> lines = countOnly ? null : new ArrayList<String>();
+                int count = 0;
+                long chars = 0;
+                String line;
+                while(!cancelled && (line = reader.readLine()) != null) {
+                    if(matcher.matches(line) != invert) {
+                        count++;
+                        if(lines != null) {
+                            lines.add(line);
+                            chars += line.length();
+                            if(count == BATCH_LINES || chars >= BATCH_CHARS) {
+                                put(new Part(lines, count));
+                                lines = new ArrayList<String>();
+                                count = 0;
+                                chars = 0;
+                            }
+                        }
+                    }
+                }
+                if(count > 0) {
+                    put(new Part(lines, count));
+                }
+            } catch(Throwable ex) {
+                error = ex;
+            } finally {
+                put(END);
+            }
+        }
+
+        private void put(final Part part) {
+            // The pool runs another thread while this one waits, so the
+            // previous chunks are searched
+            ForkJoinPool.ManagedBlocker blocker = new ForkJoinPool.ManagedBlocker() {
+
+                private boolean put;
+
+                @Override
+                public boolean block() throws InterruptedException {
+                    put = cancelled || parts.offer(part, POLL_MS, TimeUnit.MILLISECONDS);
+                    return put;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return put || cancelled || (put = parts.offer(part));
+                }
+            };
+            try {
+                ForkJoinPool.managedBlock(blocker);
+            } catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            }
+        }
+
+        /**
+         * Get the next part of the results.
+         * @return The part, or null at the end of the chunk.
+         */
+        Part take() throws IOException {
+            try {
+                ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+
+                    @Override
+                    public boolean block() throws InterruptedException {
+                        if(taken == null) {
+                            taken = parts.take();
+                        }
+                        return true;
+                    }
+
+                    @Override
+                    public boolean isReleasable() {
+                        return taken != null || (taken = parts.poll()) != null;
+                    }
+                });
+            } catch(InterruptedException ex) {
+                throw new InterruptedIOException();
+            }
+            Part part = taken;
+            taken = null;
+            if(part != END) {
+                return part;
+            }
+            Throwable cause = error;
+            if(cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            return null;
+        }
+
+        void cancel() {
+            cancelled = true;
+            parts.clear();
+        }
+    }
+
+}
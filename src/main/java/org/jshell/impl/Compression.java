@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Compression of a file, detected on its first bytes.
+ *
+ * @author Fabien Barbero
+ */
+enum Compression {
+
+    NONE,
+    GZIP,
+    ZSTD;
+
+    /**
+     * Detect the compression of a file.
+     * @param channel   The file.
+     * @return          The compression, {@link #NONE} for a plain file.
+     */
+    static Compression detect(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(4);
+        while(magic.hasRemaining() && channel.read(magic, magic.position()) > 0) {
+            // Until the magic bytes or the end of the file
+        }
+        if(magic.position() >= 2 && (magic.get(0) & 0xFF) == 0x1F && (magic.get(1) & 0xFF) == 0x8B) {
+            return GZIP;
+        }
+        if(magic.position() == 4 && magic.getInt(0) == 0x28B52FFD) {
+            return ZSTD;
+        }
+        return NONE;
+    }
+
+    /**
+     * Open the inflated content of a compressed file, inflated by another
+     * thread while it is read.
+     * @param channel   The file, which must not be compressed with {@link #NONE}.
+     * @return          The inflated bytes.
+     * @throws IOException If the compression is not supported.
+     */
+    InputStream open(FileChannel channel) throws IOException {
+        if(this != GZIP) {
+            throw new IOException(name().toLowerCase() + " compression is not supported");
+        }
+        return new InflatingInputStream(channel);
+    }
+
+    /**
+     * Open the inflated lines of a compressed file.
+     * @see #open(FileChannel)
+     */
+    BufferedReader openReader(FileChannel channel, Charset charset) throws IOException {
+        return new BufferedReader(new InputStreamReader(open(channel), charset));
+    }
+
+}
@@ -0,0 +1,382 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rows of a delimited input (CSV, TSV) stored by columns. The lines are
+ * copied into one reused byte array and split into fields once; the values of
+ * a column are then read for all the rows at a time, as primitive numbers or
+ * as codes of a {@link ByteDictionary}, without creating strings. The integer
+ * fields are read as longs, so they stay exact beyond the precision of the
+ * doubles.
+ * <p>
+ * A field can be quoted with '"', a quote being doubled inside it. A field
+ * can not contain a line terminator. The missing fields are empty.
+ *
+ * @author Fabien Barbero
+ */
+final class CsvBatch {
+
+    static final int MAX_ROWS = 4096;
+
+    /** Kinds of the fields read as numbers. */
+    static final byte NOT_A_NUMBER = 0;
+    static final byte INTEGER = 1;
+    static final byte DECIMAL = 2;
+
+    private static final byte QUOTE = '"';
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private final int columns;
+    private final byte delimiter;
+
+    private byte[] data = new byte[256 * 1024];
+    private int size;
+    private int rows;
+    private final int[] lineStarts = new int[MAX_ROWS];
+    private final int[] lineEnds = new int[MAX_ROWS];
+    /** Fields as written in the lines, quotes included: [row * columns + column]. */
+    private final int[] rawStarts;
+    private final int[] rawEnds;
+    /** Values of the fields, unquoted in a copy after the line when needed. */
+    private final int[] valueStarts;
+    private final int[] valueEnds;
+
+    /**
+     * @param columns   The number of columns read, the next fields are ignored.
+     * @param delimiter The delimiter of the fields.
+     */
+    CsvBatch(int columns, byte delimiter) {
+        this.columns = columns;
+        this.delimiter = delimiter;
+        rawStarts = new int[MAX_ROWS * columns];
+        rawEnds = new int[MAX_ROWS * columns];
+        valueStarts = new int[MAX_ROWS * columns];
+        valueEnds = new int[MAX_ROWS * columns];
+    }
+
+    /**
+     * Split a header line into the names of its columns.
+     */
+    static List<String> parseHeader(ByteBuffer line, byte delimiter) {
+        CsvBatch header = new CsvBatch(count(line, delimiter), delimiter);
+        header.add(line);
+        List<String> names = new ArrayList<String>();
+        for(int column=0; column<header.columns; column++) {
+            names.add(header.getValue(0, column).trim());
+        }
+        return names;
+    }
+
+    private static int count(ByteBuffer line, byte delimiter) {
+        int count = 1;
+        for(int i=line.position(); i<line.limit(); i++) {
+            if(line.get(i) == delimiter) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int getRowCount() {
+        return rows;
+    }
+
+    boolean isFull() {
+        return rows == MAX_ROWS;
+    }
+
+    void clear() {
+        rows = 0;
+        size = 0;
+    }
+
+    /**
+     * Add a line at the end of the batch, which must not be full.
+     * @param line The line, its position is not changed.
+     */
+    void add(ByteBuffer line) {
+        int length = line.remaining();
+        // The unquoted copies are never larger than the line
+        ensureCapacity(2 * length);
+        int start = size;
+        line.duplicate().get(data, start, length);
+        size += length;
+        lineStarts[rows] = start;
+        lineEnds[rows] = size;
+
+        int position = start;
+        int end = size;
+        for(int column=0; column<columns; column++) {
+            int field = rows * columns + column;
+            if(position > end) {
+                // Missing field
+                rawStarts[field] = rawEnds[field] = valueStarts[field] = valueEnds[field] = end;
+                continue;
+            }
+            rawStarts[field] = position;
+            if(position < end && data[position] == QUOTE) {
+                valueStarts[field] = size;
+                int i = position + 1;
+                while(i < end) {
+                    if(data[i] == QUOTE) {
+                        if(i + 1 < end && data[i + 1] == QUOTE) {
+                            i++;
+                        } else {
+                            i++;
+                            break;
+                        }
+                    }
+                    data[size++] = data[i++];
+                }
+                // Text after the closing quote, up to the delimiter
+                while(i < end && data[i] != delimiter) {
+                    data[size++] = data[i++];
+                }
+                valueEnds[field] = size;
+                position = i;
+            } else {
+                valueStarts[field] = position;
+                while(position < end && data[position] != delimiter) {
+                    position++;
+                }
+                valueEnds[field] = position;
+            }
+            rawEnds[field] = position;
+            position++;
+        }
+        rows++;
+    }
+
+    private void ensureCapacity(int length) {
+        if(size + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(2 * data.length, size + length));
+        }
+    }
+
+    /**
+     * Get a line of the batch.
+     * @param row   The row.
+     * @param view  A buffer to reuse, can be null.
+     * @return      The line, in the reused buffer if it was the view of this batch.
+     */
+    ByteBuffer getLine(int row, ByteBuffer view) {
+        if(view == null || view.array() != data) {
+            view = ByteBuffer.wrap(data);
+        }
+        view.limit(lineEnds[row]);
+        view.position(lineStarts[row]);
+        return view;
+    }
+
+    /**
+     * Append a field to an output line, as written in the input.
+     */
+    void appendRaw(int row, int column, ByteBuffer out) {
+        int field = row * columns + column;
+        out.put(data, rawStarts[field], rawEnds[field] - rawStarts[field]);
+    }
+
+    /**
+     * Get the size of a field, as written in the input.
+     */
+    int getRawLength(int row, int column) {
+        int field = row * columns + column;
+        return rawEnds[field] - rawStarts[field];
+    }
+
+    String getValue(int row, int column) {
+        int field = row * columns + column;
+        return new String(data, valueStarts[field], valueEnds[field] - valueStarts[field], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a column as numbers. The integers are read exactly as longs, the
+     * other numbers as doubles.
+     * @param column    The column.
+     * @param integers  Receives the values of the integer fields.
+     * @param decimals  Receives the values of the other numbers.
+     * @param kinds     Receives the kind of the field of each row:
+     *                  {@link #INTEGER}, {@link #DECIMAL} or
+     *                  {@link #NOT_A_NUMBER}.
+     */
+    void getNumbers(int column, long[] integers, double[] decimals, byte[] kinds) {
+        for(int row=0; row<rows; row++) {
+            int field = row * columns + column;
+            kinds[row] = parseNumber(data, valueStarts[field], valueEnds[field], integers, decimals, row);
+        }
+    }
+
+    /**
+     * Read a column as the codes of its values in a dictionary.
+     * @param column        The column.
+     * @param dictionary    The dictionary, receiving the new values.
+     * @param codes         Receives the codes of the rows.
+     */
+    void getCodes(int column, ByteDictionary dictionary, int[] codes) {
+        for(int row=0; row<rows; row++) {
+            int field = row * columns + column;
+            codes[row] = dictionary.add(data, valueStarts[field], valueEnds[field]);
+        }
+    }
+
+    /**
+     * Compare the value of a field with bytes, as unsigned bytes: the order of
+     * the code points in UTF-8.
+     * @return A negative number, 0 or a positive number if the field is
+     *         before, equal or after the bytes.
+     */
+    int compare(int row, int column, byte[] bytes) {
+        int field = row * columns + column;
+        int start = valueStarts[field];
+        int length = valueEnds[field] - start;
+        int common = Math.min(length, bytes.length);
+        for(int i=0; i<common; i++) {
+            int diff = (data[start + i] & 0xFF) - (bytes[i] & 0xFF);
+            if(diff != 0) {
+                return diff;
+            }
+        }
+        return length - bytes.length;
+    }
+
+    /**
+     * Indicates if the value of a field contains bytes.
+     */
+    boolean contains(int row, int column, byte[] bytes) {
+        int field = row * columns + column;
+        int last = valueEnds[field] - bytes.length;
+        for(int i=valueStarts[field]; i<=last; i++) {
+            int j = 0;
+            while(j < bytes.length && data[i + j] == bytes[j]) {
+                j++;
+            }
+            if(j == bytes.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse a number without creating a string. An integer is exact when it
+     * fits in a long. The simple decimal numbers are exact doubles; the
+     * others, with an exponent or many digits, are parsed by
+     * {@link Double#parseDouble(String)}.
+     * @param integers  Receives the value of an integer.
+     * @param decimals  Receives the value of another number.
+     * @param index     The index of the value in the arrays.
+     * @return          The kind of the number: {@link #INTEGER},
+     *                  {@link #DECIMAL} or {@link #NOT_A_NUMBER}.
+     */
+    static byte parseNumber(byte[] bytes, int start, int end, long[] integers, double[] decimals, int index) {
+        while(start < end && bytes[start] == ' ') {
+            start++;
+        }
+        while(end > start && bytes[end - 1] == ' ') {
+            end--;
+        }
+        int i = start;
+        boolean negative = false;
+        if(i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        // Accumulated as a negative number, as Long.MIN_VALUE has no positive
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long integer = 0;
+        boolean overflow = false;
+        long mantissa = 0;
+        int digits = 0;
+        int decimalDigits = -1;
+        for(; i < end; i++) {
+            byte b = bytes[i];
+            if(b >= '0' && b <= '9') {
+                int digit = b - '0';
+                if(integer < limit / 10 || integer * 10 < limit + digit) {
+                    overflow = true;
+                } else {
+                    integer = 10 * integer - digit;
+                }
+                mantissa = 10 * mantissa + digit;
+                digits++;
+                if(decimalDigits >= 0) {
+                    decimalDigits++;
+                }
+            } else if(b == '.' && decimalDigits < 0) {
+                decimalDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if(digits == 0) {
+            return NOT_A_NUMBER;
+        }
+        if(i == end && decimalDigits < 0 && !overflow) {
+            integers[index] = negative ? integer : -integer;
+            return INTEGER;
+        }
+        if(i < end || digits > 15) {
+            // Exponent, too many digits or not a number
+            try {
+                decimals[index] = Double.parseDouble(new String(bytes, start, end - start, StandardCharsets.US_ASCII));
+                return DECIMAL;
+            } catch(NumberFormatException ex) {
+                return NOT_A_NUMBER;
+            }
+        }
+        // Exact: the mantissa and the power of ten are exact doubles
+        double value = decimalDigits > 0 ? mantissa / POWERS_OF_TEN[decimalDigits] : mantissa;
+        decimals[index] = negative ? -value : value;
+        return DECIMAL;
+    }
+
+    /**
+     * Compare exactly an integer with a decimal number.
+     * @return A negative number, 0 or a positive number if the integer is
+     *         less than, equal to or greater than the decimal number.
+     */
+    static int compare(long integer, double decimal) {
+        if(decimal >= 0x1p63) {
+            return -1;
+        }
+        if(decimal < -0x1p63) {
+            return 1;
+        }
+        // Exact: the truncated part of a double is a double
+        long truncated = (long) decimal;
+        if(integer != truncated) {
+            return integer < truncated ? -1 : 1;
+        }
+        double fraction = decimal - truncated;
+        return fraction > 0 ? -1 : fraction < 0 ? 1 : 0;
+    }
+
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import org.jshell.AbstractShellCommand;
+import org.jshell.ArgumentsList;
+import org.jshell.BytePipe;
+import org.jshell.ByteShellCommand;
+import org.jshell.CommandFailedException;
+import org.jshell.ShellBuffer;
+import org.jshell.ShellIO;
+
+/**
+ * Command querying a delimited input whose first line names the columns. The
+ * lines are read and written as UTF-8 bytes, from and to the adjacent byte
+ * commands, and read by batches of {@link CsvBatch#MAX_ROWS} rows.
+ *
+ * @author Fabien Barbero
+ */
+abstract class CsvCommand extends AbstractShellCommand implements ByteShellCommand {
+
+    static final String DELIMITER_ARGUMENT = "-d";
+    static final String DELIMITER_HELP = "  -d C                delimiter of the fields, 'tab' for TSV (default ,)";
+
+    CsvCommand(String name) {
+        super(name);
+    }
+
+    @Override
+    protected final void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+        query(args, inputBuffer, null, null, handler);
+    }
+
+    @Override
+    public final void executeBytes(ArgumentsList args, ShellBuffer inputBuffer, BytePipe input, BytePipe output, ShellIO handler) throws Exception {
+        if(printHelp(args, handler)) {
+            return;
+        }
+        query(args, inputBuffer, input, output, handler);
+    }
+
+    private void query(ArgumentsList args, ShellBuffer inputBuffer, BytePipe input, BytePipe output, ShellIO handler) throws Exception {
+        String delimiter = args.getNextArgumentValue(DELIMITER_ARGUMENT);
+        if(delimiter == null) {
+            delimiter = ",";
+        } else if(delimiter.equals("tab") || delimiter.equals("\\t")) {
+            delimiter = "\t";
+        }
+        if(delimiter.length() != 1 || delimiter.charAt(0) >= 128) {
+            throw new CommandFailedException("Invalid delimiter: " + delimiter);
+        }
+        if(input == null && inputBuffer == null) {
+            throw new CommandFailedException("No input to read");
+        }
+        Lines lines = new Lines(inputBuffer, input, output, handler);
+        ByteBuffer header = lines.read();
+        if(header == null) {
+            return;
+        }
+        byte separator = (byte) delimiter.charAt(0);
+        query(args, separator, header, CsvBatch.parseHeader(header, separator), lines, handler);
+    }
+
+    /**
+     * Execute the query on the rows following the header.
+     * @param args      The arguments of the command.
+     * @param delimiter The delimiter of the fields.
+     * @param header    The first line, valid until the next read.
+     * @param columns   The names of the columns.
+     * @param lines     The input and the output of the command.
+     * @param handler   The output of the command, for the messages.
+     * @throws CommandFailedException If the arguments are invalid.
+     */
+    protected abstract void query(ArgumentsList args, byte delimiter, ByteBuffer header, List<String> columns, Lines lines,
+            ShellIO handler) throws Exception;
+
+    /**
+     * Find the index of the named columns.
+     * @return The indexes.
+     * @throws CommandFailedException If a column is unknown.
+     */
+    static int[] getColumns(List<String> columns, List<String> names) throws CommandFailedException {
+        int[] indexes = new int[names.size()];
+        for(int i=0; i<indexes.length; i++) {
+            indexes[i] = columns.indexOf(names.get(i));
+            if(indexes[i] < 0) {
+                throw new CommandFailedException("Unknown column: " + names.get(i));
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Append a value to an output line, quoted if it contains the delimiter
+     * or a quote.
+     */
+    static ByteBuffer appendQuoted(ByteBuffer out, byte[] value, byte delimiter) {
+        boolean quoted = false;
+        int quotes = 0;
+        for(byte b : value) {
+            quoted |= b == delimiter || b == '"';
+            quotes += b == '"' ? 1 : 0;
+        }
+        out = reserve(out, value.length + (quoted ? 2 + quotes : 0));
+        if(!quoted) {
+            return out.put(value);
+        }
+        out.put((byte) '"');
+        for(byte b : value) {
+            if(b == '"') {
+                out.put(b);
+            }
+            out.put(b);
+        }
+        return out.put((byte) '"');
+    }
+
+    /**
+     * Make room in an output line.
+     * @return The line, or a larger copy.
+     */
+    static ByteBuffer reserve(ByteBuffer out, int length) {
+        if(out.remaining() >= length) {
+            return out;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * out.capacity(), out.position() + length));
+        out.flip();
+        return larger.put(out);
+    }
+
+    /**
+     * The lines read and written by the command, as bytes.
+     */
+    static final class Lines {
+
+        private final Iterator<String> strings;
+        private final BytePipe input;
+        private final BytePipe output;
+        private final ShellIO handler;
+
+        Lines(ShellBuffer inputBuffer, BytePipe input, BytePipe output, ShellIO handler) {
+            this.strings = input == null ? inputBuffer.getContent() : null;
+            this.input = input;
+            this.output = output;
+            this.handler = handler;
+        }
+
+        /**
+         * Read a line.
+         * @return The line, valid until the next read; or null at the end of the input.
+         */
+        ByteBuffer read() {
+            if(input != null) {
+                return input.readLine();
+            }
+            return strings.hasNext() ? ByteBuffer.wrap(strings.next().getBytes(StandardCharsets.UTF_8)) : null;
+        }
+
+        /**
+         * Read the next rows.
+         * @param batch The batch receiving the rows, cleared first.
+         * @return      false if there is no more row.
+         */
+        boolean read(CsvBatch batch) {
+            batch.clear();
+            ByteBuffer line;
+            while(!batch.isFull() && !isClosed() && (line = read()) != null) {
+                batch.add(line);
+            }
+            return batch.getRowCount() > 0;
+        }
+
+        /**
+         * Write a line.
+         * @param line The line, from its position to its limit.
+         */
+        void write(ByteBuffer line) {
+            if(output != null) {
+                output.write(line);
+            } else {
+                handler.println(StandardCharsets.UTF_8.decode(line.duplicate()).toString());
+            }
+        }
+
+        boolean isClosed() {
+            return output != null ? output.isClosed() : handler.isClosed();
+        }
+    }
+
+}
@@ -0,0 +1,293 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import org.jshell.ShellIO;
+
+/**
+ * Walks file trees in parallel. Each directory is read by a task of a
+ * {@link ForkJoinPool}, which forks a task for each of its sub-directories
+ * before visiting its files: the idle threads steal the sub-directories. The
+ * symbolic links are not followed, except for the roots.
+ * <p>
+ * The visitors run in the threads of the pool, and add the lines to print in
+ * batches, which are printed by the thread of the command. The lines of a
+ * batch are printed together, the order of the batches is not defined.
+ *
+ * @author Fabien Barbero
+ */
+final class DirectoryWalker {
+
+    /**
+     * Visits the files and the directories, called by several threads.
+     */
+    interface Visitor {
+
+        /**
+         * Visit a file or a directory.
+         * @param path          The path of the file.
+         * @param attributes    The attributes of the file.
+         * @param batch         The lines to print.
+         */
+        void visit(Path path, BasicFileAttributes attributes, Batch batch) throws IOException;
+    }
+
+    private static final int QUEUE_SIZE = 256;
+    private static final int BATCH_SIZE = 1024;
+    private static final long POLL_MS = 100;
+
+    private final ForkJoinPool pool;
+    private final Visitor visitor;
+    private final BlockingQueue<List<String>> output = new ArrayBlockingQueue<List<String>>(QUEUE_SIZE);
+    private volatile boolean stopped;
+
+    /**
+     * @param pool      The pool walking the trees.
+     * @param visitor   The visitor of the files and the directories.
+     */
+    DirectoryWalker(ForkJoinPool pool, Visitor visitor) {
+        this.pool = pool;
+        this.visitor = visitor;
+    }
+
+    /**
+     * Walk trees, printing the lines of the visitor until the output is closed.
+     * @param roots     The roots of the trees, files or directories.
+     * @param handler   The output.
+     */
+    void walk(List<Path> roots, ShellIO handler) throws Exception {
+        ForkJoinTask<Void> task = pool.submit(new RootsTask(roots));
+        try {
+            while(!handler.isClosed()) {
+                List<String> lines = output.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if(lines != null) {
+                    for(int i=0; i<lines.size() && !handler.isClosed(); i++) {
+                        handler.println(lines.get(i));
+                    }
+                } else if(task.isDone() && output.isEmpty()) {
+                    // Everything added before the end of the task has been printed
+                    break;
+                }
+            }
+            if(task.isDone()) {
+                task.get();
+            }
+        } catch(ExecutionException ex) {
+            if(ex.getCause() instanceof Exception) {
+                throw (Exception) ex.getCause();
+            }
+            throw ex;
+        } finally {
+            stopped = true;
+            output.clear();
+        }
+    }
+
+    private void emit(final List<String> lines) {
+        // The pool runs another thread while this one waits, so the searches
+        // of the files, in the same pool, are not blocked by a slow output
+        ForkJoinPool.ManagedBlocker blocker = new ForkJoinPool.ManagedBlocker() {
+
+            private boolean emitted;
+
+            @Override
+            public boolean block() throws InterruptedException {
+                emitted = stopped || output.offer(lines, POLL_MS, TimeUnit.MILLISECONDS);
+                return emitted;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return emitted || stopped || (emitted = output.offer(lines));
+            }
+        };
+        try {
+            ForkJoinPool.managedBlock(blocker);
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+        }
+    }
+
+    private void visit(Path path, BasicFileAttributes attributes, Batch batch) {
+        try {
+            visitor.visit(path, attributes, batch);
+        } catch(IOException ex) {
+            batch.add(describe(path, ex));
+        }
+    }
+
+    private static String describe(Path path, IOException ex) {
+        if(ex instanceof NoSuchFileException) {
+            return "Can not read " + path + ": no such file";
+        }
+        if(ex instanceof AccessDeniedException) {
+            return "Can not read " + path + ": permission denied";
+        }
+        return "Can not read " + path + ": " + ex.getMessage();
+    }
+
+    /**
+     * The lines printed by the visitors of a directory.
+     */
+    final class Batch {
+
+        private List<String> lines = new ArrayList<String>();
+
+        /**
+         * Add a line to print.
+         * @param line The line.
+         */
+        void add(String line) {
+            lines.add(line);
+            if(lines.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * Indicates if the walk has been stopped, then the visitor should return.
+         */
+        boolean isStopped() {
+            return stopped;
+        }
+
+        void flush() {
+            if(!lines.isEmpty()) {
+                emit(lines);
+                lines = new ArrayList<String>();
+            }
+        }
+    }
+
+    private final class RootsTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Path> roots;
+
+        RootsTask(List<Path> roots) {
+            this.roots = roots;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> tasks = new ArrayList<DirectoryTask>();
+            Batch batch = new Batch();
+            for(Path root : roots) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class);
+                    visit(root, attributes, batch);
+                    if(attributes.isDirectory()) {
+                        DirectoryTask task = new DirectoryTask(root);
+                        task.fork();
+                        tasks.add(task);
+                    }
+                } catch(IOException ex) {
+                    batch.add(describe(root, ex));
+                }
+            }
+            batch.flush();
+            for(DirectoryTask task : tasks) {
+                task.join();
+            }
+        }
+    }
+
+    private final class DirectoryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+
+        DirectoryTask(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> tasks = new ArrayList<DirectoryTask>();
+            List<Path> files = new ArrayList<Path>();
+            List<BasicFileAttributes> fileAttributes = new ArrayList<BasicFileAttributes>();
+            Batch batch = new Batch();
+            try {
+                DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
+                try {
+                    for(Path path : stream) {
+                        if(stopped) {
+                            break;
+                        }
+                        BasicFileAttributes attributes;
+                        try {
+                            attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        } catch(IOException ex) {
+                            batch.add(describe(path, ex));
+                            continue;
+                        }
+                        if(attributes.isDirectory()) {
+                            visit(path, attributes, batch);
+                            DirectoryTask task = new DirectoryTask(path);
+                            task.fork();
+                            tasks.add(task);
+                        } else {
+                            files.add(path);
+                            fileAttributes.add(attributes);
+                        }
+                    }
+                } finally {
+                    stream.close();
+                }
+            } catch(IOException ex) {
+                batch.add(describe(directory, ex));
+            } catch(DirectoryIteratorException ex) {
+                batch.add(describe(directory, ex.getCause()));
+            }
+            // The sub-directories are given to the other threads first
+            for(int i=0; i<files.size() && !stopped; i++) {
+                visit(files.get(i), fileAttributes.get(i), batch);
+            }
+            batch.flush();
+            for(DirectoryTask task : tasks) {
+                task.join();
+            }
+        }
+    }
+
+}
@@ -38,12 +38,23 @@ public class Exit extends AbstractShellCommand {
 
     @Override
     protected String getHelpMessage() {
-        return "Exit the shell";
+        return "Exit the shell\n"
+                + "  exit [STATUS]       exits with the given status (default 0)";
     }
 
     @Override
     protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
-        System.exit(0);
+        int status = 0;
+        String statusStr = args.getArgumentAt(0);
+        if(statusStr != null) {
+            try {
+                status = Integer.parseInt(statusStr);
+            } catch(NumberFormatException ex) {
+                handler.println("Invalid exit status: " + statusStr);
+                return;
+            }
+        }
+        handler.exit(status);
     }
 
 }
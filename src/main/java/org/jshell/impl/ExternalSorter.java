@@ -0,0 +1,418 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import org.jshell.LineStore;
+
+/**
+ * Sorts more lines than the memory can hold. The lines are gathered in runs
+ * which are sorted by other threads and written in temporary files, then the
+ * runs are merged. The runs being sorted and the run being gathered share the
+ * memory budget, the lines are added more slowly when all the runs are being
+ * sorted. At most {@link #MAX_MERGED_RUNS} runs are merged at once, so the
+ * number of open files is bounded: more runs are first merged by groups, in
+ * several passes.
+ * <p>
+ * A sorter is used by one thread, and must be closed to delete its files.
+ *
+ * @author Fabien Barbero
+ */
+final class ExternalSorter {
+
+    /** Estimated memory used by a line in addition to its bytes. */
+    static final int LINE_OVERHEAD = 96;
+
+    /** Maximum number of runs read at the same time by a merge. */
+    static final int MAX_MERGED_RUNS = 64;
+
+    private static final long MIN_RUN_SIZE = 1024 * 1024;
+
+    private final SortKey key;
+    private final boolean unique;
+    private final ExecutorService executor;
+    private final long runSize;
+    private final Semaphore sortingRuns;
+    private final List<Future<?>> futures = new ArrayList<Future<?>>();
+    /** The sorted runs, in the order of their lines, null while sorting. */
+    private final List<LineStore> runs = new ArrayList<LineStore>();
+    private final Comparator<Entry> entryComparator;
+    private List<Entry> lines = new ArrayList<Entry>();
+    private long size;
+    private boolean closed;
+    private int maxMergedRuns = MAX_MERGED_RUNS;
+
+    /**
+     * @param key       The order of the lines.
+     * @param unique    true to keep only the first line of each key.
+     * @param budget    The memory used by the lines, in bytes.
+     * @param executor  The executor sorting the runs.
+     * @param threads   The maximum number of runs sorted at the same time.
+     */
+    ExternalSorter(SortKey key, boolean unique, long budget, ExecutorService executor, int threads) {
+        this.key = key;
+        this.unique = unique;
+        this.executor = executor;
+        this.runSize = Math.max(MIN_RUN_SIZE, budget / (threads + 1));
+        this.sortingRuns = new Semaphore(threads);
+        this.entryComparator = new Comparator<Entry>() {
+
+            @Override
+            public int compare(Entry entry1, Entry entry2) {
+                return ExternalSorter.this.compare(entry1.prefix, entry1.line, entry2.prefix, entry2.line);
+            }
+        };
+    }
+
+    /**
+     * Add a line.
+     * @param line The UTF-8 bytes between the position and the limit, the
+     *             buffer is not modified.
+     */
+    void add(ByteBuffer line) throws InterruptedException {
+        byte[] bytes = new byte[line.remaining()];
+        line.duplicate().get(bytes);
+        add(bytes);
+    }
+
+    /**
+     * Add a line.
+     * @param line The line.
+     */
+    void add(String line) throws InterruptedException {
+        add(line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void add(byte[] line) throws InterruptedException {
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        lines.add(new Entry(key.prefix(buffer), buffer));
+        size += line.length + LINE_OVERHEAD;
+        if(size >= runSize) {
+            sortRun();
+        }
+    }
+
+    /**
+     * Set the maximum number of runs merged at once.
+     * @param maxMergedRuns The number of runs, at least 2.
+     */
+    void setMaxMergedRuns(int maxMergedRuns) {
+        this.maxMergedRuns = maxMergedRuns;
+    }
+
+    private int compare(long prefix1, ByteBuffer line1, long prefix2, ByteBuffer line2) {
+        if(prefix1 != prefix2) {
+            return prefix1 + Long.MIN_VALUE < prefix2 + Long.MIN_VALUE ? -1 : 1;
+        }
+        return key.compare(line1, line2);
+    }
+
+    /**
+     * Hand the gathered lines to a thread which sorts them in a temporary file,
+     * waiting while the memory budget is used by the other runs.
+     */
+    private void sortRun() throws InterruptedException {
+        RunSort task;
+        synchronized(runs) {
+            task = new RunSort(runs.size(), lines);
+            runs.add(null);
+        }
+        lines = new ArrayList<Entry>();
+        size = 0;
+        sortingRuns.acquire();
+        try {
+            futures.add(executor.submit(task));
+        } catch(RejectedExecutionException ex) {
+            sortingRuns.release();
+            throw ex;
+        }
+    }
+
+    private void write(List<Entry> run, LineStore store) {
+        Collections.sort(run, entryComparator);
+        ByteBuffer previous = null;
+        for(Entry entry : run) {
+            if(!unique || previous == null || !key.sameKey(previous, entry.line)) {
+                store.add(entry.line);
+            }
+            previous = entry.line;
+        }
+    }
+
+    private void addRun(int index, LineStore store) {
+        synchronized(runs) {
+            if(!closed) {
+                runs.set(index, store);
+                return;
+            }
+        }
+        store.close();
+    }
+
+    /**
+     * Sort the lines added. Lines with equal keys are all returned, even when
+     * the sort is unique, but they follow each other. The sort is stable when
+     * the key is.
+     * @return The lines in order, the buffers being valid until the next
+     *         line is read.
+     */
+    Iterator<ByteBuffer> sort() throws Exception {
+        if(futures.isEmpty()) {
+            Collections.sort(lines, entryComparator);
+            final Iterator<Entry> entries = lines.iterator();
+            return new Iterator<ByteBuffer>() {
+
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public ByteBuffer next() {
+                    return entries.next().line;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+        if(!lines.isEmpty()) {
+            sortRun();
+        }
+        for(Future<?> future : futures) {
+            try {
+                future.get();
+            } catch(ExecutionException ex) {
+                if(ex.getCause() instanceof Exception) {
+                    throw (Exception) ex.getCause();
+                }
+                throw ex;
+            }
+        }
+        while(runs.size() > maxMergedRuns) {
+            mergePass();
+        }
+        return new Merge(iterators(runs));
+    }
+
+    /**
+     * Merge the runs by groups of consecutive runs, so the equal lines stay
+     * in the order of the runs.
+     */
+    private void mergePass() {
+        for(int start=0; start<runs.size(); start++) {
+            List<LineStore> group = runs.subList(start, Math.min(start + maxMergedRuns, runs.size()));
+            if(group.size() == 1) {
+                continue;
+            }
+            LineStore store = new LineStore(0, false);
+            try {
+                Iterator<ByteBuffer> merge = new Merge(iterators(group));
+                while(merge.hasNext()) {
+                    store.add(merge.next());
+                }
+                store.spill();
+            } catch(RuntimeException ex) {
+                store.close();
+                throw ex;
+            }
+            synchronized(runs) {
+                for(LineStore run : group) {
+                    run.close();
+                }
+                group.clear();
+                runs.add(start, store);
+            }
+        }
+    }
+
+    private List<Iterator<ByteBuffer>> iterators(List<LineStore> stores) {
+        List<Iterator<ByteBuffer>> iterators = new ArrayList<Iterator<ByteBuffer>>();
+        synchronized(runs) {
+            for(LineStore store : stores) {
+                iterators.add(store.byteIterator());
+            }
+        }
+        return iterators;
+    }
+
+    /**
+     * Delete the temporary files. The runs being sorted are deleted when they
+     * are written.
+     */
+    void close() {
+        lines = null;
+        for(Future<?> future : futures) {
+            future.cancel(false);
+        }
+        synchronized(runs) {
+            closed = true;
+            for(LineStore run : runs) {
+                if(run != null) {
+                    run.close();
+                }
+            }
+            runs.clear();
+        }
+    }
+
+    /**
+     * Merges sorted runs, taking the smallest of their current lines.
+     */
+    private final class Merge implements Iterator<ByteBuffer> {
+
+        private final PriorityQueue<Run> queue;
+        private Run returned;
+
+        Merge(List<Iterator<ByteBuffer>> iterators) {
+            queue = new PriorityQueue<Run>(Math.max(1, iterators.size()), new Comparator<Run>() {
+
+                @Override
+                public int compare(Run run1, Run run2) {
+                    int result = ExternalSorter.this.compare(run1.prefix, run1.line, run2.prefix, run2.line);
+                    // The equal lines of the first runs were added first
+                    return result != 0 ? result : run1.index - run2.index;
+                }
+            });
+            for(int i=0; i<iterators.size(); i++) {
+                if(iterators.get(i).hasNext()) {
+                    queue.add(new Run(i, iterators.get(i)));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            // The run of the returned line is advanced once the line is used
+            if(returned != null) {
+                if(returned.iterator.hasNext()) {
+                    returned.next();
+                    queue.add(returned);
+                }
+                returned = null;
+            }
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public ByteBuffer next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            returned = queue.poll();
+            return returned.line;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Sorts a run in a temporary file.
+     */
+    private final class RunSort implements Callable<Void> {
+
+        private final int index;
+        // The executor may keep the task: the lines are released once sorted
+        private List<Entry> run;
+
+        RunSort(int index, List<Entry> run) {
+            this.index = index;
+            this.run = run;
+        }
+
+        @Override
+        public Void call() {
+            List<Entry> entries = run;
+            run = null;
+            try {
+                LineStore store = new LineStore(0, false);
+                try {
+                    write(entries, store);
+                    store.spill();
+                } catch(RuntimeException ex) {
+                    store.close();
+                    throw ex;
+                }
+                addRun(index, store);
+            } finally {
+                sortingRuns.release();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A line to sort, with the prefix of its key.
+     */
+    private static final class Entry {
+
+        private final long prefix;
+        private final ByteBuffer line;
+
+        Entry(long prefix, ByteBuffer line) {
+            this.prefix = prefix;
+            this.line = line;
+        }
+    }
+
+    /**
+     * A sorted run being merged, with its current line.
+     */
+    private final class Run {
+
+        private final int index;
+        private final Iterator<ByteBuffer> iterator;
+        private ByteBuffer line;
+        private long prefix;
+
+        Run(int index, Iterator<ByteBuffer> iterator) {
+            this.index = index;
+            this.iterator = iterator;
+            next();
+        }
+
+        void next() {
+            line = iterator.next();
+            prefix = key.prefix(line);
+        }
+    }
+
+}
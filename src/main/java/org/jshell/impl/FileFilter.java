@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.PatternSyntaxException;
+import org.jshell.ArgumentsList;
+import org.jshell.ShellIO;
+
+/**
+ * Selection of the files found by a {@link DirectoryWalker}, on their name,
+ * their size and their modification time. A filter can be used by several
+ * threads.
+ *
+ * @author Fabien Barbero
+ */
+final class FileFilter {
+
+    static final String NAME_ARGUMENT = "-name";
+    static final String SIZE_ARGUMENT = "-size";
+    static final String MTIME_ARGUMENT = "-mtime";
+
+    static final String HELP = "  -name GLOB          files whose name matches the pattern, like '*.log'\n"
+            + "  -size [+|-]N[k|M|G] files larger (+), smaller (-) or of N bytes, in the unit\n"
+            + "  -mtime [+|-]N       files modified more (+), less (-) or exactly N days ago";
+
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+
+    private final PathMatcher name;
+    private final Range size;
+    private final Range age;
+    private final long now = System.currentTimeMillis();
+
+    private FileFilter(PathMatcher name, Range size, Range age) {
+        this.name = name;
+        this.size = size;
+        this.age = age;
+    }
+
+    /**
+     * Create the filter described by the arguments.
+     * @param args      The arguments of the command.
+     * @param handler   The output, receiving the errors.
+     * @return          The filter, or null if an argument is invalid.
+     */
+    static FileFilter create(ArgumentsList args, ShellIO handler) {
+        PathMatcher name = null;
+        if(args.containsArgument(NAME_ARGUMENT)) {
+            String glob = args.getNextArgumentValue(NAME_ARGUMENT);
+            try {
+                name = glob == null ? null : FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            } catch(PatternSyntaxException ex) {
+                // Reported below
+            }
+            if(name == null) {
+                handler.println("Invalid name pattern: " + glob);
+                return null;
+            }
+        }
+        Range size = null;
+        if(args.containsArgument(SIZE_ARGUMENT)) {
+            size = Range.parse(args.getNextArgumentValue(SIZE_ARGUMENT), true);
+            if(size == null) {
+                handler.println("Invalid size: " + args.getNextArgumentValue(SIZE_ARGUMENT));
+                return null;
+            }
+        }
+        Range age = null;
+        if(args.containsArgument(MTIME_ARGUMENT)) {
+            age = Range.parse(args.getNextArgumentValue(MTIME_ARGUMENT), false);
+            if(age == null) {
+                handler.println("Invalid number of days: " + args.getNextArgumentValue(MTIME_ARGUMENT));
+                return null;
+            }
+        }
+        return new FileFilter(name, size, age);
+    }
+
+    /**
+     * Indicates if a file is selected.
+     * @param path          The path of the file.
+     * @param attributes    The attributes of the file.
+     * @return              true if the file is selected.
+     */
+    boolean accept(Path path, BasicFileAttributes attributes) {
+        if(name != null) {
+            Path fileName = path.getFileName();
+            if(fileName == null || !name.matches(fileName)) {
+                return false;
+            }
+        }
+        if(size != null && !size.accept(attributes.size())) {
+            return false;
+        }
+        if(age != null) {
+            long days = (now - attributes.lastModifiedTime().toMillis()) / DAY_MS;
+            if(!age.accept(days)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A number of units, compared as more than it (+N), less than it (-N), or
+     * rounded up to it (N).
+     */
+    private static final class Range {
+
+        private final int sign;
+        private final long value;
+        private final long unit;
+
+        Range(int sign, long value, long unit) {
+            this.sign = sign;
+            this.value = value;
+            this.unit = unit;
+        }
+
+        static Range parse(String text, boolean units) {
+            if(text == null || text.isEmpty()) {
+                return null;
+            }
+            int sign = 0;
+            if(text.charAt(0) == '+' || text.charAt(0) == '-') {
+                sign = text.charAt(0) == '+' ? 1 : -1;
+                text = text.substring(1);
+            }
+            long unit = 1;
+            if(units && !text.isEmpty()) {
+                int index = "kMG".indexOf(text.charAt(text.length() - 1));
+                if(index >= 0) {
+                    unit = 1L << (10 * (index + 1));
+                    text = text.substring(0, text.length() - 1);
+                }
+            }
+            try {
+                long value = Long.parseLong(text);
+                if(value < 0 || value > Long.MAX_VALUE / unit) {
+                    return null;
+                }
+                return new Range(sign, value, unit);
+            } catch(NumberFormatException ex) {
+                return null;
+            }
+        }
+
+        boolean accept(long amount) {
+            if(sign > 0) {
+                return amount > value * unit;
+            }
+            if(sign < 0) {
+                return amount < value * unit;
+            }
+            return (amount + unit - 1) / unit == value;
+        }
+    }
+
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import org.jshell.BytePipe;
+import org.jshell.ShellIO;
+
+/**
+ * Prints the lines appended to a file, until the output is closed or the
+ * thread is interrupted. Only the new bytes are read. The follower waits for
+ * the changes of the directory, or polls the file when they can not be
+ * watched. When the file is replaced, as by a log rotation, the new file is
+ * followed from its start; when it is truncated, it is read again from its
+ * start.
+ * <p>
+ * The charset must encode '\n' as in ASCII.
+ *
+ * @author Fabien Barbero
+ */
+final class FileFollower {
+
+    /** Time between two checks of the file, when its directory is not watched. */
+    static final long POLL_INTERVAL_MS = 250;
+    /** Maximum wait for a change of the directory, some file systems miss them. */
+    static final long WATCH_TIMEOUT_MS = 1000;
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final Charset charset;
+    private final BytePipe output;
+    private final ShellIO handler;
+
+    private FileChannel channel;
+    private Object fileKey;
+    private long position;
+    /** The bytes read and not printed, the start of a line. */
+    private ByteBuffer pending = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * @param path      The file.
+     * @param position  The position of the first byte to print.
+     * @param charset   The charset of the file.
+     * @param output    The byte pipe receiving the lines, which must then be
+     *                  UTF-8 lines; or null to print them in the handler.
+     * @param handler   The output of the command.
+     */
+    FileFollower(Path path, long position, Charset charset, BytePipe output, ShellIO handler) {
+        this.path = path;
+        this.position = position;
+        this.charset = charset;
+        this.output = output;
+        this.handler = handler;
+    }
+
+    /**
+     * Indicates if the lines of a charset can be followed.
+     * @return true if '\n' is encoded as in ASCII.
+     */
+    static boolean canFollow(Charset charset) {
+        byte[] newline = "\n".getBytes(charset);
+        return newline.length == 1 && newline[0] == '\n';
+    }
+
+    /**
+     * Print the appended lines, until the output is closed, as when the
+     * pipeline is cancelled.
+     * @throws InterruptedException If the thread is interrupted.
+     */
+    void follow() throws IOException, InterruptedException {
+        WatchService watcher = createWatcher();
+        try {
+            open();
+            while(!isClosed()) {
+                if(!readAppended() && !reopen()) {
+                    // The next command gets the last lines before the wait
+                    if(output != null) {
+                        output.flush();
+                    }
+                    await(watcher);
+                }
+            }
+        } finally {
+            if(channel != null) {
+                channel.close();
+            }
+            if(watcher != null) {
+                watcher.close();
+            }
+        }
+    }
+
+    private WatchService createWatcher() {
+        Path directory = path.toAbsolutePath().getParent();
+        if(directory == null) {
+            return null;
+        }
+        WatchService watcher = null;
+        try {
+            watcher = path.getFileSystem().newWatchService();
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            return watcher;
+        } catch(IOException ex) {
+            // Polled
+        } catch(UnsupportedOperationException ex) {
+            // Polled
+        }
+        if(watcher != null) {
+            try {
+                watcher.close();
+            } catch(IOException ex) {
+                // Not used
+            }
+        }
+        return null;
+    }
+
+    private void await(WatchService watcher) throws InterruptedException {
+        if(watcher == null) {
+            Thread.sleep(POLL_INTERVAL_MS);
+            return;
+        }
+        WatchKey key = watcher.poll(WATCH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        // Any change of the directory leads to a check of the file
+        while(key != null) {
+            key.pollEvents();
+            key.reset();
+            key = watcher.poll();
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * Read and print the bytes appended since the last read.
+     * @return false if there was no new byte.
+     */
+    private boolean readAppended() throws IOException {
+        long size = channel.size();
+        if(size < position) {
+            // Truncated
+            position = 0;
+            pending.clear();
+        }
+        if(size == position) {
+            return false;
+        }
+        if(!pending.hasRemaining()) {
+            // A line larger than the buffer
+            ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        int read = channel.read(pending, position);
+        if(read <= 0) {
+            return false;
+        }
+        position += read;
+        printLines();
+        return true;
+    }
+
+    /**
+     * Print the complete lines of the pending bytes, and keep the last bytes.
+     */
+    private void printLines() {
+        int end = pending.position();
+        int start = 0;
+        int newline;
+        while(!isClosed() && (newline = MappedByteLineReader.indexOfNewline(pending, start, end)) >= 0) {
+            int lineEnd = newline > start && pending.get(newline - 1) == '\r' ? newline - 1 : newline;
+            print(start, lineEnd);
+            start = newline + 1;
+        }
+        pending.limit(end).position(start);
+        pending.compact();
+    }
+
+    private void print(int start, int end) {
+        if(output != null) {
+            ByteBuffer line = pending.duplicate();
+            line.limit(end).position(start);
+            output.write(line);
+        } else {
+            handler.println(new String(pending.array(), start, end - start, charset));
+        }
+    }
+
+    /**
+     * Follow the file found at the path if it is not the one read, once the
+     * one read has been printed.
+     * @return true if a new file is followed.
+     */
+    private boolean reopen() throws IOException {
+        Object currentKey;
+        try {
+            currentKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch(IOException ex) {
+            // Removed, the next file may be created soon
+            return false;
+        }
+        if(fileKey == null || fileKey.equals(currentKey)) {
+            return false;
+        }
+        // The last line of the previous file had no terminator
+        if(pending.position() > 0) {
+            print(0, pending.position());
+            pending.clear();
+        }
+        channel.close();
+        channel = null;
+        position = 0;
+        open();
+        return true;
+    }
+
+    private boolean isClosed() {
+        return output != null ? output.isClosed() : handler.isClosed();
+    }
+
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import org.jshell.AbstractShellCommand;
+import org.jshell.ArgumentsList;
+import org.jshell.ShellBuffer;
+import org.jshell.ShellIO;
+
+/**
+ * Prints the files of directory trees, walked in parallel by a
+ * {@link DirectoryWalker}: the files are not printed in a defined order.
+ *
+ * @author Fabien Barbero
+ */
+public class Find extends AbstractShellCommand {
+
+    private static final String TYPE_ARGUMENT = "-type";
+
+    public Find() {
+        super("find");
+    }
+
+    @Override
+    protected String getHelpMessage() {
+        return "Prints the files of directory trees, in no defined order\n"
+                + "  find [PATH...]      prints the files of the trees (default .)\n"
+                + "  -type f|d           prints only the files or the directories\n"
+                + FileFilter.HELP;
+    }
+
+    @Override
+    protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+        final FileFilter filter = FileFilter.create(args, handler);
+        if(filter == null) {
+            return;
+        }
+        final String type = args.getNextArgumentValue(TYPE_ARGUMENT);
+        if(args.containsArgument(TYPE_ARGUMENT) && !"f".equals(type) && !"d".equals(type)) {
+            handler.println("Invalid type: " + type);
+            return;
+        }
+        List<Path> roots = new ArrayList<Path>();
+        for(String operand : args.getOperands(TYPE_ARGUMENT, FileFilter.NAME_ARGUMENT, FileFilter.SIZE_ARGUMENT, FileFilter.MTIME_ARGUMENT)) {
+            roots.add(Paths.get(operand));
+        }
+        if(roots.isEmpty()) {
+            roots.add(Paths.get("."));
+        }
+
+        DirectoryWalker walker = new DirectoryWalker(Grep.SEARCH_POOL, new DirectoryWalker.Visitor() {
+
+            @Override
+            public void visit(Path path, BasicFileAttributes attributes, DirectoryWalker.Batch batch) {
+                if(type != null && !(type.equals("d") ? attributes.isDirectory() : attributes.isRegularFile())) {
+                    return;
+                }
+                if(filter.accept(path, attributes)) {
+                    batch.add(path.toString());
+                }
+            }
+        });
+        walker.walk(roots, handler);
+    }
+
+}
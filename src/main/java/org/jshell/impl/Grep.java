@@ -21,9 +21,23 @@
  */
 package org.jshell.impl;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
 import org.jshell.AbstractShellCommand;
 import org.jshell.ArgumentsList;
+import org.jshell.BytePipe;
+import org.jshell.ByteShellCommand;
+import org.jshell.Idempotent;
 import org.jshell.ShellBuffer;
 import org.jshell.ShellIO;
 
@@ -31,7 +45,21 @@ import org.jshell.ShellIO;
  *
  * @author Fabien Barbero
  */
-public class Grep extends AbstractShellCommand {
+@Idempotent(exceptWith = Grep.RECURSIVE_ARGUMENT)
+public class Grep extends AbstractShellCommand implements ByteShellCommand {
+
+    private static final String REGEX_ARGUMENT = "-e";
+    private static final String LITERALS_ARGUMENT = "-F";
+    private static final String INVERT_ARGUMENT = "-v";
+    private static final String COUNT_ARGUMENT = "-c";
+    private static final String MAX_ARGUMENT = "-m";
+    private static final String THREADS_ARGUMENT = "-j";
+    static final String RECURSIVE_ARGUMENT = "-r";
+    private static final String CHARSET_ARGUMENT = "-charset";
+    private static final String DEFAULT_CHARSET = "UTF-8";
+    private static final int MAX_OPEN_FILES = 64;
+
+    static final ForkJoinPool SEARCH_POOL = new ForkJoinPool();
 
     public Grep() {
         super("grep");
@@ -39,24 +67,313 @@ public class Grep extends AbstractShellCommand {
 
     @Override
     protected String getHelpMessage() {
-        return "Prints lines which match the given value";
+        return "Prints lines which match the given value (case insensitive)\n"
+                + "  grep VALUE          lines of the input containing VALUE\n"
+                + "  grep VALUE FILE...  lines of the files containing VALUE, read through their\n"
+                + "                      index when one was built by 'index build'\n"
+                + "  -e REGEX            lines matching the regular expression\n"
+                + "  -F VALUE1,VALUE2    lines containing one of the values\n"
+                + "  -v                  lines which do not match\n"
+                + "  -c                  prints only the number of matching lines\n"
+                + "  -m N                stops after N matching lines\n"
+                + "  -j N                number of threads searching the files\n"
+                + "  -charset NAME       charset of the files (default " + DEFAULT_CHARSET + ")\n"
+                + "  -r                  searches the files of the directory trees (default .),\n"
+                + "                      printed as they are found, selected by:\n"
+                + FileFilter.HELP;
     }
 
     @Override
     protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
-        String value = args.getArgumentAt(0);
-        if(value == null) {
-            handler.println("No valut to match");
+        LineMatcher matcher = createMatcher(args);
+        if(matcher == null) {
+            handler.println("No value to match");
+            return;
+        }
+        long max = getMax(args, handler);
+        if(max < 0) {
+            return;
+        }
+        boolean invert = args.containsArgument(INVERT_ARGUMENT);
+        boolean count = args.containsArgument(COUNT_ARGUMENT);
+
+        List<String> files = getFiles(args);
+        if(files.isEmpty() && args.containsArgument(RECURSIVE_ARGUMENT)) {
+            files = Collections.singletonList(".");
+        }
+        if(!files.isEmpty()) {
+            searchFiles(args, files, invert, count, max, handler);
+            return;
+        }
+        if(inputBuffer == null) {
+            handler.println("No input to search");
             return;
         }
-        value = value.toLowerCase();
 
+        long matches = 0;
         Iterator<String> it = inputBuffer.getContent();
-        while(it.hasNext()) {
+        while(matches < max && !handler.isClosed() && it.hasNext()) {
             String line = it.next();
-            if(line.toLowerCase().contains(value)) {
-                handler.println(line);
+            if(matcher.matches(line) != invert) {
+                matches++;
+                if(!count) {
+                    handler.println(line);
+                }
+            }
+        }
+        if(count) {
+            handler.println(String.valueOf(matches));
+        }
+    }
+
+    @Override
+    public void executeBytes(ArgumentsList args, ShellBuffer inputBuffer, BytePipe input, BytePipe output, ShellIO handler) throws Exception {
+        if(printHelp(args, handler)) {
+            return;
+        }
+        if(input == null || !getFiles(args).isEmpty()) {
+            executeCommand(args, inputBuffer, handler);
+            return;
+        }
+        LineMatcher lineMatcher = createMatcher(args);
+        if(lineMatcher == null) {
+            handler.println("No value to match");
+            return;
+        }
+        long max = getMax(args, handler);
+        if(max < 0) {
+            return;
+        }
+        boolean invert = args.containsArgument(INVERT_ARGUMENT);
+        boolean count = args.containsArgument(COUNT_ARGUMENT);
+
+        ByteLineMatcher matcher = new ByteLineMatcher(lineMatcher);
+        long matches = 0;
+        ByteBuffer line;
+        while(matches < max && !output.isClosed() && (line = input.readLine()) != null) {
+            if(matcher.matches(line) != invert) {
+                matches++;
+                if(!count) {
+                    output.write(line);
+                }
+            }
+        }
+        if(count) {
+            handler.println(String.valueOf(matches));
+        }
+    }
+
+    private static long getMax(ArgumentsList args, ShellIO handler) {
+        if(!args.containsArgument(MAX_ARGUMENT)) {
+            return Long.MAX_VALUE;
+        }
+        long max = parseNumber(args.getNextArgumentValue(MAX_ARGUMENT));
+        if(max < 0) {
+            handler.println("Invalid number of lines: " + args.getNextArgumentValue(MAX_ARGUMENT));
+        }
+        return max;
+    }
+
+    private void searchFiles(ArgumentsList args, List<String> files, boolean invert, boolean count, long max, ShellIO handler) throws Exception {
+        String charsetName = args.getNextArgumentValue(CHARSET_ARGUMENT);
+        if(charsetName == null) {
+            charsetName = DEFAULT_CHARSET;
+        } else if(!Charset.isSupported(charsetName)) {
+            handler.println("Unsupported charset '" + charsetName + "'");
+            return;
+        }
+        ForkJoinPool pool = SEARCH_POOL;
+        if(args.containsArgument(THREADS_ARGUMENT)) {
+            long threads = parseNumber(args.getNextArgumentValue(THREADS_ARGUMENT));
+            if(threads < 1) {
+                handler.println("Invalid number of threads: " + args.getNextArgumentValue(THREADS_ARGUMENT));
+                return;
+            }
+            pool = new ForkJoinPool((int) Math.min(threads, Short.MAX_VALUE));
+        }
+
+        try {
+            List<String[]> literals = invert ? null : getLiterals(args);
+            ChunkedFileSearch search = new ChunkedFileSearch(pool, args, Charset.forName(charsetName), invert, count, literals);
+            if(args.containsArgument(RECURSIVE_ARGUMENT)) {
+                searchTrees(pool, search, files, count, max, FileFilter.create(args, handler), handler);
+                return;
+            }
+            boolean prefix = files.size() > 1;
+            for(String file : files) {
+                FileResults results = new FileResults(handler, prefix ? file + ":" : "", max);
+                search.search(file, results);
+                if(count) {
+                    handler.println(results.prefix + results.matches);
+                }
+            }
+        } finally {
+            if(pool != SEARCH_POOL) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Search the files of directory trees in parallel, a file being searched
+     * by the thread which found it.
+     */
+    private void searchTrees(ForkJoinPool pool, final ChunkedFileSearch search, List<String> roots, final boolean count,
+            final long max, final FileFilter filter, ShellIO handler) throws Exception {
+        if(filter == null) {
+            return;
+        }
+        final Semaphore openFiles = new Semaphore(MAX_OPEN_FILES);
+        DirectoryWalker walker = new DirectoryWalker(pool, new DirectoryWalker.Visitor() {
+
+            @Override
+            public void visit(Path path, BasicFileAttributes attributes, DirectoryWalker.Batch batch) throws IOException {
+                if(!attributes.isRegularFile() || !filter.accept(path, attributes)
+                        || path.getFileName().toString().endsWith(TrigramIndex.EXTENSION)) {
+                    return;
+                }
+                openFiles.acquireUninterruptibly();
+                try {
+                    TreeResults results = new TreeResults(batch, path + ":", max);
+                    search.search(path.toString(), results);
+                    if(count) {
+                        batch.add(results.prefix + results.matches);
+                    }
+                } finally {
+                    openFiles.release();
+                }
+            }
+        });
+        List<Path> paths = new ArrayList<Path>();
+        for(String root : roots) {
+            paths.add(Paths.get(root));
+        }
+        walker.walk(paths, handler);
+    }
+
+    /**
+     * Create the matcher described by the arguments.
+     * @param args  The arguments of the command.
+     * @return      The matcher, or null if there is no value to match.
+     */
+    static LineMatcher createMatcher(ArgumentsList args) {
+        String regex = args.getNextArgumentValue(REGEX_ARGUMENT);
+        if(regex != null) {
+            return new RegexMatcher(regex);
+        }
+        String literals = args.getNextArgumentValue(LITERALS_ARGUMENT);
+        if(literals != null) {
+            return new MultiLiteralMatcher(literals.split(","));
+        }
+        List<String> operands = getOperands(args);
+        if(operands.isEmpty()) {
+            return null;
+        }
+        return new LiteralMatcher(operands.get(0));
+    }
+
+    /**
+     * Get the literals contained in the lines matched by the arguments.
+     * @param args  The arguments of the command.
+     * @return      The alternatives of literals, a matching line containing all
+     *              the literals of one of them; or null if they are unknown.
+     */
+    static List<String[]> getLiterals(ArgumentsList args) {
+        String regex = args.getNextArgumentValue(REGEX_ARGUMENT);
+        if(regex != null) {
+            List<String> literals = RegexMatcher.getRequiredLiterals(regex);
+            return literals.isEmpty() ? null : Collections.singletonList(literals.toArray(new String[literals.size()]));
+        }
+        String literals = args.getNextArgumentValue(LITERALS_ARGUMENT);
+        if(literals != null) {
+            List<String[]> alternatives = new ArrayList<String[]>();
+            for(String literal : literals.split(",")) {
+                alternatives.add(new String[] {literal});
+            }
+            return alternatives;
+        }
+        List<String> operands = getOperands(args);
+        return operands.isEmpty() ? null : Collections.singletonList(new String[] {operands.get(0)});
+    }
+
+    /**
+     * Get the files to search given in the arguments.
+     * @param args  The arguments of the command.
+     * @return      The paths of the files, empty if the input must be searched.
+     */
+    static List<String> getFiles(ArgumentsList args) {
+        List<String> operands = getOperands(args);
+        if(args.containsArgument(REGEX_ARGUMENT) || args.containsArgument(LITERALS_ARGUMENT) || operands.isEmpty()) {
+            return operands;
+        }
+        return operands.subList(1, operands.size());
+    }
+
+    private static List<String> getOperands(ArgumentsList args) {
+        return args.getOperands(REGEX_ARGUMENT, LITERALS_ARGUMENT, MAX_ARGUMENT, THREADS_ARGUMENT, CHARSET_ARGUMENT,
+                FileFilter.NAME_ARGUMENT, FileFilter.SIZE_ARGUMENT, FileFilter.MTIME_ARGUMENT);
+    }
+
+    private static long parseNumber(String value) {
+        if(value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch(NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static final class FileResults implements ChunkedFileSearch.Collector {
+
+        private final ShellIO handler;
+        private final String prefix;
+        private final long max;
+        private long matches;
+
+        FileResults(ShellIO handler, String prefix, long max) {
+            this.handler = handler;
+            this.prefix = prefix;
+            this.max = max;
+        }
+
+        @Override
+        public boolean collect(List<String> lines, int count) {
+            if(lines == null) {
+                matches = Math.min(max, matches + count);
+            } else {
+                for(int i=0; i<lines.size() && matches < max; i++, matches++) {
+                    handler.println(prefix.isEmpty() ? lines.get(i) : prefix + lines.get(i));
+                }
+            }
+            return matches < max && !handler.isClosed();
+        }
+    }
+
+    private static final class TreeResults implements ChunkedFileSearch.Collector {
+
+        private final DirectoryWalker.Batch batch;
+        private final String prefix;
+        private final long max;
+        private long matches;
+
+        TreeResults(DirectoryWalker.Batch batch, String prefix, long max) {
+            this.batch = batch;
+            this.prefix = prefix;
+            this.max = max;
+        }
+
+        @Override
+        public boolean collect(List<String> lines, int count) {
+            if(lines == null) {
+                matches = Math.min(max, matches + count);
+            } else {
+                for(int i=0; i<lines.size() && matches < max; i++, matches++) {
+                    batch.add(prefix + lines.get(i));
+                }
             }
+            return matches < max && !batch.isStopped();
         }
     }
 
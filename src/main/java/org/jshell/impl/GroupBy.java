@@ -0,0 +1,328 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jshell.ArgumentsList;
+import org.jshell.CommandFailedException;
+import org.jshell.Idempotent;
+import org.jshell.ShellIO;
+
+/**
+ * Aggregates the rows of a delimited input by the values of some columns.
+ * The values of each key column are encoded by a {@link ByteDictionary}, and
+ * the codes of several columns are combined into a group number through
+ * {@link LongIntHashMap}s. Each aggregate then updates primitive arrays
+ * indexed by the group numbers, a batch of rows at a time. The integers are
+ * aggregated exactly as longs, a group falling back to doubles only when one
+ * of its values is a decimal number or when its sum overflows. The groups are
+ * printed in the order they appear in the input.
+ *
+ * @author Fabien Barbero
+ */
+@Idempotent
+public class GroupBy extends CsvCommand {
+
+    private static final List<String> FUNCTIONS = Arrays.asList("count", "sum", "min", "max", "avg");
+    private static final int COUNT = 0;
+    private static final int SUM = 1;
+    private static final int MIN = 2;
+    private static final int MAX = 3;
+    private static final int AVG = 4;
+
+    public GroupBy() {
+        super("groupby");
+    }
+
+    @Override
+    protected String getHelpMessage() {
+        return "Aggregates the rows of a delimited input, whose first line names the columns\n"
+                + "  groupby [KEY,...] AGGREGATE...\n"
+                + "                      prints a row per distinct value of the KEY columns,\n"
+                + "                      with the aggregates: count, sum(COLUMN), min(COLUMN),\n"
+                + "                      max(COLUMN) or avg(COLUMN); the fields which are not\n"
+                + "                      numbers are ignored\n"
+                + DELIMITER_HELP;
+    }
+
+    @Override
+    protected void query(ArgumentsList args, byte delimiter, ByteBuffer header, List<String> columns, Lines lines,
+            ShellIO handler) throws Exception {
+        List<String> operands = args.getOperands(DELIMITER_ARGUMENT);
+        List<String> keyNames = new ArrayList<String>();
+        if(!operands.isEmpty() && parseAggregate(operands.get(0), columns, false) == null) {
+            keyNames = Arrays.asList(operands.get(0).split(","));
+            operands = operands.subList(1, operands.size());
+        }
+        int[] keys = getColumns(columns, keyNames);
+        if(operands.isEmpty()) {
+            throw new CommandFailedException("No aggregate to compute");
+        }
+        Aggregate[] aggregates = new Aggregate[operands.size()];
+        for(int i=0; i<aggregates.length; i++) {
+            aggregates[i] = parseAggregate(operands.get(i), columns, true);
+        }
+
+        Groups groups = new Groups(keys);
+        CsvBatch batch = new CsvBatch(columns.size(), delimiter);
+        int[] rowGroups = new int[CsvBatch.MAX_ROWS];
+        long[] integers = new long[CsvBatch.MAX_ROWS];
+        double[] decimals = new double[CsvBatch.MAX_ROWS];
+        byte[] kinds = new byte[CsvBatch.MAX_ROWS];
+        while(lines.read(batch)) {
+            groups.assign(batch, rowGroups);
+            for(int i=0; i<aggregates.length; i++) {
+                // Aggregates of the same column share the parsing
+                if(i == 0 || aggregates[i].column != aggregates[i - 1].column) {
+                    if(aggregates[i].column >= 0) {
+                        batch.getNumbers(aggregates[i].column, integers, decimals, kinds);
+                    }
+                }
+                aggregates[i].update(batch.getRowCount(), rowGroups, groups.count, integers, decimals, kinds);
+            }
+        }
+        if(lines.isClosed()) {
+            return;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(4096);
+        for(int i=0; i<keys.length + aggregates.length; i++) {
+            if(i > 0) {
+                out = reserve(out, 1).put(delimiter);
+            }
+            String name = i < keys.length ? keyNames.get(i) : aggregates[i - keys.length].name;
+            out = appendQuoted(out, name.getBytes(StandardCharsets.UTF_8), delimiter);
+        }
+        out.flip();
+        lines.write(out);
+        for(int group=0; group<groups.count && !lines.isClosed(); group++) {
+            out.clear();
+            for(int i=0; i<keys.length; i++) {
+                if(i > 0) {
+                    out = reserve(out, 1).put(delimiter);
+                }
+                out = appendQuoted(out, groups.dictionaries[i].get(groups.codes[group * keys.length + i]), delimiter);
+            }
+            for(int i=0; i<aggregates.length; i++) {
+                if(i > 0 || keys.length > 0) {
+                    out = reserve(out, 1).put(delimiter);
+                }
+                byte[] value = aggregates[i].format(group).getBytes(StandardCharsets.US_ASCII);
+                out = reserve(out, value.length).put(value);
+            }
+            out.flip();
+            lines.write(out);
+        }
+    }
+
+    /**
+     * Parse an aggregate, as "count" or "sum(COLUMN)".
+     * @param strict    true to fail on an invalid aggregate, false to return null.
+     * @return          The aggregate, or null if it is invalid and not strict.
+     * @throws CommandFailedException If the aggregate is invalid and strict.
+     */
+    private static Aggregate parseAggregate(String text, List<String> columns, boolean strict) throws CommandFailedException {
+        int open = text.indexOf('(');
+        String function = open < 0 ? text : text.substring(0, open);
+        int index = FUNCTIONS.indexOf(function);
+        if(index == COUNT && open < 0) {
+            return new Aggregate(text, COUNT, -1);
+        }
+        if(index > COUNT && open > 0 && text.endsWith(")")) {
+            int column = columns.indexOf(text.substring(open + 1, text.length() - 1));
+            if(column >= 0) {
+                return new Aggregate(text, index, column);
+            }
+            if(strict) {
+                throw new CommandFailedException("Unknown column: " + text.substring(open + 1, text.length() - 1));
+            }
+            return null;
+        }
+        if(strict) {
+            throw new CommandFailedException("Invalid aggregate: " + text);
+        }
+        return null;
+    }
+
+    /**
+     * Numbers of the groups of the rows.
+     */
+    private static final class Groups {
+
+        private final int[] keys;
+        private final ByteDictionary[] dictionaries;
+        /** Combines the group of the first keys with the code of the next key. */
+        private final LongIntHashMap[] combinations;
+        private final int[][] keyCodes;
+        /** Codes of the keys of each group: [group * keys + key]. */
+        private int[] codes = new int[1024];
+        private int count;
+
+        Groups(int[] keys) {
+            this.keys = keys;
+            dictionaries = new ByteDictionary[keys.length];
+            combinations = new LongIntHashMap[keys.length];
+            keyCodes = new int[keys.length][CsvBatch.MAX_ROWS];
+            for(int i=0; i<keys.length; i++) {
+                dictionaries[i] = new ByteDictionary();
+                combinations[i] = i > 0 ? new LongIntHashMap() : null;
+            }
+        }
+
+        void assign(CsvBatch batch, int[] rowGroups) {
+            int rows = batch.getRowCount();
+            if(keys.length == 0) {
+                Arrays.fill(rowGroups, 0, rows, 0);
+                count = 1;
+                return;
+            }
+            for(int i=0; i<keys.length; i++) {
+                batch.getCodes(keys[i], dictionaries[i], keyCodes[i]);
+            }
+            System.arraycopy(keyCodes[0], 0, rowGroups, 0, rows);
+            for(int i=1; i<keys.length; i++) {
+                LongIntHashMap combination = combinations[i];
+                int[] next = keyCodes[i];
+                for(int row=0; row<rows; row++) {
+                    rowGroups[row] = combination.putIfAbsent((long) rowGroups[row] << 32 | next[row], combination.size());
+                }
+            }
+            // The groups are numbered in the order they appear
+            for(int row=0; row<rows; row++) {
+                if(rowGroups[row] == count) {
+                    if((count + 1) * keys.length > codes.length) {
+                        codes = Arrays.copyOf(codes, 2 * codes.length);
+                    }
+                    for(int i=0; i<keys.length; i++) {
+                        codes[count * keys.length + i] = keyCodes[i][row];
+                    }
+                    count++;
+                }
+            }
+        }
+    }
+
+    /**
+     * An aggregate of the rows of each group.
+     */
+    private static final class Aggregate {
+
+        private final String name;
+        private final int function;
+        private final int column;
+        /** Values of the groups while they are exact. */
+        private long[] integers = new long[1024];
+        /** Values of the groups once they are not exact. */
+        private double[] decimals = new double[1024];
+        private boolean[] inexact = new boolean[1024];
+        /** Number of rows, or of numbers for the functions of a column. */
+        private long[] counts = new long[1024];
+
+        Aggregate(String name, int function, int column) {
+            this.name = name;
+            this.function = function;
+            this.column = column;
+        }
+
+        void update(int rows, int[] rowGroups, int groupCount, long[] rowIntegers, double[] rowDecimals, byte[] kinds) {
+            if(groupCount > counts.length) {
+                int capacity = Math.max(groupCount, 2 * counts.length);
+                integers = Arrays.copyOf(integers, capacity);
+                decimals = Arrays.copyOf(decimals, capacity);
+                inexact = Arrays.copyOf(inexact, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            if(function == COUNT) {
+                for(int row=0; row<rows; row++) {
+                    counts[rowGroups[row]]++;
+                }
+                return;
+            }
+            for(int row=0; row<rows; row++) {
+                int group = rowGroups[row];
+                if(kinds[row] == CsvBatch.INTEGER && !inexact[group]) {
+                    add(group, rowIntegers[row]);
+                } else if(kinds[row] == CsvBatch.INTEGER) {
+                    add(group, (double) rowIntegers[row]);
+                } else if(kinds[row] == CsvBatch.DECIMAL) {
+                    if(!inexact[group]) {
+                        inexact[group] = true;
+                        decimals[group] = integers[group];
+                    }
+                    add(group, rowDecimals[row]);
+                }
+            }
+        }
+
+        private void add(int group, long number) {
+            long value = integers[group];
+            if(counts[group]++ == 0) {
+                integers[group] = number;
+            } else if(function == MIN) {
+                integers[group] = Math.min(value, number);
+            } else if(function == MAX) {
+                integers[group] = Math.max(value, number);
+            } else {
+                long sum = value + number;
+                if(((value ^ sum) & (number ^ sum)) < 0) {
+                    // Overflow
+                    inexact[group] = true;
+                    decimals[group] = (double) value + number;
+                } else {
+                    integers[group] = sum;
+                }
+            }
+        }
+
+        private void add(int group, double number) {
+            double value = decimals[group];
+            if(counts[group]++ == 0) {
+                decimals[group] = number;
+            } else if(function == MIN) {
+                decimals[group] = Math.min(value, number);
+            } else if(function == MAX) {
+                decimals[group] = Math.max(value, number);
+            } else {
+                decimals[group] = value + number;
+            }
+        }
+
+        String format(int group) {
+            if(function == COUNT) {
+                return String.valueOf(counts[group]);
+            }
+            if(counts[group] == 0) {
+                return "";
+            }
+            if(function == AVG) {
+                double sum = inexact[group] ? decimals[group] : integers[group];
+                return String.valueOf(sum / counts[group]);
+            }
+            return inexact[group] ? String.valueOf(decimals[group]) : String.valueOf(integers[group]);
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.List;
+import org.jshell.AbstractShellCommand;
+import org.jshell.ArgumentsList;
+import org.jshell.CommandFailedException;
+import org.jshell.Idempotent;
+import org.jshell.ShellBuffer;
+import org.jshell.ShellIO;
+
+/**
+ * Prints the first lines of the input or of files. Once the lines are printed
+ * the command finishes, which cancels the commands writing in its input.
+ *
+ * @author Fabien Barbero
+ */
+@Idempotent
+public class Head extends AbstractShellCommand {
+
+    static final String LINES_ARGUMENT = "-n";
+    static final String CHARSET_ARGUMENT = "-charset";
+    static final String DEFAULT_CHARSET = "UTF-8";
+    static final long DEFAULT_LINES = 10;
+
+    public Head() {
+        super("head");
+    }
+
+    @Override
+    protected String getHelpMessage() {
+        return "Prints the first lines of the input or of files\n"
+                + "  head [FILE...]      prints the first lines\n"
+                + "  head N [FILE...]    prints the first N lines\n"
+                + "  -n N                number of lines (default " + DEFAULT_LINES + ")\n"
+                + "  -charset NAME       charset of the files (default " + DEFAULT_CHARSET + ")";
+    }
+
+    @Override
+    protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+        long count = getLineCount(args, handler);
+        if(count < 0) {
+            return;
+        }
+        List<String> filePaths = getFiles(args);
+        if(filePaths.isEmpty()) {
+            if(inputBuffer == null) {
+                handler.println("No input to print");
+                return;
+            }
+            Iterator<String> it = inputBuffer.getContent();
+            for(long i=0; i<count && it.hasNext(); i++) {
+                handler.println(it.next());
+            }
+            return;
+        }
+        Charset charset = getCharset(args, handler);
+        if(charset == null) {
+            return;
+        }
+        for(String filePath : filePaths) {
+            if(filePaths.size() > 1) {
+                handler.println("==> " + filePath + " <==");
+            }
+            RandomAccessFile file = open(filePath);
+            try {
+                FileChannel channel = file.getChannel();
+                Compression compression = Compression.detect(channel);
+                if(compression != Compression.NONE) {
+                    // Closing the reader stops the inflation
+                    BufferedReader reader = compression.openReader(channel, charset);
+                    try {
+                        String line;
+                        for(long i=0; i<count && (line = reader.readLine()) != null; i++) {
+                            handler.println(line);
+                        }
+                    } finally {
+                        reader.close();
+                    }
+                    continue;
+                }
+                MappedLineReader reader = new MappedLineReader(channel, charset, 0, channel.size());
+                String line;
+                for(long i=0; i<count && (line = reader.readLine()) != null; i++) {
+                    handler.println(line);
+                }
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Get the files of a head or a tail: the operands, except a number of lines
+     * given without -n before the files.
+     * @return The paths of the files.
+     */
+    static List<String> getFiles(ArgumentsList args) {
+        List<String> operands = args.getOperands(LINES_ARGUMENT, CHARSET_ARGUMENT);
+        if(getCountOperand(args, operands) != null) {
+            return operands.subList(1, operands.size());
+        }
+        return operands;
+    }
+
+    private static String getCountOperand(ArgumentsList args, List<String> operands) {
+        if(args.containsArgument(LINES_ARGUMENT) || operands.isEmpty()) {
+            return null;
+        }
+        String first = operands.get(0);
+        for(int i=0; i<first.length(); i++) {
+            if(first.charAt(i) < '0' || first.charAt(i) > '9') {
+                return null;
+            }
+        }
+        return first.isEmpty() ? null : first;
+    }
+
+    /**
+     * Read the number of lines of a head or a tail, given by -n or by a number
+     * before the files.
+     * @return The number of lines, or -1 if it is invalid.
+     */
+    static long getLineCount(ArgumentsList args, ShellIO handler) {
+        String value;
+        if(args.containsArgument(LINES_ARGUMENT)) {
+            value = args.getNextArgumentValue(LINES_ARGUMENT);
+        } else {
+            value = getCountOperand(args, args.getOperands(LINES_ARGUMENT, CHARSET_ARGUMENT));
+            if(value == null) {
+                return DEFAULT_LINES;
+            }
+        }
+        try {
+            long count = Long.parseLong(value);
+            if(count >= 0) {
+                return count;
+            }
+        } catch(NumberFormatException ex) {
+            // Reported below
+        }
+        handler.println("Invalid number of lines: " + value);
+        return -1;
+    }
+
+    /**
+     * Open a file of a head or a tail.
+     * @throws CommandFailedException If the file can not be read.
+     */
+    static RandomAccessFile open(String filePath) throws CommandFailedException {
+        try {
+            return new RandomAccessFile(filePath, "r");
+        } catch(FileNotFoundException ex) {
+            throw new CommandFailedException("Can not read " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Read the charset of the files of a head or a tail.
+     * @return The charset, or null if it is not supported.
+     */
+    static Charset getCharset(ArgumentsList args, ShellIO handler) {
+        String charsetName = args.getNextArgumentValue(CHARSET_ARGUMENT);
+        if(charsetName == null) {
+            charsetName = DEFAULT_CHARSET;
+        } else if(!Charset.isSupported(charsetName)) {
+            handler.println("Unsupported charset '" + charsetName + "'");
+            return null;
+        }
+        return Charset.forName(charsetName);
+    }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import org.jshell.AbstractShellCommand;
+import org.jshell.ArgumentsList;
+import org.jshell.ShellBuffer;
+import org.jshell.ShellIO;
+
+/**
+ * Builds the {@link TrigramIndex} of files, used by the next searches of grep
+ * until the files are modified.
+ *
+ * @author Fabien Barbero
+ */
+public class Index extends AbstractShellCommand {
+
+    private static final String BUILD_ACTION = "build";
+    private static final String CHARSET_ARGUMENT = "-charset";
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
+    public Index() {
+        super("index");
+    }
+
+    @Override
+    protected String getHelpMessage() {
+        return "Indexes files for grep\n"
+                + "  index build FILE... writes the index of each file next to it (FILE" + TrigramIndex.EXTENSION + "),\n"
+                + "                      used by grep until the file is modified\n"
+                + "  -charset NAME       charset of the files (default " + DEFAULT_CHARSET + ")";
+    }
+
+    @Override
+    protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+        List<String> operands = args.getOperands(CHARSET_ARGUMENT);
+        if(operands.isEmpty() || !BUILD_ACTION.equals(operands.get(0))) {
+            handler.println("Unknown action, expected: index " + BUILD_ACTION + " FILE...");
+            return;
+        }
+        List<String> filePaths = operands.subList(1, operands.size());
+        if(filePaths.isEmpty()) {
+            handler.println("No file to index");
+            return;
+        }
+        String charsetName = args.getNextArgumentValue(CHARSET_ARGUMENT);
+        if(charsetName == null) {
+            charsetName = DEFAULT_CHARSET;
+        } else if(!Charset.isSupported(charsetName)) {
+            handler.println("Unsupported charset '" + charsetName + "'");
+            return;
+        }
+        Charset charset = Charset.forName(charsetName);
+        if(!TrigramIndex.canIndex(charset)) {
+            handler.println("Can not index a file in " + charset.name());
+            return;
+        }
+        for(String filePath : filePaths) {
+            if(handler.isClosed()) {
+                return;
+            }
+            Path path = Paths.get(filePath);
+            RandomAccessFile file = new RandomAccessFile(filePath, "r");
+            try {
+                FileChannel channel = file.getChannel();
+                if(Compression.detect(channel) != Compression.NONE) {
+                    handler.println(filePath + ": can not index a compressed file");
+                    continue;
+                }
+                TrigramIndex index = TrigramIndex.build(path, channel, charset);
+                handler.println(TrigramIndex.getIndexPath(path) + ": " + index.getBlockCount() + " blocks");
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+}
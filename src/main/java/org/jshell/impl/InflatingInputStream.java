@@ -0,0 +1,344 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * The inflated content of a gzip file. The file is inflated by another thread
+ * into a few blocks, so the reader does not wait for the decompression but
+ * the memory is bounded.
+ * <p>
+ * The members whose size is in their header (as written by bgzip) are
+ * inflated in parallel, and their checksums verified. The other members, as
+ * the ones of concatenated gzip files, are inflated in sequence.
+ *
+ * @author Fabien Barbero
+ */
+final class InflatingInputStream extends InputStream {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int QUEUE_BLOCKS = 16;
+    private static final long OFFER_TIMEOUT_MS = 100;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private static final ExecutorService INFLATE_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "jshell-inflate-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    /** Inflates the members of known size, never waits for the readers. */
+    private static final ForkJoinPool MEMBER_POOL = new ForkJoinPool();
+
+    private final FileChannel channel;
+    private final BlockingQueue<ByteBuffer> blocks = new ArrayBlockingQueue<ByteBuffer>(QUEUE_BLOCKS);
+    private volatile boolean closed;
+    private volatile Throwable error;
+    private ByteBuffer current;
+
+    /**
+     * Start to inflate a file.
+     * @param channel   The gzip file, which must stay open until this stream is
+     *                  closed. Its position is changed.
+     */
+    InflatingInputStream(FileChannel channel) {
+        this.channel = channel;
+        INFLATE_EXECUTOR.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    inflate();
+                } catch(Throwable ex) {
+                    error = ex;
+                } finally {
+                    offer(END);
+                }
+            }
+        });
+    }
+
+    @Override
+    public int read() throws IOException {
+        if(!fill()) {
+            return -1;
+        }
+        return current.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) {
+            return 0;
+        }
+        if(!fill()) {
+            return -1;
+        }
+        int count = Math.min(len, current.remaining());
+        current.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.remaining();
+    }
+
+    /**
+     * Stop the inflation. The file can be closed after.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        blocks.clear();
+    }
+
+    private boolean fill() throws IOException {
+        while(current == null || !current.hasRemaining()) {
+            if(current == END) {
+                return false;
+            }
+            try {
+                current = blocks.take();
+            } catch(InterruptedException ex) {
+                throw new InterruptedIOException();
+            }
+            if(current == END) {
+                Throwable cause = error;
+                if(cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if(cause != null) {
+                    throw new IOException(cause);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean offer(ByteBuffer block) {
+        try {
+            while(!closed) {
+                if(blocks.offer(block, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private void inflate() throws Exception {
+        long size = channel.size();
+        long position = 0;
+        int maxTasks = 2 * MEMBER_POOL.getParallelism();
+        Deque<ForkJoinTask<ByteBuffer>> tasks = new ArrayDeque<ForkJoinTask<ByteBuffer>>();
+        try {
+            int memberSize;
+            while(position < size && (memberSize = getMemberSize(position, size)) > 0) {
+                tasks.add(MEMBER_POOL.submit(new MemberInflater(position, memberSize)));
+                position += memberSize;
+                if(tasks.size() >= maxTasks && !offerInflated(tasks.poll())) {
+                    return;
+                }
+            }
+            while(!tasks.isEmpty()) {
+                if(!offerInflated(tasks.poll())) {
+                    return;
+                }
+            }
+        } finally {
+            for(ForkJoinTask<ByteBuffer> task : tasks) {
+                task.cancel(false);
+            }
+        }
+        if(position < size) {
+            // The next member boundaries are unknown
+            channel.position(position);
+            InputStream in = new GZIPInputStream(Channels.newInputStream(channel), BLOCK_SIZE);
+            while(true) {
+                byte[] block = new byte[BLOCK_SIZE];
+                int count = 0;
+                int read;
+                while(count < BLOCK_SIZE && (read = in.read(block, count, BLOCK_SIZE - count)) > 0) {
+                    count += read;
+                }
+                if(count == 0 || !offer(ByteBuffer.wrap(block, 0, count))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean offerInflated(ForkJoinTask<ByteBuffer> task) throws Exception {
+        ByteBuffer block;
+        try {
+            block = task.get();
+        } catch(ExecutionException ex) {
+            // The pool wraps the exceptions thrown in its threads
+            Throwable cause = ex.getCause();
+            while(cause != null && !(cause instanceof IOException)) {
+                cause = cause.getCause();
+            }
+            throw cause != null ? (IOException) cause : ex;
+        }
+        return !block.hasRemaining() || offer(block);
+    }
+
+    /**
+     * Read the size of a member in its header, from the 'BC' extra subfield
+     * of the BGZF format.
+     * @return The size of the member, or -1 if it is unknown.
+     */
+    private int getMemberSize(long position, long size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        if(!readFully(header, position)
+                || (header.get(0) & 0xFF) != 0x1F || (header.get(1) & 0xFF) != 0x8B
+                || header.get(2) != 8 || (header.get(3) & 0x04) == 0) {
+            return -1;
+        }
+        ByteBuffer extra = ByteBuffer.allocate(header.getShort(10) & 0xFFFF).order(ByteOrder.LITTLE_ENDIAN);
+        if(!readFully(extra, position + header.capacity())) {
+            return -1;
+        }
+        for(int i = 0; i + 4 <= extra.limit(); i += 4 + (extra.getShort(i + 2) & 0xFFFF)) {
+            if(extra.get(i) == 'B' && extra.get(i + 1) == 'C' && extra.getShort(i + 2) == 2 && i + 6 <= extra.limit()) {
+                int memberSize = (extra.getShort(i + 4) & 0xFFFF) + 1;
+                return position + memberSize <= size ? memberSize : -1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    /**
+     * Inflates a whole member, checking its length and checksum.
+     */
+    private final class MemberInflater implements Callable<ByteBuffer> {
+
+        private final long start;
+        private final int length;
+
+        MemberInflater(long start, int length) {
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public ByteBuffer call() throws IOException, DataFormatException {
+            ByteBuffer member = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+            if(!readFully(member, start) || length < 18) {
+                throw corrupted();
+            }
+            byte[] data = member.array();
+            int flags = data[3];
+            int offset = 10;
+            if((flags & 0x04) != 0) {
+                offset += 2 + (member.getShort(offset) & 0xFFFF);
+            }
+            for(int field = 0x08; field <= 0x10; field <<= 1) {
+                if((flags & field) != 0) {
+                    // Zero terminated name or comment
+                    while(offset < length && data[offset] != 0) {
+                        offset++;
+                    }
+                    offset++;
+                }
+            }
+            if((flags & 0x02) != 0) {
+                offset += 2;
+            }
+            long inflatedSize = member.getInt(length - 4) & 0xFFFFFFFFL;
+            if(offset > length - 8 || inflatedSize > Integer.MAX_VALUE) {
+                throw corrupted();
+            }
+            byte[] inflated = new byte[(int) inflatedSize];
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(data, offset, length - 8 - offset);
+                int count = 0;
+                while(!inflater.finished() && count < inflated.length) {
+                    int read = inflater.inflate(inflated, count, inflated.length - count);
+                    if(read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    count += read;
+                }
+                if(count != inflated.length || inflater.inflate(new byte[1]) != 0 || !inflater.finished()) {
+                    throw corrupted();
+                }
+            } finally {
+                inflater.end();
+            }
+            CRC32 crc = new CRC32();
+            crc.update(inflated, 0, inflated.length);
+            if((int) crc.getValue() != member.getInt(length - 8)) {
+                throw corrupted();
+            }
+            return ByteBuffer.wrap(inflated);
+        }
+
+        private IOException corrupted() {
+            return new IOException("Corrupted gzip member at byte " + start);
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Case insensitive search of a literal text, using the Boyer-Moore-Horspool
+ * algorithm on case folded characters. The lines are never copied.
+ *
+ * @author Fabien Barbero
+ */
+final class LiteralMatcher implements LineMatcher {
+
+    private static final int TABLE_SIZE = 256;
+
+    /** The ASCII characters which are also the folding of other characters. */
+    private static final boolean[] NON_ASCII_FOLDINGS = nonAsciiFoldings();
+
+    private final char[] pattern;
+    private final int[] shifts = new int[TABLE_SIZE];
+    private final boolean ascii;
+    private final boolean nonAsciiFoldings;
+
+    LiteralMatcher(String literal) {
+        pattern = new char[literal.length()];
+        for(int i=0; i<pattern.length; i++) {
+            pattern[i] = fold(literal.charAt(i));
+        }
+        int last = pattern.length - 1;
+        for(int i=0; i<TABLE_SIZE; i++) {
+            shifts[i] = pattern.length;
+        }
+        // Characters sharing a slot keep the smallest shift, which is always safe
+        for(int i=0; i<last; i++) {
+            shifts[pattern[i] & (TABLE_SIZE - 1)] = last - i;
+        }
+        boolean onlyAscii = true;
+        boolean foldings = false;
+        for(char c : pattern) {
+            onlyAscii &= c < 128;
+            foldings |= c < 128 && NON_ASCII_FOLDINGS[c];
+        }
+        ascii = onlyAscii;
+        nonAsciiFoldings = foldings;
+    }
+
+    private static boolean[] nonAsciiFoldings() {
+        boolean[] foldings = new boolean[128];
+        for(int c=128; c<=Character.MAX_VALUE; c++) {
+            char folded = fold((char) c);
+            if(folded < 128) {
+                foldings[folded] = true;
+            }
+        }
+        return foldings;
+    }
+
+    /**
+     * Indicates if the lines can be searched on their UTF-8 bytes.
+     * @return true if the literal is made of ASCII characters.
+     */
+    boolean isAscii() {
+        return ascii;
+    }
+
+    /**
+     * Indicates if a character out of ASCII can match the literal, like the
+     * Kelvin sign which is folded to 'k'. A line which does not match on its
+     * bytes must then be decoded if it has such characters.
+     * @return true if a character out of ASCII can match.
+     */
+    boolean hasNonAsciiFoldings() {
+        return nonAsciiFoldings;
+    }
+
+    static char fold(char c) {
+        if(c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    @Override
+    public boolean matches(CharSequence line) {
+        int length = pattern.length;
+        if(length == 0) {
+            return true;
+        }
+        int last = length - 1;
+        int end = line.length() - length;
+        int pos = 0;
+        while(pos <= end) {
+            char c = fold(line.charAt(pos + last));
+            if(c == pattern[last]) {
+                int i = last - 1;
+                while(i >= 0 && fold(line.charAt(pos + i)) == pattern[i]) {
+                    i--;
+                }
+                if(i < 0) {
+                    return true;
+                }
+            }
+            pos += shifts[c & (TABLE_SIZE - 1)];
+        }
+        return false;
+    }
+
+    /**
+     * Indicates if a line encoded in UTF-8 contains the literal, comparing the
+     * ASCII bytes. It must only be used for an ASCII literal.
+     * @param line  The bytes between the position and the limit of the buffer.
+     * @return      true if the bytes contain the literal.
+     */
+    boolean matches(ByteBuffer line) {
+        int length = pattern.length;
+        if(length == 0) {
+            return true;
+        }
+        int last = length - 1;
+        int end = line.limit() - length;
+        int pos = line.position();
+        while(pos <= end) {
+            char c = foldByte(line.get(pos + last));
+            if(c == pattern[last]) {
+                int i = last - 1;
+                while(i >= 0 && foldByte(line.get(pos + i)) == pattern[i]) {
+                    i--;
+                }
+                if(i < 0) {
+                    return true;
+                }
+            }
+            pos += shifts[c & (TABLE_SIZE - 1)];
+        }
+        return false;
+    }
+
+    private static char foldByte(byte b) {
+        return b >= 'A' && b <= 'Z' ? (char) (b + ('a' - 'A')) : (char) (b & 0xFF);
+    }
+
+}
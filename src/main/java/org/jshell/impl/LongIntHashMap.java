@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+/**
+ * Map of long keys to int values, with open addressing in primitive arrays:
+ * no entry nor boxed key is allocated.
+ *
+ * @author Fabien Barbero
+ */
+final class LongIntHashMap {
+
+    private long[] keys = new long[1024];
+    private int[] values = new int[1024];
+    private boolean[] used = new boolean[1024];
+    private int size;
+
+    /**
+     * Get the number of keys.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the value of a key, adding it when it is not in the map.
+     * @param key       The key.
+     * @param newValue  The value of the key if it is added.
+     * @return          The value of the key.
+     */
+    int putIfAbsent(long key, int newValue) {
+        int mask = keys.length - 1;
+        for(int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            if(!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                values[slot] = newValue;
+                if(2 * ++size > keys.length) {
+                    rehash();
+                }
+                return newValue;
+            }
+            if(keys[slot] == key) {
+                return values[slot];
+            }
+        }
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new long[2 * oldKeys.length];
+        values = new int[keys.length];
+        used = new boolean[keys.length];
+        int mask = keys.length - 1;
+        for(int i=0; i<oldKeys.length; i++) {
+            if(oldUsed[i]) {
+                int slot = mix(oldKeys[i]) & mask;
+                while(used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the lines of a part of a file as views of memory mapped regions,
+ * without decoding them. The line terminators ("\n" or "\r\n") are removed.
+ * A line longer than a region is split.
+ *
+ * @author Fabien Barbero
+ */
+final class MappedByteLineReader {
+
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final FileChannel channel;
+    private final long end;
+
+    private MappedByteBuffer region;
+    private ByteBuffer view;
+    private long regionStart;
+    private long regionEnd;
+    private long position;
+
+    /**
+     * Create a reader of the lines between two positions of a file.
+     * @param channel   The file.
+     * @param start     The position of the first byte read.
+     * @param end       The position following the last byte read.
+     */
+    MappedByteLineReader(FileChannel channel, long start, long end) {
+        this.channel = channel;
+        this.end = end;
+        this.position = start;
+    }
+
+    /**
+     * Read the next line.
+     * @return A view of the bytes of the line, valid until the next call; or
+     *         null if the end has been reached.
+     */
+    ByteBuffer readLine() throws IOException {
+        if(position >= end) {
+            return null;
+        }
+        if(region == null || position >= regionEnd) {
+            map(position);
+        }
+        int start = (int) (position - regionStart);
+        int limit = region.limit();
+        int newline = indexOfNewline(region, start, limit);
+        if(newline < 0 && regionEnd < end && start > 0) {
+            // The line continues in the next region
+            map(position);
+            start = 0;
+            limit = region.limit();
+            newline = indexOfNewline(region, start, limit);
+        }
+        int lineEnd = limit;
+        if(newline >= 0) {
+            lineEnd = newline > start && region.get(newline - 1) == '\r' ? newline - 1 : newline;
+            position = regionStart + newline + 1;
+        } else {
+            position = regionEnd;
+        }
+        view.limit(lineEnd);
+        view.position(start);
+        return view;
+    }
+
+    private void map(long start) throws IOException {
+        regionStart = start;
+        regionEnd = Math.min(end, start + MappedLineReader.REGION_SIZE);
+        region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionEnd - regionStart);
+        region.order(ByteOrder.LITTLE_ENDIAN);
+        view = region.duplicate();
+    }
+
+    /**
+     * Find the next '\n', testing 8 bytes at a time.
+     * @return The index of the '\n', or -1 if there is none.
+     */
+    static int indexOfNewline(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        if(buffer.order() == ByteOrder.LITTLE_ENDIAN) {
+            // The lowest flagged byte is exact, and it is the first in memory
+            for(; i + 8 <= to; i += 8) {
+                long word = buffer.getLong(i) ^ NEWLINES;
+                long found = (word - LOW_BITS) & ~word & HIGH_BITS;
+                if(found != 0) {
+                    return i + (Long.numberOfTrailingZeros(found) >>> 3);
+                }
+            }
+        }
+        for(; i < to; i++) {
+            if(buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
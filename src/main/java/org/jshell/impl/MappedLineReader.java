@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reads the lines of a part of a file through memory mapped regions. The bytes
+ * are decoded with an explicit charset into a reused char buffer, and the
+ * line terminators ("\n" or "\r\n") are removed.
+ *
+ * @author Fabien Barbero
+ */
+final class MappedLineReader {
+
+    static final int REGION_SIZE = 64 * 1024 * 1024;
+
+    private static final int CHARS_SIZE = 16 * 1024;
+    private static final int MIN_REMAINING_BYTES = 16;
+
+    private final FileChannel channel;
+    private final long end;
+    private final CharsetDecoder decoder;
+    private final CharBuffer chars = CharBuffer.allocate(CHARS_SIZE);
+    private final StringBuilder line = new StringBuilder();
+
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long regionEnd;
+    private boolean finished;
+
+    /**
+     * Create a reader of the lines between two positions of a file.
+     * @param channel   The file.
+     * @param charset   The charset of the file.
+     * @param start     The position of the first byte read.
+     * @param end       The position following the last byte read.
+     */
+    MappedLineReader(FileChannel channel, Charset charset, long start, long end) {
+        this.channel = channel;
+        this.end = end;
+        this.regionStart = start;
+        this.regionEnd = start;
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars.flip();
+    }
+
+    /**
+     * Read the next line.
+     * @return The line, or null if the end has been reached.
+     */
+    String readLine() throws IOException {
+        line.setLength(0);
+        boolean read = false;
+        while(true) {
+            if(!chars.hasRemaining() && !fill()) {
+                return read ? line.toString() : null;
+            }
+            read = true;
+            char[] array = chars.array();
+            int start = chars.position();
+            int limit = chars.limit();
+            int i = start;
+            while(i < limit && array[i] != '\n') {
+                i++;
+            }
+            line.append(array, start, i - start);
+            if(i < limit) {
+                chars.position(i + 1);
+                int length = line.length();
+                if(length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            chars.position(limit);
+        }
+    }
+
+    private boolean fill() throws IOException {
+        chars.clear();
+        while(chars.position() == 0 && !finished) {
+            if(region == null || (region.remaining() < MIN_REMAINING_BYTES && regionEnd < end)) {
+                // Next region, starting with the bytes not decoded yet
+                regionStart = region == null ? regionStart : regionStart + region.position();
+                regionEnd = Math.min(end, regionStart + REGION_SIZE);
+                region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionEnd - regionStart);
+            }
+            boolean last = regionEnd == end;
+            decoder.decode(region, chars, last);
+            if(last && !region.hasRemaining()) {
+                decoder.flush(chars);
+                finished = true;
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Case insensitive search of several literal texts in a single pass, using an
+ * Aho-Corasick automaton. The automaton is compiled into a transition table
+ * indexed by the characters of the patterns, so matching does not allocate.
+ *
+ * @author Fabien Barbero
+ */
+final class MultiLiteralMatcher implements LineMatcher {
+
+    private static final int ASCII = 128;
+
+    /** Symbols of the ASCII characters, 0 for the characters not in the patterns. */
+    private final int[] asciiSymbols = new int[ASCII];
+    /** Sorted non ASCII characters of the patterns, with their symbols. */
+    private final char[] otherChars;
+    private final int[] otherSymbols;
+
+    /** Transitions: transitions[state * symbolCount + symbol]. */
+    private final int[] transitions;
+    private final boolean[] accepting;
+    private final int symbolCount;
+
+    MultiLiteralMatcher(String... literals) {
+        // Alphabet
+        StringBuilder others = new StringBuilder();
+        int symbols = 1;
+        for(String literal : literals) {
+            for(int i=0; i<literal.length(); i++) {
+                char c = LiteralMatcher.fold(literal.charAt(i));
+                if(c < ASCII) {
+                    if(asciiSymbols[c] == 0) {
+                        asciiSymbols[c] = symbols++;
+                    }
+                } else if(others.indexOf(String.valueOf(c)) < 0) {
+                    others.append(c);
+                }
+            }
+        }
+        otherChars = others.toString().toCharArray();
+        Arrays.sort(otherChars);
+        otherSymbols = new int[otherChars.length];
+        for(int i=0; i<otherChars.length; i++) {
+            otherSymbols[i] = symbols++;
+        }
+        symbolCount = symbols;
+
+        // Trie
+        List<int[]> trie = new ArrayList<int[]>();
+        List<Boolean> outputs = new ArrayList<Boolean>();
+        trie.add(new int[symbolCount]);
+        outputs.add(literals.length == 0);
+        for(String literal : literals) {
+            int state = 0;
+            for(int i=0; i<literal.length(); i++) {
+                int symbol = symbol(LiteralMatcher.fold(literal.charAt(i)));
+                if(trie.get(state)[symbol] == 0) {
+                    trie.get(state)[symbol] = trie.size();
+                    trie.add(new int[symbolCount]);
+                    outputs.add(false);
+                }
+                state = trie.get(state)[symbol];
+            }
+            outputs.set(state, true);
+        }
+
+        // Failure links resolved into a complete transition table
+        int stateCount = trie.size();
+        transitions = new int[stateCount * symbolCount];
+        accepting = new boolean[stateCount];
+        int[] failure = new int[stateCount];
+        Queue<Integer> queue = new LinkedList<Integer>();
+        for(int symbol=0; symbol<symbolCount; symbol++) {
+            int next = trie.get(0)[symbol];
+            transitions[symbol] = next;
+            if(next != 0) {
+                queue.add(next);
+            }
+        }
+        accepting[0] = outputs.get(0);
+        while(!queue.isEmpty()) {
+            int state = queue.poll();
+            accepting[state] = outputs.get(state) || accepting[failure[state]];
+            for(int symbol=0; symbol<symbolCount; symbol++) {
+                int next = trie.get(state)[symbol];
+                if(next != 0) {
+                    failure[next] = transitions[failure[state] * symbolCount + symbol];
+                    transitions[state * symbolCount + symbol] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * symbolCount + symbol] = transitions[failure[state] * symbolCount + symbol];
+                }
+            }
+        }
+    }
+
+    private int symbol(char c) {
+        if(c < ASCII) {
+            return asciiSymbols[c];
+        }
+        int index = Arrays.binarySearch(otherChars, c);
+        return index < 0 ? 0 : otherSymbols[index];
+    }
+
+    @Override
+    public boolean matches(CharSequence line) {
+        if(accepting[0]) {
+            return true;
+        }
+        int state = 0;
+        for(int i=0; i<line.length(); i++) {
+            state = transitions[state * symbolCount + symbol(LiteralMatcher.fold(line.charAt(i)))];
+            if(accepting[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
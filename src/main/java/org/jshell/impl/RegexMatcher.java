@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Case insensitive search of a regular expression. The pattern is compiled once
+ * and the same {@link Matcher} is reset for each line.
+ *
+ * @author Fabien Barbero
+ */
+final class RegexMatcher implements LineMatcher {
+
+    private final Matcher matcher;
+
+    RegexMatcher(String regex) {
+        matcher = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE).matcher("");
+    }
+
+    /**
+     * Find texts contained in every match of a regular expression. Only the
+     * simple expressions are analyzed: the groups, the classes and the
+     * quantified characters are skipped, and nothing is found when there are
+     * alternatives or flags.
+     * @param regex The regular expression.
+     * @return      The literal texts, empty if none is found.
+     */
+    static List<String> getRequiredLiterals(String regex) {
+        List<String> literals = new ArrayList<String>();
+        if(regex.indexOf('|') >= 0 || regex.contains("(?")) {
+            return literals;
+        }
+        StringBuilder literal = new StringBuilder();
+        int depth = 0;
+        for(int i=0; i<regex.length(); i++) {
+            char c = regex.charAt(i);
+            boolean plain = false;
+            if(c == '\\' && i + 1 < regex.length()) {
+                // Only an escaped punctuation is itself
+                c = regex.charAt(++i);
+                plain = !Character.isLetterOrDigit(c);
+                if(!plain && "dDsSwWbB".indexOf(c) < 0) {
+                    // The escape has arguments, as \x41 or \p{L}
+                    literals.clear();
+                    return literals;
+                }
+            } else if(c == '{') {
+                i = regex.indexOf('}', i);
+                if(i < 0) {
+                    break;
+                }
+            } else if(c == '[') {
+                for(i += 2; i < regex.length() && regex.charAt(i) != ']'; i++) {
+                    if(regex.charAt(i) == '\\') {
+                        i++;
+                    }
+                }
+            } else if(c == '(') {
+                depth++;
+            } else if(c == ')') {
+                depth--;
+            } else {
+                plain = ".*+?}^$".indexOf(c) < 0;
+            }
+            char next = i + 1 < regex.length() ? regex.charAt(i + 1) : 0;
+            boolean optional = next == '*' || next == '?' || next == '{';
+            if(plain && depth == 0 && !optional) {
+                literal.append(c);
+            }
+            if(!plain || depth > 0 || optional || next == '+') {
+                addLiteral(literals, literal);
+            }
+        }
+        addLiteral(literals, literal);
+        return literals;
+    }
+
+    private static void addLiteral(List<String> literals, StringBuilder literal) {
+        if(literal.length() > 0) {
+            literals.add(literal.toString());
+            literal.setLength(0);
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence line) {
+        return matcher.reset(line).find();
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.jshell.ArgumentsList;
+import org.jshell.CommandFailedException;
+import org.jshell.Idempotent;
+import org.jshell.ShellIO;
+
+/**
+ * Prints some columns of a delimited input. The fields are copied as they
+ * are written, quotes included.
+ *
+ * @author Fabien Barbero
+ */
+@Idempotent
+public class Select extends CsvCommand {
+
+    public Select() {
+        super("select");
+    }
+
+    @Override
+    protected String getHelpMessage() {
+        return "Prints some columns of a delimited input, whose first line names the columns\n"
+                + "  select COLUMN...    prints the columns, in the given order\n"
+                + DELIMITER_HELP;
+    }
+
+    @Override
+    protected void query(ArgumentsList args, byte delimiter, ByteBuffer header, List<String> columns, Lines lines,
+            ShellIO handler) throws Exception {
+        List<String> names = args.getOperands(DELIMITER_ARGUMENT);
+        if(names.isEmpty()) {
+            throw new CommandFailedException("No column to select");
+        }
+        int[] selected = getColumns(columns, names);
+        ByteBuffer out = ByteBuffer.allocate(4096);
+        for(int i=0; i<selected.length; i++) {
+            if(i > 0) {
+                out = reserve(out, 1).put(delimiter);
+            }
+            out = appendQuoted(out, names.get(i).getBytes(StandardCharsets.UTF_8), delimiter);
+        }
+        out.flip();
+        lines.write(out);
+
+        CsvBatch batch = new CsvBatch(columns.size(), delimiter);
+        while(lines.read(batch)) {
+            for(int row=0; row<batch.getRowCount(); row++) {
+                out.clear();
+                for(int i=0; i<selected.length; i++) {
+                    out = reserve(out, 1 + batch.getRawLength(row, selected[i]));
+                    if(i > 0) {
+                        out.put(delimiter);
+                    }
+                    batch.appendRaw(row, selected[i], out);
+                }
+                out.flip();
+                lines.write(out);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import org.jshell.AbstractShellCommand;
+import org.jshell.ArgumentsList;
+import org.jshell.BytePipe;
+import org.jshell.ByteShellCommand;
+import org.jshell.Idempotent;
+import org.jshell.ShellBuffer;
+import org.jshell.ShellIO;
+
+/**
+ * Sorts the lines of the input. When the lines exceed the memory budget, they
+ * are sorted by parts in temporary files which are merged, see
+ * {@link ExternalSorter}.
+ *
+ * @author Fabien Barbero
+ */
+@Idempotent
+public class Sort extends AbstractShellCommand implements ByteShellCommand {
+
+    private static final String FIELD_ARGUMENT = "-k";
+    private static final String NUMERIC_ARGUMENT = "-n";
+    private static final String REVERSE_ARGUMENT = "-r";
+    private static final String UNIQUE_ARGUMENT = "-u";
+    private static final String MEMORY_ARGUMENT = "-S";
+
+    private static final ForkJoinPool SORT_POOL = new ForkJoinPool();
+
+    public Sort() {
+        super("sort");
+    }
+
+    @Override
+    protected String getHelpMessage() {
+        return "Sorts the lines of the input\n"
+                + "  -k N                sorts from the field N, the fields being separated by blanks\n"
+                + "  -n                  compares the numbers starting the lines or the fields\n"
+                + "  -r                  sorts in descending order\n"
+                + "  -u                  prints only the first line of the equal keys\n"
+                + "  -S MB               memory used before sorting in temporary files\n"
+                + "                      (default " + defaultBudget() / (1024 * 1024) + ")";
+    }
+
+    @Override
+    protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+        sort(args, inputBuffer, null, null, handler);
+    }
+
+    @Override
+    public void executeBytes(ArgumentsList args, ShellBuffer inputBuffer, BytePipe input, BytePipe output, ShellIO handler) throws Exception {
+        if(!printHelp(args, handler)) {
+            sort(args, inputBuffer, input, output, handler);
+        }
+    }
+
+    private void sort(ArgumentsList args, ShellBuffer inputBuffer, BytePipe input, BytePipe output, ShellIO handler) throws Exception {
+        // Without field, the key is the whole line, blanks included
+        int field = 0;
+        if(args.containsArgument(FIELD_ARGUMENT)) {
+            field = (int) parsePositive(args.getNextArgumentValue(FIELD_ARGUMENT), Integer.MAX_VALUE);
+            if(field < 0) {
+                handler.println("Invalid field: " + args.getNextArgumentValue(FIELD_ARGUMENT));
+                return;
+            }
+        }
+        long budget = defaultBudget();
+        if(args.containsArgument(MEMORY_ARGUMENT)) {
+            budget = parsePositive(args.getNextArgumentValue(MEMORY_ARGUMENT), Long.MAX_VALUE / (1024 * 1024)) * 1024 * 1024;
+            if(budget < 0) {
+                handler.println("Invalid memory size: " + args.getNextArgumentValue(MEMORY_ARGUMENT));
+                return;
+            }
+        }
+        if(input == null && inputBuffer == null) {
+            handler.println("No input to sort");
+            return;
+        }
+        boolean unique = args.containsArgument(UNIQUE_ARGUMENT);
+        SortKey key = new SortKey(field, args.containsArgument(NUMERIC_ARGUMENT), args.containsArgument(REVERSE_ARGUMENT), unique);
+
+        ExternalSorter sorter = new ExternalSorter(key, unique, budget, SORT_POOL, SORT_POOL.getParallelism());
+        try {
+            if(input != null) {
+                ByteBuffer line;
+                while(!handler.isClosed() && (line = input.readLine()) != null) {
+                    sorter.add(line);
+                }
+            } else {
+                Iterator<String> it = inputBuffer.getContent();
+                while(!handler.isClosed() && it.hasNext()) {
+                    sorter.add(it.next());
+                }
+            }
+
+            Iterator<ByteBuffer> it = sorter.sort();
+            byte[] decoded = new byte[256];
+            ByteBuffer previous = null;
+            while(!handler.isClosed() && it.hasNext()) {
+                ByteBuffer line = it.next();
+                if(unique) {
+                    if(previous != null && key.sameKey(previous, line)) {
+                        continue;
+                    }
+                    previous = copy(line, previous);
+                }
+                if(output != null) {
+                    output.write(line);
+                } else {
+                    int length = line.remaining();
+                    if(decoded.length < length) {
+                        decoded = new byte[Math.max(length, decoded.length * 2)];
+                    }
+                    line.duplicate().get(decoded, 0, length);
+                    handler.println(new String(decoded, 0, length, StandardCharsets.UTF_8));
+                }
+            }
+        } finally {
+            sorter.close();
+        }
+    }
+
+    /**
+     * Copy a line in a buffer, reused when it is large enough.
+     */
+    private static ByteBuffer copy(ByteBuffer line, ByteBuffer buffer) {
+        if(buffer == null || buffer.capacity() < line.remaining()) {
+            buffer = ByteBuffer.allocate(Math.max(line.remaining(), 256));
+        }
+        buffer.clear();
+        buffer.put(line.duplicate());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static long defaultBudget() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    private static long parsePositive(String value, long max) {
+        if(value == null) {
+            return -1;
+        }
+        try {
+            long number = Long.parseLong(value);
+            return number > 0 && number <= max ? number : -1;
+        } catch(NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+
+/**
+ * Order of the lines of a sort, comparing their UTF-8 bytes. The key of a line
+ * is the whole line, or starts at a field and ends with the line: the fields
+ * are separated by blanks, and the blanks before the field are skipped. The
+ * numbers are read after the leading blanks. Lines with equal keys are ordered
+ * by their whole content, unless the sort keeps their order.
+ *
+ * @author Fabien Barbero
+ */
+final class SortKey implements Comparator<ByteBuffer> {
+
+    private final int field;
+    private final boolean numeric;
+    private final boolean reverse;
+    private final boolean stable;
+
+    /**
+     * @param field     The first field of the key, starting at 1; or 0 for the
+     *                  whole line.
+     * @param numeric   true to compare the numbers starting the keys.
+     * @param reverse   true to sort in descending order.
+     * @param stable    true to compare only the keys, keeping the order of the
+     *                  lines with equal keys.
+     */
+    SortKey(int field, boolean numeric, boolean reverse, boolean stable) {
+        this.field = field;
+        this.numeric = numeric;
+        this.reverse = reverse;
+        this.stable = stable;
+    }
+
+    @Override
+    public int compare(ByteBuffer line1, ByteBuffer line2) {
+        int result = compareKeys(line1, line2);
+        if(result == 0 && !stable) {
+            result = compareBytes(line1, line1.position(), line2, line2.position());
+        }
+        return reverse ? -result : result;
+    }
+
+    /**
+     * Get a number ordered as the start of the key of a line: two lines whose
+     * prefixes are different are ordered as their prefixes, as unsigned values.
+     * @param line  The line.
+     * @return      The prefix of the key.
+     */
+    long prefix(ByteBuffer line) {
+        int start = keyStart(line);
+        long prefix;
+        if(numeric) {
+            long bits = Double.doubleToLongBits(parseNumber(line, start) + 0.0);
+            // The negative numbers are ordered backward, and before the others
+            prefix = bits < 0 ? ~bits : bits | Long.MIN_VALUE;
+        } else {
+            prefix = 0;
+            int end = Math.min(line.limit(), start + 8);
+            for(int i=start; i<end; i++) {
+                prefix |= (line.get(i) & 0xFFL) << (8 * (7 - (i - start)));
+            }
+        }
+        return reverse ? ~prefix : prefix;
+    }
+
+    /**
+     * Indicates if two lines have the same key.
+     * @return true if the keys are equal.
+     */
+    boolean sameKey(ByteBuffer line1, ByteBuffer line2) {
+        return compareKeys(line1, line2) == 0;
+    }
+
+    private int compareKeys(ByteBuffer line1, ByteBuffer line2) {
+        int start1 = keyStart(line1);
+        int start2 = keyStart(line2);
+        if(numeric) {
+            return Double.compare(parseNumber(line1, start1), parseNumber(line2, start2));
+        }
+        return compareBytes(line1, start1, line2, start2);
+    }
+
+    private int keyStart(ByteBuffer line) {
+        if(field == 0) {
+            return numeric ? skipBlanks(line, line.position()) : line.position();
+        }
+        int pos = skipBlanks(line, line.position());
+        for(int i=1; i<field; i++) {
+            while(pos < line.limit() && !isBlank(line.get(pos))) {
+                pos++;
+            }
+            pos = skipBlanks(line, pos);
+        }
+        return pos;
+    }
+
+    private static int skipBlanks(ByteBuffer line, int pos) {
+        while(pos < line.limit() && isBlank(line.get(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * Parse the decimal number starting a key, 0 if there is none.
+     */
+    static double parseNumber(ByteBuffer line, int pos) {
+        int limit = line.limit();
+        boolean negative = pos < limit && line.get(pos) == '-';
+        if(negative) {
+            pos++;
+        }
+        double value = 0;
+        while(pos < limit && isDigit(line.get(pos))) {
+            value = value * 10 + (line.get(pos++) - '0');
+        }
+        if(pos < limit && line.get(pos) == '.') {
+            double scale = 1;
+            pos++;
+            while(pos < limit && isDigit(line.get(pos))) {
+                scale /= 10;
+                value += (line.get(pos++) - '0') * scale;
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Compare bytes as unsigned values, which orders UTF-8 text by code points.
+     */
+    private static int compareBytes(ByteBuffer line1, int pos1, ByteBuffer line2, int pos2) {
+        int limit1 = line1.limit();
+        int limit2 = line2.limit();
+        while(pos1 < limit1 && pos2 < limit2) {
+            int b1 = line1.get(pos1++) & 0xFF;
+            int b2 = line2.get(pos2++) & 0xFF;
+            if(b1 != b2) {
+                return b1 - b2;
+            }
+        }
+        return (limit1 - pos1) - (limit2 - pos2);
+    }
+
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import org.jshell.CommandDescriptor;
+import org.jshell.ShellCommandProvider;
+
+/**
+ * Provider of the standard commands.
+ *
+ * @author Fabien Barbero
+ */
+public final class StandardCommands implements ShellCommandProvider {
+
+    private static final String PACKAGE = "org.jshell.impl.";
+
+    @Override
+    public List<CommandDescriptor> getCommands() {
+        return Arrays.asList(
+                new CommandDescriptor("cat", "Prints the content of files", PACKAGE + "Cat"),
+                new CommandDescriptor("grep", "Prints lines which match the given value", PACKAGE + "Grep"),
+                new CommandDescriptor("head", "Prints the first lines of the input or of files", PACKAGE + "Head", "limit"),
+                new CommandDescriptor("tail", "Prints the last lines of the input or of files", PACKAGE + "Tail"),
+                new CommandDescriptor("sort", "Sorts the lines of the input", PACKAGE + "Sort"),
+                new CommandDescriptor("uniq", "Prints the lines of the input, omitting the repeated ones", PACKAGE + "Uniq"),
+                new CommandDescriptor("find", "Prints the files of directory trees", PACKAGE + "Find"),
+                new CommandDescriptor("index", "Indexes files for grep", PACKAGE + "Index"),
+                new CommandDescriptor("select", "Prints some columns of a delimited input", PACKAGE + "Select"),
+                new CommandDescriptor("where", "Prints the rows of a delimited input matching conditions", PACKAGE + "Where"),
+                new CommandDescriptor("groupby", "Aggregates the rows of a delimited input", PACKAGE + "GroupBy"),
+                new CommandDescriptor("exit", "Exit the shell", PACKAGE + "Exit"));
+    }
+
+}
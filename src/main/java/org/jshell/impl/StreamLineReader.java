@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads the lines of a stream as views of a reused buffer, without decoding
+ * them. The line terminators ("\n" or "\r\n") are removed.
+ *
+ * @author Fabien Barbero
+ */
+final class StreamLineReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer view = buffer.duplicate();
+    private int start;
+    private int searched;
+    private boolean ended;
+
+    StreamLineReader(InputStream in) {
+        this.in = in;
+        buffer.limit(0);
+    }
+
+    /**
+     * Read the next line.
+     * @return A view of the bytes of the line, valid until the next call; or
+     *         null if the end has been reached.
+     */
+    ByteBuffer readLine() throws IOException {
+        int newline;
+        while((newline = MappedByteLineReader.indexOfNewline(buffer, searched, buffer.limit())) < 0) {
+            searched = buffer.limit();
+            if(ended || !read()) {
+                ended = true;
+                if(start == buffer.limit()) {
+                    return null;
+                }
+                view.limit(buffer.limit());
+                view.position(start);
+                start = buffer.limit();
+                return view;
+            }
+        }
+        int lineEnd = newline > start && buffer.get(newline - 1) == '\r' ? newline - 1 : newline;
+        view.limit(lineEnd);
+        view.position(start);
+        start = newline + 1;
+        searched = start;
+        return view;
+    }
+
+    /**
+     * Read more bytes after the current line, moving or growing the buffer.
+     * @return false at the end of the stream.
+     */
+    private boolean read() throws IOException {
+        int limit = buffer.limit();
+        if(limit == buffer.capacity()) {
+            ByteBuffer target = buffer;
+            if(start == 0) {
+                target = ByteBuffer.allocate(2 * buffer.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            System.arraycopy(buffer.array(), start, target.array(), 0, limit - start);
+            limit -= start;
+            searched -= start;
+            start = 0;
+            buffer = target;
+            view = buffer.duplicate();
+        }
+        int read = in.read(buffer.array(), limit, buffer.capacity() - limit);
+        if(read < 0) {
+            buffer.limit(limit);
+            return false;
+        }
+        buffer.limit(limit + read);
+        return true;
+    }
+
+}
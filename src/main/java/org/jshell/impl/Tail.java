@@ -0,0 +1,299 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.jshell.AbstractShellCommand;
+import org.jshell.ArgumentsList;
+import org.jshell.BytePipe;
+import org.jshell.ByteShellCommand;
+import org.jshell.Idempotent;
+import org.jshell.ShellBuffer;
+import org.jshell.ShellIO;
+
+/**
+ * Prints the last lines of the input or of files. The files are read backward
+ * from their end, so only the printed lines are read. A followed file is then
+ * read as it grows, see {@link FileFollower}. A compressed file is inflated
+ * and read from its start.
+ *
+ * @author Fabien Barbero
+ */
+@Idempotent(exceptWith = Tail.FOLLOW_ARGUMENT)
+public class Tail extends AbstractShellCommand implements ByteShellCommand {
+
+    static final String FOLLOW_ARGUMENT = "-f";
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    public Tail() {
+        super("tail");
+    }
+
+    @Override
+    protected String getHelpMessage() {
+        return "Prints the last lines of the input or of files\n"
+                + "  tail [FILE...]      prints the last lines\n"
+                + "  tail N [FILE...]    prints the last N lines\n"
+                + "  -n N                number of lines (default " + Head.DEFAULT_LINES + ")\n"
+                + "  -f                  prints the lines appended to the file, until interrupted\n"
+                + "  -charset NAME       charset of the files (default " + Head.DEFAULT_CHARSET + ")";
+    }
+
+    @Override
+    protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+        tail(args, inputBuffer, null, handler);
+    }
+
+    @Override
+    public void executeBytes(ArgumentsList args, ShellBuffer inputBuffer, BytePipe input, BytePipe output, ShellIO handler) throws Exception {
+        if(printHelp(args, handler)) {
+            return;
+        }
+        if(input != null && Head.getFiles(args).isEmpty()) {
+            long count = Head.getLineCount(args, handler);
+            if(count >= 0) {
+                writeLast(input, count, output);
+            }
+            return;
+        }
+        if(!args.containsArgument(FOLLOW_ARGUMENT)) {
+            executeCommand(args, inputBuffer, handler);
+            return;
+        }
+        tail(args, inputBuffer, output, handler);
+    }
+
+    /**
+     * Write the last lines of a pipe. The buffers of the lines dropped are
+     * reused for the next lines.
+     */
+    private static void writeLast(BytePipe input, long count, BytePipe output) {
+        Deque<ByteBuffer> lines = new ArrayDeque<ByteBuffer>();
+        ByteBuffer line;
+        while((line = input.readLine()) != null) {
+            if(count == 0) {
+                continue;
+            }
+            ByteBuffer buffer = lines.size() == count ? lines.removeFirst() : null;
+            if(buffer == null || buffer.capacity() < line.remaining()) {
+                buffer = ByteBuffer.allocate(Math.max(line.remaining(), 128));
+            }
+            buffer.clear();
+            buffer.put(line);
+            buffer.flip();
+            lines.addLast(buffer);
+        }
+        for(ByteBuffer last : lines) {
+            if(output.isClosed()) {
+                return;
+            }
+            output.write(last);
+        }
+    }
+
+    /**
+     * @param output    The byte pipe receiving the followed lines, or null to
+     *                  print them in the handler.
+     */
+    private void tail(ArgumentsList args, ShellBuffer inputBuffer, BytePipe output, ShellIO handler) throws Exception {
+        long count = Head.getLineCount(args, handler);
+        if(count < 0) {
+            return;
+        }
+        List<String> filePaths = Head.getFiles(args);
+        if(filePaths.isEmpty()) {
+            if(inputBuffer == null) {
+                handler.println("No input to print");
+                return;
+            }
+            printLast(inputBuffer.getContent(), count, handler);
+            return;
+        }
+        Charset charset = Head.getCharset(args, handler);
+        if(charset == null) {
+            return;
+        }
+        boolean backward = FileFollower.canFollow(charset);
+        boolean follow = args.containsArgument(FOLLOW_ARGUMENT);
+        if(follow && filePaths.size() > 1) {
+            handler.println("Only one file can be followed");
+            return;
+        }
+        if(follow && !backward) {
+            handler.println("Can not follow a file in " + charset.name());
+            return;
+        }
+        long printed = 0;
+        for(String filePath : filePaths) {
+            if(filePaths.size() > 1) {
+                handler.println("==> " + filePath + " <==");
+            }
+            RandomAccessFile file = Head.open(filePath);
+            try {
+                FileChannel channel = file.getChannel();
+                Compression compression = Compression.detect(channel);
+                if(compression != Compression.NONE) {
+                    if(follow) {
+                        handler.println("Can not follow a compressed file");
+                        return;
+                    }
+                    final BufferedReader reader = compression.openReader(channel, charset);
+                    try {
+                        printLast(new LineIterator() {
+
+                            @Override
+                            String readLine() throws IOException {
+                                return reader.readLine();
+                            }
+                        }, count, handler);
+                    } finally {
+                        reader.close();
+                    }
+                    continue;
+                }
+                long size = channel.size();
+                printed = size;
+                if(backward) {
+                    MappedLineReader reader = new MappedLineReader(channel, charset, lastLinesStart(channel, size, count), size);
+                    String line;
+                    while((line = reader.readLine()) != null) {
+                        handler.println(line);
+                    }
+                } else {
+                    // The line terminators can not be found on the bytes
+                    final MappedLineReader reader = new MappedLineReader(channel, charset, 0, size);
+                    printLast(new LineIterator() {
+
+                        @Override
+                        String readLine() throws IOException {
+                            return reader.readLine();
+                        }
+                    }, count, handler);
+                }
+            } finally {
+                file.close();
+            }
+        }
+        if(follow) {
+            boolean utf8 = charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII);
+            new FileFollower(Paths.get(filePaths.get(0)), printed, charset, utf8 ? output : null, handler).follow();
+        }
+    }
+
+    private static void printLast(Iterator<String> it, long count, ShellIO handler) {
+        Deque<String> lines = new ArrayDeque<String>();
+        while(it.hasNext()) {
+            String line = it.next();
+            if(count > 0) {
+                if(lines.size() == count) {
+                    lines.removeFirst();
+                }
+                lines.addLast(line);
+            }
+        }
+        for(String line : lines) {
+            handler.println(line);
+        }
+    }
+
+    /**
+     * Find the start of the last lines of a file, reading it backward.
+     * @param channel   The file.
+     * @param size      The size of the file.
+     * @param count     The number of lines.
+     * @return          The position of the first of the last lines.
+     */
+    static long lastLinesStart(FileChannel channel, long size, long count) throws IOException {
+        if(count == 0) {
+            return size;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        long position = size;
+        long lines = 0;
+        while(position > 0) {
+            int length = (int) Math.min(BLOCK_SIZE, position);
+            position -= length;
+            buffer.clear();
+            buffer.limit(length);
+            while(buffer.hasRemaining()) {
+                if(channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+            }
+            for(int i=length-1; i>=0; i--) {
+                // The terminator of the last line does not start a new line
+                if(buffer.get(i) == '\n' && position + i != size - 1 && ++lines == count) {
+                    return position + i + 1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private abstract static class LineIterator implements Iterator<String> {
+
+        private String next;
+
+        abstract String readLine() throws IOException;
+
+        @Override
+        public boolean hasNext() {
+            if(next == null) {
+                try {
+                    next = readLine();
+                } catch(IOException ex) {
+                    throw new IllegalStateException("Error reading file", ex);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String line = next;
+            next = null;
+            return line;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
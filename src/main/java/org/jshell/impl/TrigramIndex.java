@@ -0,0 +1,323 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Index of the blocks of a file containing each trigram, written next to the
+ * file. A search reads only the blocks containing all the trigrams of its
+ * literals.
+ * <p>
+ * The file is split into blocks aligned on the lines. The trigrams of the
+ * case folded characters of each line are hashed into a fixed number of
+ * buckets, and each bucket lists the blocks where one of its trigrams
+ * appears, as a list of block numbers or a bit set, whichever is smaller.
+ * A collision of hashes only adds blocks to read. The index records the size
+ * and the modification time of the file, and is ignored once they change.
+ *
+ * @author Fabien Barbero
+ */
+final class TrigramIndex {
+
+    static final String EXTENSION = ".tgi";
+
+    private static final int MAGIC = 0x4A544749;
+    private static final int VERSION = 1;
+    private static final int BUCKETS = 1 << 16;
+    private static final int MAX_BLOCKS = 4096;
+    private static final long MIN_BLOCK_SIZE = 64 * 1024;
+    private static final byte LIST = 0;
+    private static final byte BITS = 1;
+
+    private final ByteBuffer buffer;
+    private final long[] blocks;
+    /** Positions of the postings of the buckets, relative to the end of the table. */
+    private final int table;
+    private final int postings;
+
+    private TrigramIndex(ByteBuffer buffer, long[] blocks) {
+        this.buffer = buffer;
+        this.blocks = blocks;
+        this.table = buffer.position();
+        this.postings = table + 4 * (BUCKETS + 1);
+    }
+
+    /**
+     * @param file  The indexed file.
+     * @return      The path of the index of the file.
+     */
+    static Path getIndexPath(Path file) {
+        return file.resolveSibling(file.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Indicates if a file in a charset can be indexed.
+     * @return true if '\n' is encoded as itself, so the blocks can be split on bytes.
+     */
+    static boolean canIndex(Charset charset) {
+        return Arrays.equals("\n".getBytes(charset), new byte[] {'\n'});
+    }
+
+    /**
+     * Get the number of blocks of the file.
+     */
+    int getBlockCount() {
+        return blocks.length - 1;
+    }
+
+    /**
+     * Open the index of a file.
+     * @param file      The indexed file.
+     * @param channel   The file, opened.
+     * @param charset   The charset of the search.
+     * @return          The index, or null if there is none, or if it is
+     *                  stale, corrupted or built for another charset.
+     */
+    static TrigramIndex open(Path file, FileChannel channel, Charset charset) throws IOException {
+        long size = channel.size();
+        long modified;
+        ByteBuffer buffer;
+        try {
+            modified = Files.getLastModifiedTime(file).toMillis();
+            RandomAccessFile index = new RandomAccessFile(getIndexPath(file).toFile(), "r");
+            try {
+                buffer = index.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, index.length());
+            } finally {
+                index.close();
+            }
+        } catch(NoSuchFileException ex) {
+            return null;
+        } catch(FileNotFoundException ex) {
+            return null;
+        }
+        try {
+            if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != size || buffer.getLong() != modified) {
+                return null;
+            }
+            byte[] name = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(name);
+            if(!charset.name().equals(new String(name, StandardCharsets.US_ASCII))) {
+                return null;
+            }
+            long[] blocks = new long[buffer.getInt() + 1];
+            for(int i=0; i<blocks.length; i++) {
+                blocks[i] = buffer.getLong();
+            }
+            return new TrigramIndex(buffer, blocks);
+        } catch(RuntimeException ex) {
+            // Truncated or not an index
+            return null;
+        }
+    }
+
+    /**
+     * Build the index of a file, replacing its previous index.
+     * @param file      The file.
+     * @param channel   The file, opened.
+     * @param charset   The charset of the file, see {@link #canIndex(Charset)}.
+     * @return          The index.
+     */
+    static TrigramIndex build(Path file, FileChannel channel, Charset charset) throws IOException {
+        // Read before the content, so a change during the build makes the index stale
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        long size = channel.size();
+        long blockSize = Math.max(MIN_BLOCK_SIZE, (size + MAX_BLOCKS - 1) / MAX_BLOCKS);
+        long[] blocks = new long[MAX_BLOCKS + 1];
+        int blockCount = 0;
+        for(long start = 0; start < size; blockCount++) {
+            start = size - start <= blockSize ? size : ChunkedFileSearch.nextLine(channel, start + blockSize, size);
+            blocks[blockCount + 1] = start;
+        }
+        blocks = Arrays.copyOf(blocks, blockCount + 1);
+
+        BitSet[] buckets = new BitSet[BUCKETS];
+        int[] lastBlocks = new int[BUCKETS];
+        for(int block=0; block<blockCount; block++) {
+            MappedLineReader reader = new MappedLineReader(channel, charset, blocks[block], blocks[block + 1]);
+            String line;
+            while((line = reader.readLine()) != null) {
+                long trigram = 0;
+                for(int i=0; i<line.length(); i++) {
+                    trigram = (trigram << 16 | LiteralMatcher.fold(line.charAt(i))) & 0xFFFFFFFFFFFFL;
+                    if(i >= 2) {
+                        int bucket = bucket(trigram);
+                        // Marks the blocks from 1, the array being initialized with 0
+                        if(lastBlocks[bucket] != block + 1) {
+                            lastBlocks[bucket] = block + 1;
+                            if(buckets[bucket] == null) {
+                                buckets[bucket] = new BitSet(blockCount);
+                            }
+                            buckets[bucket].set(block);
+                        }
+                    }
+                }
+            }
+        }
+
+        Path path = getIndexPath(file);
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(size);
+            out.writeLong(modified);
+            out.writeUTF(charset.name());
+            out.writeInt(blockCount);
+            for(long block : blocks) {
+                out.writeLong(block);
+            }
+            byte[][] postings = new byte[BUCKETS][];
+            int offset = 0;
+            for(int bucket=0; bucket<BUCKETS; bucket++) {
+                out.writeInt(offset);
+                postings[bucket] = encode(buckets[bucket], blockCount);
+                offset += postings[bucket].length;
+            }
+            out.writeInt(offset);
+            for(byte[] posting : postings) {
+                out.write(posting);
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(file, channel, charset);
+    }
+
+    /**
+     * Find the parts of the file which can contain a line matching literals.
+     * @param alternatives  The literals: a line can match when it contains
+     *                      all the literals of one of the alternatives.
+     * @param maxRange      Size above which the adjacent blocks are not merged.
+     * @return              The positions of the start and the end of the
+     *                      parts, in sequence.
+     */
+    long[] getCandidates(List<String[]> alternatives, long maxRange) {
+        int blockCount = getBlockCount();
+        BitSet candidates = new BitSet(blockCount);
+        for(String[] literals : alternatives) {
+            BitSet blocks = new BitSet(blockCount);
+            blocks.set(0, blockCount);
+            for(String literal : literals) {
+                long trigram = 0;
+                for(int i=0; i<literal.length() && !blocks.isEmpty(); i++) {
+                    trigram = (trigram << 16 | LiteralMatcher.fold(literal.charAt(i))) & 0xFFFFFFFFFFFFL;
+                    if(i >= 2) {
+                        blocks.and(decode(bucket(trigram)));
+                    }
+                }
+            }
+            candidates.or(blocks);
+        }
+
+        long[] ranges = new long[2 * candidates.cardinality()];
+        int count = 0;
+        for(int block = candidates.nextSetBit(0); block >= 0; block = candidates.nextSetBit(block + 1)) {
+            if(count > 0 && ranges[count - 1] == blocks[block] && ranges[count - 1] - ranges[count - 2] < maxRange) {
+                ranges[count - 1] = blocks[block + 1];
+            } else {
+                ranges[count++] = blocks[block];
+                ranges[count++] = blocks[block + 1];
+            }
+        }
+        return Arrays.copyOf(ranges, count);
+    }
+
+    private static int bucket(long trigram) {
+        return (int) ((trigram * 0x9E3779B97F4A7C15L) >>> 48);
+    }
+
+    private static byte[] encode(BitSet blocks, int blockCount) {
+        if(blocks == null) {
+            return new byte[0];
+        }
+        // Gaps between the blocks, 7 bits per byte
+        ByteBuffer list = ByteBuffer.allocate(1 + 5 * blocks.cardinality());
+        list.put(LIST);
+        int previous = -1;
+        for(int block = blocks.nextSetBit(0); block >= 0; block = blocks.nextSetBit(block + 1)) {
+            int gap = block - previous;
+            previous = block;
+            while(gap >= 0x80) {
+                list.put((byte) (gap | 0x80));
+                gap >>>= 7;
+            }
+            list.put((byte) gap);
+        }
+        byte[] bits = blocks.toByteArray();
+        if(list.position() <= 1 + bits.length) {
+            return Arrays.copyOf(list.array(), list.position());
+        }
+        byte[] posting = new byte[1 + bits.length];
+        posting[0] = BITS;
+        System.arraycopy(bits, 0, posting, 1, bits.length);
+        return posting;
+    }
+
+    private BitSet decode(int bucket) {
+        int start = postings + buffer.getInt(table + 4 * bucket);
+        int end = postings + buffer.getInt(table + 4 * (bucket + 1));
+        BitSet blocks = new BitSet(getBlockCount());
+        if(start == end) {
+            return blocks;
+        }
+        ByteBuffer posting = buffer.duplicate();
+        posting.limit(end);
+        posting.position(start + 1);
+        if(buffer.get(start) == BITS) {
+            return BitSet.valueOf(posting);
+        }
+        int block = -1;
+        while(posting.hasRemaining()) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = posting.get();
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while(b < 0);
+            block += gap;
+            blocks.set(block);
+        }
+        return blocks;
+    }
+
+}
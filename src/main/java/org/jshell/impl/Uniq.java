@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import org.jshell.AbstractShellCommand;
+import org.jshell.ArgumentsList;
+import org.jshell.BytePipe;
+import org.jshell.ByteShellCommand;
+import org.jshell.Idempotent;
+import org.jshell.ShellBuffer;
+import org.jshell.ShellIO;
+
+/**
+ * Prints the lines of the input, omitting the repeated ones. Only the
+ * previous line is kept: the repeated lines must follow each other, as in a
+ * sorted input.
+ *
+ * @author Fabien Barbero
+ */
+@Idempotent
+public class Uniq extends AbstractShellCommand implements ByteShellCommand {
+
+    private static final String COUNT_ARGUMENT = "-c";
+    private static final String REPEATED_ARGUMENT = "-d";
+
+    public Uniq() {
+        super("uniq");
+    }
+
+    @Override
+    protected String getHelpMessage() {
+        return "Prints the lines of the input, omitting the repeated ones\n"
+                + "  -c                  prefixes the lines by their number of occurrences\n"
+                + "  -d                  prints only the repeated lines";
+    }
+
+    @Override
+    protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+        if(inputBuffer == null) {
+            handler.println("No input to filter");
+            return;
+        }
+        boolean count = args.containsArgument(COUNT_ARGUMENT);
+        boolean repeated = args.containsArgument(REPEATED_ARGUMENT);
+        Iterator<String> it = inputBuffer.getContent();
+        String previous = null;
+        long occurrences = 0;
+        while(!handler.isClosed() && it.hasNext()) {
+            String line = it.next();
+            if(line.equals(previous)) {
+                occurrences++;
+                continue;
+            }
+            if(previous != null && (!repeated || occurrences > 1)) {
+                handler.println(count ? prefix(occurrences) + previous : previous);
+            }
+            previous = line;
+            occurrences = 1;
+        }
+        if(previous != null && (!repeated || occurrences > 1) && !handler.isClosed()) {
+            handler.println(count ? prefix(occurrences) + previous : previous);
+        }
+    }
+
+    @Override
+    public void executeBytes(ArgumentsList args, ShellBuffer inputBuffer, BytePipe input, BytePipe output, ShellIO handler) throws Exception {
+        if(printHelp(args, handler)) {
+            return;
+        }
+        if(input == null) {
+            executeCommand(args, inputBuffer, handler);
+            return;
+        }
+        boolean count = args.containsArgument(COUNT_ARGUMENT);
+        boolean repeated = args.containsArgument(REPEATED_ARGUMENT);
+        ByteBuffer previous = null;
+        ByteBuffer prefixed = null;
+        long occurrences = 0;
+        ByteBuffer line;
+        while(!output.isClosed() && (line = input.readLine()) != null) {
+            if(line.equals(previous)) {
+                occurrences++;
+                continue;
+            }
+            if(previous != null && (!repeated || occurrences > 1)) {
+                prefixed = write(previous, count, occurrences, prefixed, output);
+            }
+            previous = copy(line, previous, 0);
+            occurrences = 1;
+        }
+        if(previous != null && (!repeated || occurrences > 1) && !output.isClosed()) {
+            write(previous, count, occurrences, prefixed, output);
+        }
+    }
+
+    /**
+     * Write a line, with its count if asked.
+     * @return The buffer to reuse for the next prefixed line.
+     */
+    private static ByteBuffer write(ByteBuffer line, boolean count, long occurrences, ByteBuffer buffer, BytePipe output) {
+        if(!count) {
+            output.write(line);
+            return buffer;
+        }
+        byte[] prefix = prefix(occurrences).getBytes(StandardCharsets.US_ASCII);
+        buffer = copy(line, buffer, prefix.length);
+        buffer.duplicate().put(prefix);
+        output.write(buffer);
+        return buffer;
+    }
+
+    /**
+     * Copy a line in a buffer, after some free bytes. The buffer is reused when
+     * it is large enough.
+     */
+    private static ByteBuffer copy(ByteBuffer line, ByteBuffer buffer, int offset) {
+        int size = offset + line.remaining();
+        if(buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(Math.max(size, 256));
+        }
+        buffer.clear();
+        buffer.position(offset);
+        buffer.put(line.duplicate());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static String prefix(long occurrences) {
+        return String.format("%7d ", occurrences);
+    }
+
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.jshell.ArgumentsList;
+import org.jshell.CommandFailedException;
+import org.jshell.Idempotent;
+import org.jshell.ShellIO;
+
+/**
+ * Prints the rows of a delimited input matching conditions. Each condition
+ * is evaluated on a whole batch of rows, reducing the selection of the rows
+ * matching the previous conditions: a column is parsed once per batch.
+ *
+ * @author Fabien Barbero
+ */
+@Idempotent
+public class Where extends CsvCommand {
+
+    private static final List<String> OPERATORS = Arrays.asList("=", "!=", "<", "<=", ">", ">=", "~");
+    private static final int EQUAL = 0;
+    private static final int NOT_EQUAL = 1;
+    private static final int LESS = 2;
+    private static final int LESS_OR_EQUAL = 3;
+    private static final int GREATER = 4;
+    private static final int GREATER_OR_EQUAL = 5;
+    private static final int CONTAINS = 6;
+
+    public Where() {
+        super("where");
+    }
+
+    @Override
+    protected String getHelpMessage() {
+        return "Prints the rows of a delimited input, whose first line names the columns,\n"
+                + "matching all the conditions\n"
+                + "  where COLUMN OP VALUE...\n"
+                + "                      OP is =, !=, <, <=, >, >= or ~ (contains); the fields\n"
+                + "                      are compared as numbers when VALUE is a number\n"
+                + DELIMITER_HELP;
+    }
+
+    @Override
+    protected void query(ArgumentsList args, byte delimiter, ByteBuffer header, List<String> columns, Lines lines,
+            ShellIO handler) throws Exception {
+        List<String> operands = args.getOperands(DELIMITER_ARGUMENT);
+        if(operands.isEmpty() || operands.size() % 3 != 0) {
+            throw new CommandFailedException("Invalid conditions, expected: COLUMN OP VALUE...");
+        }
+        Condition[] conditions = new Condition[operands.size() / 3];
+        for(int i=0; i<conditions.length; i++) {
+            int[] column = getColumns(columns, operands.subList(3 * i, 3 * i + 1));
+            int operator = OPERATORS.indexOf(operands.get(3 * i + 1));
+            if(operator < 0) {
+                throw new CommandFailedException("Unknown operator: " + operands.get(3 * i + 1));
+            }
+            conditions[i] = new Condition(column[0], operator, operands.get(3 * i + 2));
+        }
+        lines.write(header);
+
+        CsvBatch batch = new CsvBatch(columns.size(), delimiter);
+        int[] selection = new int[CsvBatch.MAX_ROWS];
+        Numbers numbers = new Numbers();
+        ByteBuffer line = null;
+        while(lines.read(batch)) {
+            int selected = batch.getRowCount();
+            for(int row=0; row<selected; row++) {
+                selection[row] = row;
+            }
+            for(int i=0; i<conditions.length && selected > 0; i++) {
+                selected = conditions[i].filter(batch, selection, selected, numbers);
+            }
+            for(int i=0; i<selected; i++) {
+                line = batch.getLine(selection[i], line);
+                lines.write(line);
+            }
+        }
+    }
+
+    /**
+     * The numbers of a column of a batch.
+     */
+    private static final class Numbers {
+
+        private final long[] integers = new long[CsvBatch.MAX_ROWS];
+        private final double[] decimals = new double[CsvBatch.MAX_ROWS];
+        private final byte[] kinds = new byte[CsvBatch.MAX_ROWS];
+    }
+
+    private static final class Condition {
+
+        private final int column;
+        private final int operator;
+        private final byte[] value;
+        /** Kind of the value when it is a number, parsed in the arrays below. */
+        private final byte kind;
+        private final long[] integer = new long[1];
+        private final double[] decimal = new double[1];
+
+        Condition(int column, int operator, String value) {
+            this.column = column;
+            this.operator = operator;
+            this.value = value.getBytes(StandardCharsets.UTF_8);
+            this.kind = operator == CONTAINS ? CsvBatch.NOT_A_NUMBER
+                    : CsvBatch.parseNumber(this.value, 0, this.value.length, integer, decimal, 0);
+        }
+
+        /**
+         * Keep the selected rows matching the condition.
+         * @return The number of rows kept, at the start of the selection.
+         */
+        int filter(CsvBatch batch, int[] selection, int selected, Numbers numbers) {
+            int kept = 0;
+            if(kind != CsvBatch.NOT_A_NUMBER) {
+                batch.getNumbers(column, numbers.integers, numbers.decimals, numbers.kinds);
+                for(int i=0; i<selected; i++) {
+                    int row = selection[i];
+                    byte rowKind = numbers.kinds[row];
+                    if(rowKind != CsvBatch.NOT_A_NUMBER && test(compare(rowKind, numbers.integers[row], numbers.decimals[row]))) {
+                        selection[kept++] = row;
+                    }
+                }
+            } else if(operator == CONTAINS) {
+                for(int i=0; i<selected; i++) {
+                    if(batch.contains(selection[i], column, value)) {
+                        selection[kept++] = selection[i];
+                    }
+                }
+            } else {
+                for(int i=0; i<selected; i++) {
+                    if(test(batch.compare(selection[i], column, value))) {
+                        selection[kept++] = selection[i];
+                    }
+                }
+            }
+            return kept;
+        }
+
+        /**
+         * Compare a number with the value, exactly when one of them is an
+         * integer.
+         */
+        private int compare(byte rowKind, long rowInteger, double rowDecimal) {
+            if(rowKind == CsvBatch.INTEGER) {
+                if(kind == CsvBatch.INTEGER) {
+                    return rowInteger < integer[0] ? -1 : rowInteger > integer[0] ? 1 : 0;
+                }
+                return CsvBatch.compare(rowInteger, decimal[0]);
+            }
+            if(kind == CsvBatch.INTEGER) {
+                return -CsvBatch.compare(integer[0], rowDecimal);
+            }
+            return rowDecimal < decimal[0] ? -1 : rowDecimal > decimal[0] ? 1 : 0;
+        }
+
+        private boolean test(int comparison) {
+            switch(operator) {
+                case EQUAL:
+                    return comparison == 0;
+                case NOT_EQUAL:
+                    return comparison != 0;
+                case LESS:
+                    return comparison < 0;
+                case LESS_OR_EQUAL:
+                    return comparison <= 0;
+                case GREATER:
+                    return comparison > 0;
+                case GREATER_OR_EQUAL:
+                    return comparison >= 0;
+                default:
+                    throw new IllegalStateException("Not a comparison: " + OPERATORS.get(operator));
+            }
+        }
+    }
+
+}
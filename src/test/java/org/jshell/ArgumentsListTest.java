@@ -21,6 +21,7 @@
  */
 package org.jshell;
 
+import java.util.Arrays;
 import org.junit.Test;
 import static junit.framework.Assert.*;
 
@@ -45,4 +46,11 @@ public class ArgumentsListTest {
         assertNull(list.getNextArgumentValue("aux"));
     }
 
+    @Test
+    public void testOperands() {
+        ArgumentsList list = new ArgumentsList("-v", "-m", "2", "error", "-c", "app.log");
+        assertEquals(Arrays.asList("error", "app.log"), list.getOperands("-m"));
+        assertEquals(Arrays.asList("2", "error", "app.log"), list.getOperands());
+    }
+
 }
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class BytePipeTest {
+
+    @Test
+    public void testLines() throws Exception {
+        final BytePipe pipe = new BytePipe(2);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> sum = executor.submit(new Callable<Long>() {
+
+                @Override
+                public Long call() throws Exception {
+                    long sum = 0;
+                    ByteBuffer line;
+                    while((line = pipe.readLine()) != null) {
+                        sum += Long.parseLong(decode(line));
+                    }
+                    return sum;
+                }
+            });
+            for(int i=0; i<100000; i++) {
+                pipe.write(encode(Integer.toString(i)));
+            }
+            pipe.close();
+            assertEquals(4999950000L, sum.get(5, TimeUnit.SECONDS).longValue());
+            assertEquals(100000, pipe.getReadLineCount());
+            assertEquals(pipe.getWrittenByteCount(), pipe.getReadByteCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPause() throws Exception {
+        final BytePipe pipe = new BytePipe(2);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Written before the consumer waits, and never flushed
+            pipe.write(encode("first"));
+            Callable<String> read = new Callable<String>() {
+
+                @Override
+                public String call() throws Exception {
+                    return decode(pipe.readLine());
+                }
+            };
+            assertEquals("first", executor.submit(read).get(5, TimeUnit.SECONDS));
+
+            // Written while the consumer waits
+            Future<String> second = executor.submit(read);
+            Thread.sleep(100);
+            pipe.write(encode("second"));
+            assertEquals("second", second.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ByteBuffer encode(String line) {
+        return ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(ByteBuffer line) {
+        return StandardCharsets.UTF_8.decode(line.duplicate()).toString();
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class CommandLineParserTest {
+
+    @Test
+    public void testPipeline() {
+        CommandLineParser parser = new CommandLineParser();
+
+        List<ParsedCommand> commands = parser.parse("cat app.log | grep \"a | b\" |grep 'x\\y'").getCommands();
+        assertEquals(3, commands.size());
+        assertTrue(Arrays.equals(new String[] {"cat", "app.log"}, commands.get(0).getWords()));
+        assertTrue(Arrays.equals(new String[] {"grep", "a | b"}, commands.get(1).getWords()));
+        assertTrue(Arrays.equals(new String[] {"grep", "x\\y"}, commands.get(2).getWords()));
+
+        commands = parser.parse("grep a\\ b\\| \"say \\\"hi\\\"\" \"\"").getCommands();
+        assertEquals(1, commands.size());
+        assertTrue(Arrays.equals(new String[] {"grep", "a b|", "say \"hi\"", ""}, commands.get(0).getWords()));
+
+        assertTrue(parser.parse("   ").isEmpty());
+    }
+
+    @Test
+    public void testBackground() {
+        CommandLineParser parser = new CommandLineParser();
+        ParsedPipeline pipeline = parser.parse("cat a | grep b& ");
+        assertTrue(pipeline.isBackground());
+        assertEquals(2, pipeline.getCommands().size());
+        assertTrue(Arrays.equals(new String[] {"grep", "b"}, pipeline.getCommands().get(1).getWords()));
+
+        pipeline = parser.parse("grep '&' \\&");
+        assertFalse(pipeline.isBackground());
+        assertTrue(Arrays.equals(new String[] {"grep", "&", "&"}, pipeline.getCommands().get(0).getWords()));
+    }
+
+    @Test
+    public void testTime() {
+        CommandLineParser parser = new CommandLineParser();
+        ParsedPipeline pipeline = parser.parse("time cat a | grep b");
+        assertTrue(pipeline.isTimed());
+        assertTrue(Arrays.equals(new String[] {"cat", "a"}, pipeline.getCommands().get(0).getWords()));
+        assertFalse(parser.parse("cat time").isTimed());
+        assertFalse(parser.parse("time").isTimed());
+    }
+
+    @Test
+    public void testCache() {
+        CommandLineParser parser = new CommandLineParser(1);
+        ParsedPipeline pipeline = parser.parse("cat a | grep b");
+        assertSame(pipeline, parser.parse("cat a | grep b"));
+        parser.parse("cat c");
+        assertNotSame(pipeline, parser.parse("cat a | grep b"));
+    }
+
+    @Test
+    public void testErrors() {
+        CommandLineParser parser = new CommandLineParser();
+        for(String line : new String[] {"cat \"a", "cat 'a", "| grep a", "cat a |", "cat a || grep b", "&", "cat a & grep b", "cat a | & "}) {
+            try {
+                parser.parse(line);
+                fail(line);
+            } catch(IllegalArgumentException ex) {
+                // Expected
+            }
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jshell.impl.StandardCommands;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class CommandRegistryTest {
+
+    public static final class LazyCommand extends AbstractShellCommand {
+
+        static int created;
+
+        public LazyCommand() {
+            super("lazy");
+            created++;
+        }
+
+        @Override
+        protected String getHelpMessage() {
+            return "Lazy";
+        }
+
+        @Override
+        protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+        }
+    }
+
+    @Test
+    public void testDiscoveredCommand() {
+        CommandRegistry registry = new CommandRegistry();
+        registry.register(new CommandDescriptor("lazy", "Lazy command", LazyCommand.class.getName(), "l"), getClass().getClassLoader());
+        int created = LazyCommand.created;
+
+        assertEquals("Lazy command", registry.getDescriptions().get("lazy"));
+        assertEquals(created, LazyCommand.created);
+
+        ShellCommand command = registry.find("l");
+        assertTrue(command instanceof LazyCommand);
+        assertSame(command, registry.find("lazy"));
+        assertEquals(created + 1, LazyCommand.created);
+    }
+
+    @Test
+    public void testRegister() {
+        CommandRegistry registry = new CommandRegistry();
+        registry.register(new CommandDescriptor("lazy", "Lazy command", LazyCommand.class.getName()), getClass().getClassLoader());
+        ShellCommand first = new LazyCommand();
+        ShellCommand second = new LazyCommand();
+        registry.register(first);
+        assertSame(first, registry.find("lazy"));
+
+        // A command only unregisters itself
+        registry.register(second);
+        registry.unregister(first);
+        assertSame(second, registry.find("lazy"));
+        registry.unregister(second);
+        assertNotSame(second, registry.find("lazy"));
+        assertTrue(registry.find("lazy") instanceof LazyCommand);
+    }
+
+    @Test
+    public void testHotRegistration() throws Exception {
+        final CommandRegistry registry = new CommandRegistry();
+        final ShellCommand command = new LazyCommand();
+        registry.register(command);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicInteger missed = new AtomicInteger();
+        Thread reader = new Thread() {
+
+            @Override
+            public void run() {
+                while(running.get()) {
+                    if(registry.find("lazy") != command) {
+                        missed.incrementAndGet();
+                    }
+                }
+            }
+        };
+        reader.start();
+        try {
+            for(int i=0; i<10000; i++) {
+                registry.registerAlias("l" + i, "lazy");
+                assertSame(command, registry.find("l" + i));
+                registry.unregisterAlias("l" + i);
+                assertNull(registry.find("l" + i));
+            }
+        } finally {
+            running.set(false);
+            reader.join();
+        }
+        assertEquals(0, missed.get());
+    }
+
+    @Test
+    public void testStandardAlias() {
+        CommandRegistry registry = new CommandRegistry();
+        for(CommandDescriptor descriptor : new StandardCommands().getCommands()) {
+            registry.register(descriptor, getClass().getClassLoader());
+        }
+        assertEquals("head", registry.find("limit").name());
+    }
+
+    @Test
+    public void testInvalidDescriptor() {
+        CommandRegistry registry = new CommandRegistry();
+        registry.register(new CommandDescriptor("missing", null, "org.jshell.Missing", "m"), getClass().getClassLoader());
+        assertNull(registry.find("missing"));
+        assertNull(registry.find("m"));
+        assertEquals("Can not create the command missing (org.jshell.Missing): java.lang.ClassNotFoundException: org.jshell.Missing",
+                registry.getError("m"));
+        assertNull(registry.getError("lazy"));
+    }
+
+}
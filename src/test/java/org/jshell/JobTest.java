@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.jshell.impl.Exit;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class JobTest {
+
+    @Test
+    public void testExit() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            Pipeline pipeline = new Pipeline();
+            pipeline.add(new Exit(), new ArgumentsList("3"));
+            Job job = new Job(1, "exit 3 &", pipeline, executor, 100);
+            job.start(executor);
+            job.waitFor();
+            assertEquals(Job.State.DONE, job.getState());
+            assertEquals(1, job.getLineCount());
+
+            ShellIO output = new ShellIO((LineInput) null);
+            job.report(output);
+            output.getBuffer().close();
+            assertEquals("Can not exit the shell from a background job", output.getBuffer().getContent().next());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class LineStoreTest {
+
+    private static final int LINES = 100000;
+
+    private static String line(int i) {
+        return i % 1000 == 0 ? "" : "line " + i + " é€😀";
+    }
+
+    @Test
+    public void testMemory() {
+        LineStore store = new LineStore();
+        fill(store);
+        assertFalse(store.isSpilled());
+        check(store);
+        store.close();
+    }
+
+    @Test
+    public void testSpill() {
+        LineStore store = new LineStore(LineStore.CHUNK_SIZE, true);
+        fill(store);
+        char[] large = new char[LineStore.CHUNK_SIZE * 2];
+        Arrays.fill(large, 'x');
+        store.add(new String(large));
+        assertTrue(store.isSpilled());
+
+        Iterator<String> it = check(store);
+        assertEquals(large.length, it.next().length());
+        assertFalse(it.hasNext());
+
+        Iterator<ByteBuffer> bytes = store.byteIterator();
+        ByteBuffer first = bytes.next();
+        assertEquals(0, first.remaining());
+        ByteBuffer second = bytes.next();
+        assertEquals(line(1), StandardCharsets.UTF_8.decode(second).toString());
+        store.close();
+    }
+
+    @Test
+    public void testSpillAll() {
+        LineStore store = new LineStore();
+        fill(store);
+        store.spill();
+        assertTrue(store.isSpilled());
+        store.add("last");
+        Iterator<String> it = check(store);
+        assertEquals("last", it.next());
+        assertFalse(it.hasNext());
+        store.close();
+    }
+
+    private static void fill(LineStore store) {
+        for(int i=0; i<LINES; i++) {
+            store.add(line(i));
+        }
+        assertEquals(LINES, store.getLineCount());
+    }
+
+    private static Iterator<String> check(LineStore store) {
+        Iterator<String> it = store.iterator();
+        for(int i=0; i<LINES; i++) {
+            assertEquals(line(i), it.next());
+        }
+        return it;
+    }
+
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class OutputRetentionTest {
+
+    @Test
+    public void testLastLines() throws Exception {
+        OutputRetention retention = OutputRetention.lastLines(2);
+        for(String line : new String[] {"a", "b", "c"}) {
+            retention.retain(line);
+        }
+        assertEquals(Arrays.asList("b", "c"), retention.getLines());
+        assertEquals(2, retention.getLineCount());
+        assertEquals(4, retention.getByteCount());
+    }
+
+    @Test
+    public void testLastBytes() throws Exception {
+        OutputRetention retention = OutputRetention.lastBytes(6);
+        for(String line : new String[] {"ab", "cd", "\u00e9"}) {
+            retention.retain(line);
+        }
+        assertEquals(Arrays.asList("cd", "\u00e9"), retention.getLines());
+        assertEquals(6, retention.getByteCount());
+
+        // Larger than the whole budget
+        retention.retain("too long");
+        assertEquals(Arrays.asList("cd", "\u00e9"), retention.getLines());
+    }
+
+    @Test
+    public void testTempFile() throws Exception {
+        OutputRetention retention = OutputRetention.tempFile();
+        for(int i=0; i<10000; i++) {
+            retention.retain("line " + i);
+        }
+        assertEquals(10000, retention.getLines().size());
+        assertEquals("line 9999", retention.getLines().get(9999));
+        assertEquals(Collections.emptyList(), OutputRetention.none().getLines());
+    }
+
+}
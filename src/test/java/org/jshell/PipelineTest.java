@@ -0,0 +1,393 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.jshell.impl.Cat;
+import org.jshell.impl.Find;
+import org.jshell.impl.Grep;
+import org.jshell.impl.GroupBy;
+import org.jshell.impl.Head;
+import org.jshell.impl.Select;
+import org.jshell.impl.Tail;
+import org.jshell.impl.Where;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class PipelineTest {
+
+    private static ExecutorService executor;
+    private static File file;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        file = File.createTempFile("pipeline", ".txt");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+        try {
+            for(int i=0; i<100000; i++) {
+                writer.write("line " + i + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        executor.shutdownNow();
+        file.delete();
+    }
+
+    @Test
+    public void testCatTail() throws Exception {
+        Pipeline pipeline = new Pipeline();
+        pipeline.add(new Cat(), new ArgumentsList(file.getPath()));
+        pipeline.add(new Tail(), new ArgumentsList("-n", "2"));
+        assertEquals(Arrays.asList("line 99998", "line 99999"), execute(pipeline));
+
+        pipeline = new Pipeline();
+        pipeline.add(new Cat(), new ArgumentsList(file.getPath()));
+        pipeline.add(new Grep(), new ArgumentsList("99"));
+        pipeline.add(new Tail(), new ArgumentsList());
+        List<String> lines = execute(pipeline);
+        assertEquals(10, lines.size());
+        assertEquals("line 99990", lines.get(0));
+        assertEquals("line 99999", lines.get(9));
+
+        pipeline = new Pipeline();
+        pipeline.add(new Cat(), new ArgumentsList(file.getPath()));
+        pipeline.add(new Tail(), new ArgumentsList("-n", "0"));
+        assertTrue(execute(pipeline).isEmpty());
+    }
+
+    @Test
+    public void testHead() throws Exception {
+        Pipeline pipeline = new Pipeline();
+        pipeline.add(new Cat(), new ArgumentsList(file.getPath()));
+        pipeline.add(new Head(), new ArgumentsList("-n", "2"));
+        assertEquals(Arrays.asList("line 0", "line 1"), execute(pipeline));
+
+        // The number of lines given before the files
+        pipeline = new Pipeline();
+        pipeline.add(new Head(), new ArgumentsList("3", file.getPath()));
+        assertEquals(Arrays.asList("line 0", "line 1", "line 2"), execute(pipeline));
+        pipeline = new Pipeline();
+        pipeline.add(new Cat(), new ArgumentsList(file.getPath()));
+        pipeline.add(new Tail(), new ArgumentsList("1"));
+        assertEquals(Arrays.asList("line 99999"), execute(pipeline));
+
+        pipeline = new Pipeline();
+        pipeline.add(new Head(), new ArgumentsList("3", file.getPath() + ".missing"));
+        ShellIO output = new ShellIO((LineInput) null);
+        assertFalse(pipeline.execute(executor, null, output, 1000));
+        output.getBuffer().close();
+        assertTrue(output.getBuffer().getContent().next().startsWith("Can not read " + file.getPath() + ".missing"));
+
+        // The followed file never ends, head stops it
+        pipeline = new Pipeline();
+        pipeline.add(new Tail(), new ArgumentsList("-f", "-n", "3", file.getPath()));
+        pipeline.add(new Head(), new ArgumentsList("-n", "2"));
+        assertEquals(Arrays.asList("line 99997", "line 99998"), execute(pipeline));
+    }
+
+    @Test
+    public void testGrepChunks() throws Exception {
+        File large = File.createTempFile("pipeline", ".txt");
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(large), StandardCharsets.UTF_8);
+            try {
+                for(int i=0; i<1000000; i++) {
+                    writer.write("line " + i + "\n");
+                }
+            } finally {
+                writer.close();
+            }
+            assertTrue(large.length() > 8 * 1024 * 1024);
+
+            Pipeline pipeline = new Pipeline();
+            pipeline.add(new Grep(), new ArgumentsList("-c", "line", large.getPath()));
+            assertEquals(Arrays.asList("1000000"), execute(pipeline));
+
+            // The lines of the chunks are printed in the order of the file
+            List<String> expected = new ArrayList<String>();
+            for(int i=0; i<1000000; i++) {
+                if(Integer.toString(i).contains("77777")) {
+                    expected.add("line " + i);
+                }
+            }
+            pipeline = new Pipeline();
+            pipeline.add(new Grep(), new ArgumentsList("-j", "4", "77777", large.getPath()));
+            assertEquals(expected, execute(pipeline));
+
+            // Every line matches, the chunks wait for their parts to be printed
+            pipeline = new Pipeline();
+            pipeline.add(new Grep(), new ArgumentsList("-j", "4", "-v", "nothing", large.getPath()));
+            List<String> lines = execute(pipeline);
+            assertEquals(1000000, lines.size());
+            for(int i=0; i<lines.size(); i++) {
+                assertEquals("line " + i, lines.get(i));
+            }
+        } finally {
+            large.delete();
+        }
+    }
+
+    @Test
+    public void testFind() throws Exception {
+        File root = Files.createTempDirectory("pipeline").toFile();
+        List<File> created = new ArrayList<File>();
+        try {
+            List<String> expected = new ArrayList<String>();
+            File dir = root;
+            for(int depth=0; depth<10; depth++) {
+                dir = new File(dir, "d" + depth);
+                assertTrue(dir.mkdir());
+                created.add(dir);
+                for(int i=0; i<200; i++) {
+                    File child = new File(dir, "f" + i + ".txt");
+                    Files.write(child.toPath(), Arrays.asList(i == depth ? "needle" : "hay"), StandardCharsets.UTF_8);
+                    created.add(child);
+                    expected.add(child.getPath());
+                }
+            }
+            Collections.sort(expected);
+
+            Pipeline pipeline = new Pipeline();
+            pipeline.add(new Find(), new ArgumentsList(root.getPath(), "-type", "f"));
+            List<String> found = execute(pipeline);
+            Collections.sort(found);
+            assertEquals(expected, found);
+
+            pipeline = new Pipeline();
+            pipeline.add(new Find(), new ArgumentsList(root.getPath(), "-type", "d"));
+            assertEquals(11, execute(pipeline).size());
+
+            pipeline = new Pipeline();
+            pipeline.add(new Grep(), new ArgumentsList("-r", "needle", root.getPath()));
+            found = execute(pipeline);
+            Collections.sort(found);
+            assertEquals(10, found.size());
+            assertTrue(found.contains(new File(root, "d0/f0.txt").getPath() + ":needle"));
+        } finally {
+            Collections.reverse(created);
+            for(File child : created) {
+                child.delete();
+            }
+            root.delete();
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        ShellMetrics metrics = new ShellMetrics();
+        Pipeline pipeline = new Pipeline(metrics);
+        pipeline.add(new Cat(), new ArgumentsList(file.getPath()));
+        pipeline.add(new Grep(), new ArgumentsList("line 9999"));
+        assertEquals(11, execute(pipeline).size());
+
+        Map<String, CommandMetrics> commands = new HashMap<String, CommandMetrics>();
+        for(CommandMetrics command : metrics.getCommands()) {
+            commands.put(command.getCommand(), command);
+        }
+        assertEquals(1, commands.get("cat").getExecutions());
+        assertEquals(100000, commands.get("cat").getLinesOut());
+        assertEquals(100000, commands.get("grep").getLinesIn());
+        assertEquals(11, commands.get("grep").getLinesOut());
+        assertEquals(0, commands.get("grep").getFailures());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+        final ShellIO output = new SystemShellIO(null, OutputRetention.none(), new TerminalWriter(terminal));
+        final Pipeline pipeline = new Pipeline();
+        pipeline.add(new Cat(), new ArgumentsList(file.getPath()));
+        pipeline.add(new Grep(), new ArgumentsList("line"));
+        pipeline.add(new Tail(), new ArgumentsList("-f", file.getPath()));
+        Future<Boolean> execution = executor.submit(new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() throws Exception {
+                boolean succeeded = pipeline.execute(executor, null, output, 1000);
+                assertFalse(Thread.currentThread().isInterrupted());
+                output.println("after");
+                output.flush();
+                return succeeded;
+            }
+        });
+        Thread.sleep(200);
+        pipeline.cancel();
+        assertFalse(execution.get(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.isCancelled());
+        String printed = terminal.toString("UTF-8");
+        assertTrue(printed.startsWith("line 99990"));
+        assertTrue(printed.endsWith("after" + System.getProperty("line.separator")));
+    }
+
+    @Test
+    public void testCatTransfer() throws Exception {
+        File gzip = File.createTempFile("pipeline", ".txt.gz");
+        try {
+            byte[] content = Files.readAllBytes(file.toPath());
+            OutputStream out = new GZIPOutputStream(new FileOutputStream(gzip));
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+            ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+            TerminalWriter terminalWriter = new TerminalWriter(terminal);
+            ShellIO output = new SystemShellIO(null, OutputRetention.none(), terminalWriter);
+            String charset = terminalWriter.getCharset().name();
+
+            // The bytes are copied as is in the terminal
+            Pipeline pipeline = new Pipeline();
+            pipeline.add(new Cat(), new ArgumentsList("-charset", charset, file.getPath(), gzip.getPath()));
+            assertTrue(pipeline.execute(executor, null, output, 1000));
+            output.flush();
+            byte[] printed = terminal.toByteArray();
+            assertEquals(2 * content.length, printed.length);
+            assertTrue(Arrays.equals(content, Arrays.copyOfRange(printed, 0, content.length)));
+            assertTrue(Arrays.equals(content, Arrays.copyOfRange(printed, content.length, printed.length)));
+        } finally {
+            gzip.delete();
+        }
+    }
+
+    @Test
+    public void testCatRetained() throws Exception {
+        ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+        TerminalWriter terminalWriter = new TerminalWriter(terminal);
+        OutputRetention retention = OutputRetention.lastLines(2);
+        ShellIO output = new SystemShellIO(null, retention, terminalWriter);
+        String charset = terminalWriter.getCharset().name();
+
+        // The lines are printed one by one to be retained
+        Pipeline pipeline = new Pipeline();
+        pipeline.add(new Cat(), new ArgumentsList("-charset", charset, file.getPath()));
+        assertTrue(pipeline.execute(executor, null, output, 1000));
+        output.flush();
+        assertEquals(Arrays.asList("line 99998", "line 99999"), retention.getLines());
+        assertEquals(file.length(), terminal.size());
+    }
+
+    @Test
+    public void testCatCharset() throws Exception {
+        File latin = File.createTempFile("pipeline", ".txt");
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(latin), StandardCharsets.ISO_8859_1);
+            try {
+                writer.write("caf\u00e9\n");
+            } finally {
+                writer.close();
+            }
+            ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+            TerminalWriter terminalWriter = new TerminalWriter(terminal);
+            ShellIO output = new SystemShellIO(null, OutputRetention.none(), terminalWriter);
+            Pipeline pipeline = new Pipeline();
+            pipeline.add(new Cat(), new ArgumentsList("-charset", "ISO-8859-1", latin.getPath()));
+            assertTrue(pipeline.execute(executor, null, output, 1000));
+            output.flush();
+
+            // The lines are decoded, then encoded in the charset of the terminal
+            Charset charset = terminalWriter.getCharset();
+            String expected = "caf\u00e9" + System.getProperty("line.separator");
+            assertEquals(new String(expected.getBytes(charset), charset), terminal.toString(charset.name()));
+        } finally {
+            latin.delete();
+        }
+    }
+
+    @Test
+    public void testQueries() throws Exception {
+        Pipeline pipeline = new Pipeline();
+        pipeline.add(new Where(), new ArgumentsList("v", ">", "9007199254740992"));
+        assertEquals(Arrays.asList("k,v", "a,9007199254740993"), execute(pipeline, rows()));
+
+        pipeline = new Pipeline();
+        pipeline.add(new GroupBy(), new ArgumentsList("k", "sum(v)", "max(v)"));
+        assertEquals(Arrays.asList("k,sum(v),max(v)", "a,9007199254740994,9007199254740993", "b,3.5,2.0"), execute(pipeline, rows()));
+
+        pipeline = new Pipeline();
+        pipeline.add(new Cat(), new ArgumentsList(file.getPath()));
+        pipeline.add(new Select(), new ArgumentsList("nosuch"));
+        ShellIO output = new ShellIO((LineInput) null);
+        assertFalse(pipeline.execute(executor, null, output, 1000));
+        output.getBuffer().close();
+        assertEquals("Unknown column: nosuch", output.getBuffer().getContent().next());
+    }
+
+    private static ShellBuffer rows() {
+        ShellBuffer input = new ShellBuffer();
+        for(String line : new String[] {"k,v", "a,9007199254740993", "a,1", "b,1.5", "b,2"}) {
+            input.addLine(line);
+        }
+        input.close();
+        return input;
+    }
+
+    static List<String> execute(Pipeline pipeline) throws InterruptedException {
+        return execute(pipeline, null);
+    }
+
+    static List<String> execute(Pipeline pipeline, ShellBuffer input) throws InterruptedException {
+        ShellIO output = new ShellIO((LineInput) null);
+        pipeline.execute(executor, input, output, 1000);
+        output.getBuffer().close();
+        List<String> lines = new ArrayList<String>();
+        Iterator<String> it = output.getBuffer().getContent();
+        while(it.hasNext()) {
+            lines.add(it.next());
+        }
+        return lines;
+    }
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.jshell.impl.Cat;
+import org.jshell.impl.Grep;
+import org.jshell.impl.Tail;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class ResultCacheTest {
+
+    private static LineStore lines(String... values) {
+        LineStore store = new LineStore();
+        for(String value : values) {
+            store.add(value);
+        }
+        return store;
+    }
+
+    @Test
+    public void testEviction() {
+        ResultCache cache = new ResultCache(20);
+        cache.put("a", lines("aaaa", "aaaa"));
+        cache.put("b", lines("bbbb", "bbbb"));
+        ResultCache.Entry entry = cache.acquire("a");
+        assertNotNull(entry);
+        cache.release(entry);
+
+        // "b" is the least recently used
+        cache.put("c", lines("cccc", "cccc"));
+        assertNull(cache.acquire("b"));
+        entry = cache.acquire("a");
+        assertEquals(2, entry.getOutput().getLineCount());
+        cache.release(entry);
+
+        // Too large to be cached
+        cache.put("d", lines("dddddddddddddddddddddddd"));
+        assertNull(cache.acquire("d"));
+    }
+
+    @Test
+    public void testReadWhileRemoved() {
+        ResultCache cache = new ResultCache(100);
+        cache.put("a", lines("line"));
+        ResultCache.Entry entry = cache.acquire("a");
+        cache.clear();
+        // Still readable until released
+        assertEquals("line", entry.getOutput().iterator().next());
+        cache.release(entry);
+        assertNull(cache.acquire("a"));
+    }
+
+    @Test
+    public void testKey() {
+        StringBuilder key = new StringBuilder();
+        assertTrue(ResultCache.appendKey(key, new Tail(), new ArgumentsList("-n", "5")));
+        assertTrue(key.toString().contains("tail\0-n\0" + "5"));
+        // Following a file is not idempotent
+        assertFalse(ResultCache.appendKey(new StringBuilder(), new Tail(), new ArgumentsList("-f", "log")));
+    }
+
+    @Test
+    public void testTreeChanged() throws Exception {
+        final File root = Files.createTempDirectory("cache").toFile();
+        final File sub = new File(root, "sub");
+        assertTrue(sub.mkdir());
+        Files.write(new File(root, "a.log").toPath(), Arrays.asList("hello a"), StandardCharsets.UTF_8);
+        Files.write(new File(sub, "b.log").toPath(), Arrays.asList("hello b"), StandardCharsets.UTF_8);
+        final File added = new File(sub, "z.log");
+        try {
+            assertFalse(ResultCache.appendKey(new StringBuilder(), new Grep(), new ArgumentsList("-r", "hello", root.getPath())));
+            assertFalse(ResultCache.appendKey(new StringBuilder(), new Cat(), new ArgumentsList(root.getPath())));
+
+            final String line = "grep -r hello " + root.getPath();
+            LineInput input = new LineInput() {
+
+                private int read;
+
+                @Override
+                public String readLine() throws IOException {
+                    switch(read++) {
+                        case 0:
+                            return line;
+                        case 1:
+                            Files.write(added.toPath(), Arrays.asList("hello z"), StandardCharsets.UTF_8);
+                            return line;
+                        default:
+                            return null;
+                    }
+                }
+            };
+            Shell shell = new Shell();
+            shell.setPrompt("");
+            shell.registerCommand(new Grep());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            shell.interact(new SystemShellIO(input, OutputRetention.none(), new TerminalWriter(out)));
+
+            // The second search finds the added file
+            List<String> lines = Arrays.asList(out.toString("UTF-8").split(System.getProperty("line.separator")));
+            assertEquals(6, lines.size());
+            assertEquals("", lines.get(2));
+            List<String> second = new ArrayList<String>(lines.subList(3, 6));
+            Collections.sort(second);
+            assertEquals(Arrays.asList(
+                    new File(root, "a.log").getPath() + ":hello a",
+                    new File(sub, "b.log").getPath() + ":hello b",
+                    added.getPath() + ":hello z"), second);
+        } finally {
+            added.delete();
+            new File(sub, "b.log").delete();
+            sub.delete();
+            new File(root, "a.log").delete();
+            root.delete();
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.Iterator;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class ShellBufferTest {
+
+    @Test
+    public void testStreaming() throws Exception {
+        final ShellBuffer buffer = new ShellBuffer(2);
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for(int i=0; i<100; i++) {
+                    buffer.addLine("line " + i);
+                }
+                buffer.close();
+            }
+        };
+        producer.start();
+
+        Iterator<String> it = buffer.getContent();
+        for(int i=0; i<100; i++) {
+            assertTrue(it.hasNext());
+            assertEquals("line " + i, it.next());
+        }
+        assertFalse(it.hasNext());
+        producer.join();
+    }
+
+    @Test
+    public void testAbandon() {
+        ShellBuffer buffer = new ShellBuffer(2);
+        buffer.addLine("first");
+        buffer.abandon();
+        try {
+            buffer.addLine("second");
+            fail();
+        } catch(BrokenPipeException ex) {
+            // Expected
+        }
+    }
+
+}
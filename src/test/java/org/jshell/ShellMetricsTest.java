@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class ShellMetricsTest {
+
+    @Test
+    public void testRegistration() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ShellMetrics metrics = new ShellMetrics();
+        ObjectName name = metrics.getObjectName("cat");
+
+        // Not registered outside of a shell
+        metrics.record(new StageMetrics("cat", false, 1, 1, 0, 1, 1, 1, 1));
+        assertFalse(server.isRegistered(name));
+
+        metrics.open();
+        assertTrue(server.isRegistered(name));
+        assertEquals(1L, server.getAttribute(name, "Executions"));
+        metrics.open();
+        metrics.record(new StageMetrics("grep", false, 1, 1, 0, 1, 1, 1, 1));
+        assertTrue(server.isRegistered(metrics.getObjectName("grep")));
+
+        metrics.close();
+        assertTrue(server.isRegistered(name));
+        metrics.close();
+        assertFalse(server.isRegistered(name));
+        assertFalse(server.isRegistered(metrics.getObjectName("grep")));
+        assertEquals(2, metrics.getCommands().size());
+    }
+
+    @Test
+    public void testShellEnd() throws Exception {
+        Shell shell = new Shell();
+        shell.run(new StringReader("help"), new ByteArrayInputStream(new byte[0]),
+                new TerminalWriter(new ByteArrayOutputStream()));
+        assertEquals(1, shell.getMetrics().getCommands().size());
+        ObjectName name = shell.getMetrics().getObjectName("help");
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jshell.impl.Grep;
+import org.jshell.impl.Tail;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class ShellSessionTest {
+
+    @Test
+    public void testSessions() throws Exception {
+        Shell shell = new Shell();
+        shell.setPrompt("");
+        ShellServer server = shell.startServer(0);
+        List<Socket> sockets = new ArrayList<Socket>();
+        List<BufferedReader> readers = new ArrayList<BufferedReader>();
+        try {
+            for(int i=0; i<3; i++) {
+                Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                socket.setSoTimeout(5000);
+                sockets.add(socket);
+            }
+            for(int i=0; i<sockets.size(); i++) {
+                Socket socket = sockets.get(i);
+                socket.getOutputStream().write(("nosuch" + i + "\n").getBytes(StandardCharsets.UTF_8));
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                readers.add(reader);
+                assertEquals("No command found with name 'nosuch" + i + "'", reader.readLine());
+            }
+            assertEquals(3, server.getSessionCount());
+
+            // The sessions end with the server
+            server.close();
+            for(BufferedReader reader : readers) {
+                while(reader.readLine() != null) {
+                    // The empty line after the command
+                }
+            }
+        } finally {
+            server.close();
+            for(Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void testFollow() throws Exception {
+        File file = File.createTempFile("jshell", ".log");
+        file.deleteOnExit();
+        Files.write(file.toPath(), Arrays.asList("start", "line 1", "line 2"), StandardCharsets.UTF_8);
+
+        Shell shell = new Shell();
+        shell.setPrompt("");
+        shell.registerCommand(new Tail());
+        shell.registerCommand(new Grep());
+        ShellServer server = shell.startServer(0);
+        try {
+            Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+            try {
+                socket.setSoTimeout(5000);
+                OutputStream out = socket.getOutputStream();
+                out.write(("tail -f " + file.getAbsolutePath() + " | grep line\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+
+                // The command never ends, its output is sent while it runs
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                assertEquals("line 1", reader.readLine());
+                assertEquals("line 2", reader.readLine());
+            } finally {
+                socket.close();
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.jshell.impl.Grep;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class ShellTest {
+
+    private static final class SlowCommand extends AbstractShellCommand {
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        SlowCommand() {
+            super("slow");
+        }
+
+        @Override
+        protected String getHelpMessage() {
+            return "Slow";
+        }
+
+        @Override
+        protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+            Thread.sleep(200);
+            done.set(true);
+        }
+    }
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    @Test
+    public void testRun() throws Exception {
+        Shell shell = new Shell();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TerminalWriter terminal = new TerminalWriter(out);
+        assertEquals(Shell.EXIT_NOT_FOUND, run(shell, "# comment\n\nnosuch", "", terminal));
+        assertEquals("No command found with name 'nosuch'" + LINE_SEPARATOR, out.toString("US-ASCII"));
+
+        // The status of the last line
+        assertEquals(Shell.EXIT_SUCCESS, run(shell, "nosuch\nhelp", "", terminal));
+        assertEquals(Shell.EXIT_SYNTAX_ERROR, run(shell, "help | ", "", terminal));
+    }
+
+    @Test
+    public void testStandardInput() throws Exception {
+        Shell shell = new Shell();
+        shell.registerCommand(new Grep());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TerminalWriter terminal = new TerminalWriter(out);
+        String input = "caf\u00e9" + LINE_SEPARATOR + "tea" + LINE_SEPARATOR;
+        assertEquals(Shell.EXIT_SUCCESS, run(shell, "grep caf", input, terminal));
+
+        // Decoded and encoded with the charset of the terminal
+        Charset charset = terminal.getCharset();
+        assertEquals(new String(("caf\u00e9" + LINE_SEPARATOR).getBytes(charset), charset), out.toString(charset.name()));
+    }
+
+    @Test
+    public void testBackground() throws Exception {
+        Shell shell = new Shell();
+        SlowCommand slow = new SlowCommand();
+        shell.registerCommand(slow);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(Shell.EXIT_SUCCESS, run(shell, "slow &", "", new TerminalWriter(out)));
+        assertTrue(slow.done.get());
+        assertTrue(out.toString("US-ASCII").endsWith("Done\tslow &" + LINE_SEPARATOR));
+    }
+
+    private static int run(Shell shell, String script, String input, TerminalWriter terminal) throws IOException {
+        InputStream in = new ByteArrayInputStream(input.getBytes(terminal.getCharset()));
+        return shell.run(new StringReader(script), in, terminal);
+    }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class TerminalWriterTest {
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    @Test
+    public void testInterrupted() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TerminalWriter writer = new TerminalWriter(out);
+        Thread.currentThread().interrupt();
+        try {
+            writer.println("a");
+            writer.flush();
+        } finally {
+            Thread.interrupted();
+        }
+        writer.println("b");
+        writer.flush();
+        assertEquals("a" + LINE_SEPARATOR + "b" + LINE_SEPARATOR, out.toString("US-ASCII"));
+    }
+
+    @Test
+    public void testBatched() throws Exception {
+        final AtomicInteger writes = new AtomicInteger();
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                writes.incrementAndGet();
+                super.write(b, off, len);
+            }
+        };
+        TerminalWriter writer = new TerminalWriter(out);
+        for(int i=0; i<1000; i++) {
+            writer.println("line " + i);
+        }
+        writer.flush();
+        // Written by the final flush, or by the delayed flushes
+        assertTrue(writes.get() < 10);
+        assertTrue(out.toString("US-ASCII").endsWith("line 999" + LINE_SEPARATOR));
+    }
+
+    @Test
+    public void testFlushOnPrompt() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final List<String> displayed = new ArrayList<String>();
+        LineInput input = new LineInput() {
+
+            private int read;
+
+            @Override
+            public String readLine() throws IOException {
+                displayed.add(out.toString("US-ASCII"));
+                return read++ == 0 ? "nosuch" : null;
+            }
+        };
+        Shell shell = new Shell();
+        shell.setHeader("header");
+        shell.interact(new SystemShellIO(input, OutputRetention.none(), new TerminalWriter(out)));
+        assertEquals(2, displayed.size());
+        assertEquals("header" + LINE_SEPARATOR + LINE_SEPARATOR + "> ", displayed.get(0));
+        assertTrue(displayed.get(1).endsWith(LINE_SEPARATOR + "> "));
+    }
+
+    @Test
+    public void testDelayedFlush() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TerminalWriter writer = new TerminalWriter(out);
+        writer.print("a");
+        long end = System.currentTimeMillis() + 5000;
+        while(out.size() == 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(5);
+        }
+        assertEquals("a", out.toString("US-ASCII"));
+    }
+
+    @Test
+    public void testChannel() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TerminalWriter writer = new TerminalWriter(out);
+        writer.print("a");
+        byte[] bytes = new byte[200 * 1024];
+        bytes[bytes.length - 1] = 'b';
+        assertEquals(bytes.length, writer.getChannel().write(ByteBuffer.wrap(bytes)));
+        writer.print("c");
+        writer.flush();
+        byte[] written = out.toByteArray();
+        assertEquals(bytes.length + 2, written.length);
+        assertEquals('a', written[0]);
+        assertEquals('b', written[bytes.length]);
+        assertEquals("c", new String(written, bytes.length + 1, 1, StandardCharsets.US_ASCII));
+    }
+
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class XargsCommandTest {
+
+    @Test
+    public void testOrdered() throws Exception {
+        List<String> lines = execute("-P", "4", "echo", "a", "{}", "b");
+        assertEquals(100, lines.size());
+        for(int i=0; i<100; i++) {
+            assertEquals("a " + i + " b", lines.get(i));
+        }
+    }
+
+    @Test
+    public void testUnordered() throws Exception {
+        List<String> lines = execute("-P", "4", "-n", "3", "-u", "echo");
+        assertEquals(34, lines.size());
+        assertTrue(lines.contains("0 1 2"));
+        assertTrue(lines.contains("99"));
+    }
+
+    private static List<String> execute(String... args) throws Exception {
+        CommandRegistry commands = new CommandRegistry();
+        commands.register(new AbstractShellCommand("echo") {
+
+            @Override
+            protected String getHelpMessage() {
+                return "";
+            }
+
+            @Override
+            protected void executeCommand(ArgumentsList args, ShellBuffer inputBuffer, ShellIO handler) throws Exception {
+                // Finishes in another order than the input
+                Thread.sleep((args.toString().hashCode() & 0x7) + 1);
+                StringBuilder line = new StringBuilder();
+                for(int i=0; i<args.size(); i++) {
+                    line.append(i == 0 ? "" : " ").append(args.getArgumentAt(i));
+                }
+                handler.println(line.toString());
+            }
+        });
+        ShellBuffer input = new ShellBuffer();
+        for(int i=0; i<100; i++) {
+            input.addLine(String.valueOf(i));
+        }
+        input.close();
+        ShellIO output = new ShellIO((LineInput) null);
+        new XargsCommand(commands).execute(new ArgumentsList(args), input, output);
+        output.getBuffer().close();
+
+        List<String> lines = new ArrayList<String>();
+        Iterator<String> it = output.getBuffer().getContent();
+        while(it.hasNext()) {
+            lines.add(it.next());
+        }
+        return lines;
+    }
+
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class CsvBatchTest {
+
+    @Test
+    public void testFields() {
+        assertEquals(Arrays.asList("a", "b c", "d"), CsvBatch.parseHeader(bytes("a, b c ,d"), (byte) ','));
+
+        CsvBatch batch = new CsvBatch(3, (byte) ',');
+        batch.add(bytes("x,\"say \"\"hi\"\", y\",1.5"));
+        batch.add(bytes("é,,"));
+        batch.add(bytes("z"));
+        assertEquals(3, batch.getRowCount());
+        assertEquals("say \"hi\", y", batch.getValue(0, 1));
+        assertEquals("é", batch.getValue(1, 0));
+        assertEquals("", batch.getValue(2, 2));
+
+        ByteBuffer raw = ByteBuffer.allocate(64);
+        batch.appendRaw(0, 1, raw);
+        raw.flip();
+        assertEquals("\"say \"\"hi\"\", y\"", StandardCharsets.UTF_8.decode(raw).toString());
+        assertEquals("é,,", StandardCharsets.UTF_8.decode(batch.getLine(1, null)).toString());
+
+        long[] integers = new long[3];
+        double[] decimals = new double[3];
+        byte[] kinds = new byte[3];
+        batch.getNumbers(2, integers, decimals, kinds);
+        assertEquals(CsvBatch.DECIMAL, kinds[0]);
+        assertEquals(1.5, decimals[0]);
+        assertEquals(CsvBatch.NOT_A_NUMBER, kinds[1]);
+        assertEquals(CsvBatch.NOT_A_NUMBER, kinds[2]);
+
+        ByteDictionary dictionary = new ByteDictionary();
+        int[] codes = new int[3];
+        batch.getCodes(1, dictionary, codes);
+        assertEquals(2, dictionary.size());
+        assertEquals(codes[1], codes[2]);
+        assertEquals("say \"hi\", y", new String(dictionary.get(codes[0]), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testNumbers() {
+        long[] integers = new long[1];
+        double[] decimals = new double[1];
+        for(String number : new String[] {"0", "-12", " +7 ", "9007199254740993", "9223372036854775807", "-9223372036854775808"}) {
+            assertEquals(number, CsvBatch.INTEGER, parse(number, integers, decimals));
+            assertEquals(number, Long.parseLong(number.trim().replace("+", "")), integers[0]);
+        }
+        for(String number : new String[] {"+3.25", " 0.1 ", "123456.789012345", "1e-3", "9223372036854775808", ".5", "2.0"}) {
+            assertEquals(number, CsvBatch.DECIMAL, parse(number, integers, decimals));
+            assertEquals(number, Double.parseDouble(number), decimals[0]);
+        }
+        for(String text : new String[] {"", "-", "abc", "12a", "1.2.3"}) {
+            assertEquals(text, CsvBatch.NOT_A_NUMBER, parse(text, integers, decimals));
+        }
+
+        assertTrue(CsvBatch.compare(9007199254740993L, 9007199254740992.0) > 0);
+        assertTrue(CsvBatch.compare(2, 2.5) < 0);
+        assertTrue(CsvBatch.compare(-3, -2.5) < 0);
+        assertEquals(0, CsvBatch.compare(4, 4.0));
+        assertTrue(CsvBatch.compare(Long.MAX_VALUE, 0x1p63) < 0);
+        assertTrue(CsvBatch.compare(Long.MIN_VALUE, -0x1p64) > 0);
+    }
+
+    private static byte parse(String text, long[] integers, double[] decimals) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        return CsvBatch.parseNumber(bytes, 0, bytes.length, integers, decimals, 0);
+    }
+
+    @Test
+    public void testDictionary() {
+        ByteDictionary dictionary = new ByteDictionary();
+        LongIntHashMap pairs = new LongIntHashMap();
+        for(int i=0; i<100000; i++) {
+            byte[] value = ("value " + (i % 5000)).getBytes(StandardCharsets.UTF_8);
+            assertEquals(i % 5000, dictionary.add(value, 0, value.length));
+            assertEquals(i % 7000, pairs.putIfAbsent((long) (i % 7000) << 32 | 7, pairs.size()));
+        }
+        assertEquals(5000, dictionary.size());
+        assertEquals(7000, pairs.size());
+    }
+
+    private static ByteBuffer bytes(String line) {
+        return ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class ExternalSorterTest {
+
+    private static final int LINES = 50000;
+
+    @Test
+    public void testMerge() throws Exception {
+        List<String> expected = new ArrayList<String>();
+        List<String> sorted = sort(new SortKey(1, false, false, false), expected);
+        Collections.sort(expected);
+        assertEquals(expected, sorted);
+    }
+
+    @Test
+    public void testNumericReverse() throws Exception {
+        List<String> sorted = sort(new SortKey(2, true, true, false), new ArrayList<String>());
+        assertEquals(LINES, sorted.size());
+        assertEquals("line 49989 é", sorted.get(0));
+        assertEquals("line -10 é", sorted.get(LINES - 1));
+    }
+
+    @Test
+    public void testStable() throws Exception {
+        // Equal keys keep the order of the input, across the runs
+        List<String> sorted = sort(new SortKey(3, false, false, true), new ArrayList<String>());
+        assertEquals("line -10 é", sorted.get(0));
+        assertEquals("line -9 é", sorted.get(1));
+        assertEquals("line 49989 é", sorted.get(LINES - 1));
+    }
+
+    @Test
+    public void testMergePasses() throws Exception {
+        // About 6 runs, merged 2 by 2 in several passes
+        List<String> expected = new ArrayList<String>();
+        List<String> sorted = sort(new SortKey(1, false, false, false), expected, 2);
+        Collections.sort(expected);
+        assertEquals(expected, sorted);
+
+        // Equal keys keep the order of the input
+        expected.clear();
+        assertEquals(expected, sort(new SortKey(3, false, false, true), expected, 2));
+    }
+
+    @Test
+    public void testBlanks() {
+        ByteBuffer indented = ByteBuffer.wrap("  g 7".getBytes(StandardCharsets.UTF_8));
+        ByteBuffer line = ByteBuffer.wrap("b 1".getBytes(StandardCharsets.UTF_8));
+        // The whole line is compared, the field after its blanks
+        assertTrue(new SortKey(0, false, false, false).compare(indented, line) < 0);
+        assertTrue(new SortKey(1, false, false, false).compare(indented, line) > 0);
+        assertTrue(new SortKey(2, true, false, false).compare(indented, line) > 0);
+    }
+
+    private static List<String> sort(SortKey key, List<String> lines) throws Exception {
+        return sort(key, lines, ExternalSorter.MAX_MERGED_RUNS);
+    }
+
+    private static List<String> sort(SortKey key, List<String> lines, int maxMergedRuns) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        // Runs of one megabyte
+        ExternalSorter sorter = new ExternalSorter(key, false, 3 * 1024 * 1024, executor, 2);
+        sorter.setMaxMergedRuns(maxMergedRuns);
+        try {
+            for(int i=0; i<LINES; i++) {
+                String line = "line " + (i - 10) + " é";
+                lines.add(line);
+                sorter.add(line);
+            }
+            List<String> sorted = new ArrayList<String>();
+            Iterator<ByteBuffer> it = sorter.sort();
+            while(it.hasNext()) {
+                sorted.add(StandardCharsets.UTF_8.decode(it.next()).toString());
+            }
+            return sorted;
+        } finally {
+            sorter.close();
+            executor.shutdown();
+        }
+    }
+
+}
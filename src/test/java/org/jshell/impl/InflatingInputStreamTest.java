@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class InflatingInputStreamTest {
+
+    private static final int LINES = 20000;
+
+    @Test
+    public void testMembers() throws Exception {
+        // Members of known size inflated in parallel, then concatenated members
+        File file = createFile(false);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            assertEquals(Compression.GZIP, Compression.detect(raf.getChannel()));
+            StreamLineReader reader = new StreamLineReader(Compression.GZIP.open(raf.getChannel()));
+            for(int i=0; i<2*LINES; i++) {
+                ByteBuffer line = reader.readLine();
+                assertNotNull(line);
+                assertEquals("line " + i + " é", StandardCharsets.UTF_8.decode(line).toString());
+            }
+            assertNull(reader.readLine());
+        } finally {
+            raf.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testCorrupted() throws Exception {
+        File file = createFile(true);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            StreamLineReader reader = new StreamLineReader(Compression.GZIP.open(raf.getChannel()));
+            while(reader.readLine() != null) {
+                // Until the corrupted member
+            }
+            fail("The corruption was not detected");
+        } catch(IOException ex) {
+            assertTrue(ex.getMessage().startsWith("Corrupted gzip member"));
+        } finally {
+            raf.close();
+            file.delete();
+        }
+    }
+
+    private static File createFile(boolean corrupted) throws IOException {
+        File file = File.createTempFile("jshell", ".gz");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            StringBuilder text = new StringBuilder();
+            for(int i=0; i<LINES; i++) {
+                text.append("line ").append(i).append(" é\r\n");
+                if(text.length() > 30000 || i == LINES - 1) {
+                    // One member in the middle has a wrong checksum
+                    boolean wrong = corrupted && i > LINES / 2;
+                    out.write(bgzfMember(text.toString().getBytes(StandardCharsets.UTF_8), wrong));
+                    text.setLength(0);
+                    corrupted &= !wrong;
+                }
+            }
+            GZIPOutputStream gzip = new GZIPOutputStream(out);
+            for(int i=LINES; i<2*LINES; i++) {
+                gzip.write(("line " + i + " é\n").getBytes(StandardCharsets.UTF_8));
+            }
+            gzip.finish();
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static byte[] bgzfMember(byte[] data, boolean corrupted) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+        byte[] block = new byte[4096];
+        while(!deflater.finished()) {
+            deflated.write(block, 0, deflater.deflate(block));
+        }
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+
+        ByteBuffer member = ByteBuffer.allocate(26 + deflated.size()).order(ByteOrder.LITTLE_ENDIAN);
+        member.put(new byte[] {0x1F, (byte) 0x8B, 8, 4, 0, 0, 0, 0, 0, (byte) 0xFF, 6, 0, 'B', 'C', 2, 0});
+        member.putShort((short) (member.capacity() - 1));
+        member.put(deflated.toByteArray());
+        member.putInt((int) crc.getValue() ^ (corrupted ? 1 : 0));
+        member.putInt(data.length);
+        return member.array();
+    }
+
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class LineMatcherTest {
+
+    @Test
+    public void testLiteral() {
+        LineMatcher matcher = new LiteralMatcher("Error");
+        assertTrue(matcher.matches("an ERROR occurred"));
+        assertTrue(matcher.matches("error"));
+        assertFalse(matcher.matches("erro"));
+        assertFalse(matcher.matches("warning"));
+
+        // 'Ā' (U+0100) shares its shift slot with NUL
+        matcher = new LiteralMatcher("aĀb");
+        assertTrue(matcher.matches("xxAāB"));
+        assertFalse(matcher.matches("xxa\u0000b"));
+    }
+
+    @Test
+    public void testRegex() {
+        LineMatcher matcher = new RegexMatcher("err(or)?\\s+\\d+");
+        assertTrue(matcher.matches("ERR 42"));
+        assertTrue(matcher.matches("an error  7"));
+        assertFalse(matcher.matches("error x"));
+    }
+
+    @Test
+    public void testMultiLiteral() {
+        LineMatcher matcher = new MultiLiteralMatcher("he", "she", "hers", "été");
+        assertTrue(matcher.matches("uSHErs"));
+        assertTrue(matcher.matches("xhex"));
+        assertTrue(matcher.matches("ÉTÉ"));
+        assertFalse(matcher.matches("hs ét"));
+        assertFalse(matcher.matches(""));
+    }
+
+    @Test
+    public void testBytes() {
+        ByteLineMatcher matcher = new ByteLineMatcher(new LiteralMatcher("Key"));
+        assertTrue(matcher.matches(utf8("a KEY")));
+        assertTrue(matcher.matches(utf8("été key")));
+        // The Kelvin sign is folded to 'k'
+        assertTrue(matcher.matches(utf8("\u212Aey")));
+        assertFalse(matcher.matches(utf8("ke")));
+
+        matcher = new ByteLineMatcher(new LiteralMatcher("été"));
+        assertTrue(matcher.matches(utf8("ÉTÉ")));
+        assertFalse(matcher.matches(utf8("ete")));
+
+        ByteBuffer line = utf8("xx err 42 yy");
+        line.position(3).limit(9);
+        assertTrue(new ByteLineMatcher(new RegexMatcher("^err \\d+$")).matches(line));
+        assertEquals(3, line.position());
+    }
+
+    private static ByteBuffer utf8(String line) {
+        return ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
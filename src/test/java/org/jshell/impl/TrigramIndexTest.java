@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2010 Fabien Barbero
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jshell.impl;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+/**
+ *
+ * @author Fabien Barbero
+ */
+public class TrigramIndexTest {
+
+    @Test
+    public void testCandidates() throws Exception {
+        File file = File.createTempFile("jshell", ".txt");
+        File indexFile = TrigramIndex.getIndexPath(file.toPath()).toFile();
+        StringBuilder text = new StringBuilder();
+        for(int i=0; i<200000; i++) {
+            text.append("line ").append(i % 1000).append(i == 150000 ? " Kelvin rare" : "").append('\n');
+        }
+        Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            TrigramIndex index = TrigramIndex.build(file.toPath(), raf.getChannel(), StandardCharsets.UTF_8);
+            assertTrue(index.getBlockCount() > 10);
+
+            // Case insensitive, the Kelvin sign is folded as 'k'
+            long[] ranges = index.getCandidates(Collections.singletonList(new String[] {"KELVIN"}), Long.MAX_VALUE);
+            assertEquals(2, ranges.length);
+            assertTrue(ranges[0] < text.indexOf("Kelvin") && text.indexOf("Kelvin") < ranges[1]);
+            assertEquals(0, index.getCandidates(Collections.singletonList(new String[] {"absent"}), Long.MAX_VALUE).length);
+            // Too short to be indexed: the whole file
+            ranges = index.getCandidates(Collections.singletonList(new String[] {"ab"}), Long.MAX_VALUE);
+            assertEquals(Arrays.toString(new long[] {0, raf.length()}), Arrays.toString(ranges));
+
+            Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(file.lastModified() - 10000));
+            assertNull(TrigramIndex.open(file.toPath(), raf.getChannel(), StandardCharsets.UTF_8));
+        } finally {
+            raf.close();
+            file.delete();
+            indexFile.delete();
+        }
+    }
+
+    @Test
+    public void testRequiredLiterals() {
+        assertEquals(Arrays.asList("error ", " at"), RegexMatcher.getRequiredLiterals("^error [0-9]+ at"));
+        assertEquals(Arrays.asList("abc"), RegexMatcher.getRequiredLiterals("abc+d?"));
+        assertEquals(Arrays.asList("a.b"), RegexMatcher.getRequiredLiterals("a\\.b(cd)*x{2,3}"));
+        List<String> none = Collections.emptyList();
+        assertEquals(none, RegexMatcher.getRequiredLiterals("error|warning"));
+        assertEquals(none, RegexMatcher.getRequiredLiterals("\\x41bc"));
+    }
+
+}